@@ -37,9 +37,10 @@ public class KPData {
         //printseriesEvaluableOrNot();
         //printNumElements();
         // periodMatrix = schottky.getPeriodMatrix(); // Don't need this now?
-        U = schottky.getV();    // U
-        V = schottky.getV(2);   // V
-        W = schottky.getV(3);   // W, from \theta(Ux + Vy + tW) in KP Soln
+        ComplexVector[] UVW = schottky.getVs(3); // all three in one sweep of the group
+        U = UVW[0];   // U
+        V = UVW[1];   // V
+        W = UVW[2];   // W, from \theta(Ux + Vy + tW) in KP Soln
         //printKPVectors();
         //THIS DOESN'T WORK!! //c = schottky.gamma();   // Constant at end of formula for KP soln
         //System.out.println( "WTF?" + schottky.isSeriesEvaluable() );
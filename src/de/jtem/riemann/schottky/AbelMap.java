@@ -31,6 +31,12 @@ OF SUCH DAMAGE.
 
 package de.jtem.riemann.schottky;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import de.jtem.blas.ComplexVector;
 import de.jtem.mfc.field.Complex;
 import de.jtem.numericalMethods.calculus.function.RealVectorValuedFunctionOfOneVariable;
@@ -60,6 +66,100 @@ public class AbelMap {
 		this.schottky = schottky;
 	}
 
+	/** order of the Gauss-Legendre rule of a panel */
+	static final int PANEL_ORDER = 16;
+
+	/** maximal number of bisections of a segment of the path */
+	static final int MAX_PANEL_LEVEL = 30;
+
+	/** Gauss-Legendre nodes and weights on [-1,1] */
+	static final double[] GAUSS_NODES = new double[PANEL_ORDER];
+	static final double[] GAUSS_WEIGHTS = new double[PANEL_ORDER];
+
+	static {
+		// Newton's method for the roots of the Legendre polynomial
+		for (int i = 0; i < (PANEL_ORDER + 1) / 2; i++) {
+
+			double x = Math.cos(Math.PI * (i + 0.75) / (PANEL_ORDER + 0.5));
+			double dp = 0;
+
+			for (int iter = 0; iter < 100; iter++) {
+				double p0 = 1, p1 = x;
+
+				for (int k = 2; k <= PANEL_ORDER; k++) {
+					final double p2 = ((2 * k - 1) * x * p1 - (k - 1) * p0) / k;
+					p0 = p1;
+					p1 = p2;
+				}
+
+				dp = PANEL_ORDER * (x * p1 - p0) / (x * x - 1);
+
+				final double dx = p1 / dp;
+
+				x -= dx;
+
+				if (Math.abs(dx) < 1e-16)
+					break;
+			}
+
+			GAUSS_NODES[i] = -x;
+			GAUSS_NODES[PANEL_ORDER - 1 - i] = x;
+			GAUSS_WEIGHTS[i] = GAUSS_WEIGHTS[PANEL_ORDER - 1 - i] =
+				2 / ((1 - x * x) * dp * dp);
+		}
+	}
+
+	boolean usingPanels = true;
+
+	/** differentials of the tasks of the panel integration */
+	AbelianDifferential[] differentials = new AbelianDifferential[0];
+
+	/** maximal number of tasks of a parallel panel integration */
+	int numOfTasks = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Returns whether the differentials of 1st kind are integrated
+	 * by Gauss-Legendre panels.
+	 * @see #setUsingPanels(boolean)
+	 */
+	public boolean isUsingPanels() {
+		return usingPanels;
+	}
+
+	/**
+	 * Sets whether the differentials of 1st kind are integrated by
+	 * Gauss-Legendre panels of order 16, which are bisected until the
+	 * two halves agree with the whole panel. All nodes of a bisection
+	 * are evaluated in one walk through the group; the segments of the
+	 * path and the differentials are integrated by independent tasks of
+	 * the executor of the schottky group. Otherwise the differential
+	 * is integrated point by point by an extrapolating integrator.
+	 * Default is true.
+	 */
+	public void setUsingPanels(boolean usingPanels) {
+		this.usingPanels = usingPanels;
+	}
+
+	/**
+	 * Returns maximal number of tasks, into which a panel integration
+	 * is split if the schottky group has an executor.
+	 */
+	public int getNumOfTasks() {
+		return numOfTasks;
+	}
+
+	/**
+	 * Sets maximal number of tasks, into which a panel integration is
+	 * split if the schottky group has an executor; each differential is
+	 * integrated by the same number of tasks along blocks of segments of
+	 * the path. The default is the number of available processors.
+	 */
+	public void setNumOfTasks(int numOfTasks) {
+		if (numOfTasks < 1)
+			throw new IllegalArgumentException("number of tasks must be positive");
+		this.numOfTasks = numOfTasks;
+	}
+
 	DifferentialOf1stKindPathIntegrator d1stpi =
 		new DifferentialOf1stKindPathIntegrator();
 	DifferentialOf3rdKindPathIntegrator d3rdpi =
@@ -233,6 +333,9 @@ public class AbelMap {
 		if (n < 2)
 			return new Complex();
 
+		if (usingPanels)
+			return numEval(new int[] { index }, path, tol)[0];
+
 		d1stpi.setIntegrationTol(tol);
 		d1stpi.setDifferentialTol(tol / 10);
 
@@ -245,6 +348,302 @@ public class AbelMap {
 		return d1stpi.getIntegral();
 	}
 
+	/**
+	 * integrates all normalized differentials of first kind numerically
+	 * along given path with prescribed tol by Gauss-Legendre panels.
+	 * @param path of integration
+	 * @param tol absolute tolerance of numerical integration,
+	 * the differential is evaluated with an accuracy of one tenth of tol.
+	 * @returns integrals, the ith belongs to the differential with index i
+	 * @see #setUsingPanels(boolean) */
+	public Complex[] numEval(ComplexVector path, double tol) {
+		final int[] indices = new int[schottky.getNumGenerators()];
+
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = i;
+
+		return numEval(indices, path, tol);
+	}
+
+	/**
+	 * integrates normalized differentials of first kind with prescribed
+	 * indices numerically along given path by Gauss-Legendre panels.
+	 * The path is split into blocks of segments; each block and index
+	 * is integrated by its own task, whose results are added in a fixed
+	 * order.
+	 * @param indices of normalized differentials of first kind
+	 * @param path of integration
+	 * @param tol absolute tolerance of numerical integration,
+	 * the differential is evaluated with an accuracy of one tenth of tol.
+	 * @returns integrals, the ith belongs to the differential with index
+	 * indices[i] */
+	public Complex[] numEval(
+		int[] indices,
+		ComplexVector path,
+		final double tol) {
+		final Complex[] integral = Complex.createArray(indices.length);
+
+		final int n = path.size();
+
+		if (n < 2 || indices.length == 0)
+			return integral;
+
+		final Complex[] p = new Complex[n];
+
+		double length = 0;
+
+		for (int i = 0; i < n; i++) {
+			p[i] = path.get(i);
+			if (i > 0)
+				length += p[i].dist(p[i - 1]);
+		}
+
+		if (length == 0)
+			return integral;
+
+		// the blocks, and thus the order of summation, do not depend on the machine
+		final int numOfBlocks =
+			schottky.executor == null
+				? 1
+				: Math.max(1, Math.min(n - 1, numOfTasks / indices.length));
+
+		final int numOfTasks = indices.length * numOfBlocks;
+
+		if (differentials.length < numOfTasks) {
+			AbelianDifferential[] newDifferentials =
+				new AbelianDifferential[numOfTasks];
+			System.arraycopy(
+				differentials, 0, newDifferentials, 0, differentials.length);
+			for (int i = differentials.length; i < numOfTasks; i++) {
+				newDifferentials[i] = new AbelianDifferential(schottky);
+				newDifferentials[i].sequential = true;
+			}
+			differentials = newDifferentials;
+		}
+
+		final double tolPerLength = tol / length;
+
+		final List<Callable<Complex>> tasks =
+			new ArrayList<Callable<Complex>>(numOfTasks);
+
+		for (int i = 0, k = 0; i < indices.length; i++) {
+			for (int j = 0; j < numOfBlocks; j++, k++) {
+
+				final AbelianDifferential differential = differentials[k];
+				final int index = indices[i];
+				final int first = j * (n - 1) / numOfBlocks;
+				final int last = (j + 1) * (n - 1) / numOfBlocks;
+
+				tasks.add(new Callable<Complex>() {
+					public Complex call() {
+						return integrate(
+							differential, index, p, first, last, tol, tolPerLength);
+					}
+				});
+			}
+		}
+
+		final List<Complex> results = run(tasks);
+
+		for (int i = 0, k = 0; i < indices.length; i++) {
+			for (int j = 0; j < numOfBlocks; j++, k++) {
+				integral[i].assignPlus(results.get(k));
+			}
+		}
+
+		return integral;
+	}
+
+	/** runs tasks by the executor of the schottky group, if it has one */
+	<T> List<T> run(final List<Callable<T>> tasks) {
+
+		final List<T> results = new ArrayList<T>(tasks.size());
+
+		try {
+			if (schottky.executor == null || tasks.size() == 1) {
+				for (int i = 0; i < tasks.size(); i++) {
+					results.add(tasks.get(i).call());
+				}
+				return results;
+			}
+
+			final List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+
+			for (int i = 0; i < tasks.size(); i++) {
+				futures.add(schottky.executor.submit(tasks.get(i)));
+			}
+
+			try {
+				for (int i = 0; i < futures.size(); i++) {
+					results.add(futures.get(i).get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("interrupted while integrating path");
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof RuntimeException
+					? (RuntimeException) e.getCause()
+					: new RuntimeException(e.getCause());
+			} finally {
+				for (int i = 0; i < futures.size(); i++) {
+					futures.get(i).cancel(true);
+				}
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+
+		return results;
+	}
+
+	/** part [a,b] of a segment of the path with its Gauss-Legendre sum */
+	static final class Panel {
+
+		final int segment;
+
+		final double a, b;
+
+		final Complex value = new Complex();
+
+		Panel(int segment, double a, double b) {
+			this.segment = segment;
+			this.a = a;
+			this.b = b;
+		}
+	}
+
+	/**
+	 * integrates normalized differential of first kind with index n
+	 * along the segments from p[first] to p[last]. Every panel whose
+	 * halves differ from it by more than its share of tol is bisected;
+	 * the nodes of all halves of one level are evaluated by one call
+	 * of the differential.
+	 */
+	static Complex integrate(
+		AbelianDifferential differential,
+		int n,
+		Complex[] p,
+		int first,
+		int last,
+		double tol,
+		double tolPerLength) {
+
+		final Complex integral = new Complex();
+
+		final double diffTol = tol / 10;
+
+		List<Panel> panels = new ArrayList<Panel>();
+
+		for (int i = first; i < last; i++) {
+			if (p[i].distSqr(p[i + 1])
+				>= 1e-30 * Math.max(p[i].absSqr(), p[i + 1].absSqr()))
+				panels.add(new Panel(i, 0, 1));
+		}
+
+		evaluate(differential, n, p, panels, diffTol);
+
+		for (int level = 0; !panels.isEmpty(); level++) {
+
+			if (level == MAX_PANEL_LEVEL)
+				throw new RuntimeException(
+					"path integration does not converge");
+
+			final List<Panel> halves = new ArrayList<Panel>(2 * panels.size());
+
+			for (int i = 0; i < panels.size(); i++) {
+				final Panel panel = panels.get(i);
+				final double m = (panel.a + panel.b) / 2;
+
+				halves.add(new Panel(panel.segment, panel.a, m));
+				halves.add(new Panel(panel.segment, m, panel.b));
+			}
+
+			evaluate(differential, n, p, halves, diffTol);
+
+			final List<Panel> refined = new ArrayList<Panel>();
+
+			final Complex sum = new Complex();
+
+			for (int i = 0; i < panels.size(); i++) {
+				final Panel panel = panels.get(i);
+				final Panel left = halves.get(2 * i);
+				final Panel right = halves.get(2 * i + 1);
+
+				sum.assignPlus(left.value, right.value);
+
+				final double length =
+					(panel.b - panel.a) * p[panel.segment].dist(p[panel.segment + 1]);
+
+				if (sum.dist(panel.value) <= tolPerLength * length) {
+					integral.assignPlus(sum);
+				} else {
+					refined.add(left);
+					refined.add(right);
+				}
+			}
+
+			panels = refined;
+		}
+
+		return integral;
+	}
+
+	/** evaluates Gauss-Legendre sums of panels with one batch of nodes */
+	static void evaluate(
+		AbelianDifferential differential,
+		int n,
+		Complex[] p,
+		List<Panel> panels,
+		double diffTol) {
+
+		final int numOfNodes = PANEL_ORDER * panels.size();
+
+		if (numOfNodes == 0)
+			return;
+
+		final Complex[] z = new Complex[numOfNodes];
+		final Complex[] r = Complex.createArray(numOfNodes);
+
+		final Complex v = new Complex();
+
+		for (int i = 0, k = 0; i < panels.size(); i++) {
+			final Panel panel = panels.get(i);
+			final Complex P = p[panel.segment];
+			final Complex Q = p[panel.segment + 1];
+
+			v.assignMinus(Q, P);
+
+			final double c = (panel.a + panel.b) / 2;
+			final double h = (panel.b - panel.a) / 2;
+
+			for (int j = 0; j < PANEL_ORDER; j++, k++) {
+				z[k] = v.times(c + h * GAUSS_NODES[j]);
+				z[k].assignPlus(P);
+			}
+		}
+
+		differential.of1stKind(r, z, 0, numOfNodes, n, diffTol);
+
+		for (int i = 0, k = 0; i < panels.size(); i++) {
+			final Panel panel = panels.get(i);
+
+			v.assignMinus(p[panel.segment + 1], p[panel.segment]);
+			v.assignTimes((panel.b - panel.a) / 2);
+
+			double re = 0, im = 0;
+
+			for (int j = 0; j < PANEL_ORDER; j++, k++) {
+				re += GAUSS_WEIGHTS[j] * r[k].re;
+				im += GAUSS_WEIGHTS[j] * r[k].im;
+			}
+
+			panel.value.assign(re, im);
+			panel.value.assignTimes(v);
+		}
+	}
+
 	/**
 	 * Computes normalized integral of first kind with prescribed
 	 * index along given path.
@@ -277,6 +676,41 @@ public class AbelMap {
 		return analyticIntegral;
 	}
 
+	/**
+	 * Computes all normalized integrals of first kind along given path.
+	 * @param path of integration
+	 * @param acc accuracy of integrals
+	 * @returns integrals, the ith belongs to the differential with index i */
+	public Complex[] eval(ComplexVector path, double acc) {
+		final int n = path.size();
+
+		final int g = schottky.getNumGenerators();
+
+		if (n < 2)
+			return Complex.createArray(g);
+
+		final Complex[] numericalIntegral = numEval(path, 0.1);
+
+		final Complex[] analyticIntegral = Complex.createArray(g);
+		final Complex[] start = Complex.createArray(g);
+
+		schottky.abelianIntegralsOf1stKind(analyticIntegral, path.get(n - 1), acc);
+		schottky.abelianIntegralsOf1stKind(start, path.get(0), acc);
+
+		for (int i = 0; i < g; i++) {
+			analyticIntegral[i].assignMinus(start[i]);
+
+			final int N =
+				(int) Math.floor(
+					(analyticIntegral[i].im - numericalIntegral[i].im) / 2 / Math.PI
+						+ 0.5);
+
+			analyticIntegral[i].im -= N * 2 * Math.PI;
+		}
+
+		return analyticIntegral;
+	}
+
 	/**
 	 * integrates normalized differential of thrid kind with prescribes poles A
 	 * and B numerically along given path.
@@ -32,6 +32,7 @@ OF SUCH DAMAGE.
 package de.jtem.riemann.schottky;
 
 import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
 
 import de.jtem.mfc.field.Complex;
 
@@ -46,6 +47,8 @@ class AbelianDifferential
 
   final Schottky schottky;
 
+  final SchottkyWordTree tree;
+
   final double [][] rho;
 
   final double[] L1;
@@ -60,15 +63,34 @@ class AbelianDifferential
 
   AbelianDifferential(Schottky schottky) {
     this.schottky = schottky;
+    tree = schottky.wordTree;
     numGenerators = schottky.numGenerators;
-    updateID = schottky.updateID;
+    updateID = -1;
     rho = new double[2][numGenerators];
     L1 = new double[numGenerators];
+    k2 = new double[2][numGenerators];
+    kVisitor = schottky.new KVisitor();
+    reduction = new DomainReduction(schottky);
+  }
+
+  final DomainReduction reduction;
+
+  /* walks sequentially, even if the schottky group has an executor;
+     set for instances which are used by tasks of that executor */
+  boolean sequential;
+
+  final ExecutorService executor() {
+    return sequential ? null : schottky.executor;
   }
 
   final Complex zOfRho
       = new Complex(Double.NaN);
 
+  /* k for word length 3 at zOfRho */
+  final double[][] k2;
+
+  final Schottky.KVisitor kVisitor;
+
   final Complex z = new Complex();
   final Complex s = new Complex();
   final Complex d = new Complex();
@@ -169,7 +191,9 @@ class AbelianDifferential
       final double R2Plus = schottky.rPlus(R2, q_);
 
       //final double[][] k2 = schottky.k2(z);
-      final double[][] k2 = schottky.kIndexed(z,3);
+      if (!schottky.cachingBounds || !schottky.kGrid.lowerBounds(z, k2, kVisitor)) {
+        kVisitor.eval(z, k2, 3);
+      }
 
       for (int j = 0; j < 2; j++) {
         for (int m = 0; m < numGenerators; m++) {
@@ -203,7 +227,8 @@ class AbelianDifferential
     else {
 
       //double dOfZSqr = schottky.d2(z);
-      double dOfZSqr = schottky.k(z,3);
+      double dOfZSqr = schottky.cachingBounds && schottky.kGrid.lowerBounds(z, k2, kVisitor)
+          ? KGrid.min(k2) : kVisitor.eval(z, null, 3);
       dOfZSqr *= dOfZSqr;
 
       for (int j = 0; j < 2; j++) {
@@ -214,12 +239,12 @@ class AbelianDifferential
     }
   }
 
-  final double L(SchottkyGroupElement sigma, double[] LOfASigma) {
+  final double L(int sigma, double[] LOfASigma) {
 
     double maxL = 0;
 
     for (int n = 0; n < numGenerators; n++) {
-      if (n != sigma.left) {
+      if (n != tree.getLeft(sigma)) {
 
         LOfASigma[n] = L(sigma, n);
 
@@ -235,17 +260,17 @@ class AbelianDifferential
     return maxL;
   }
 
-  final double L(SchottkyGroupElement sigma, int n) {
+  final double L(int sigma, int n) {
 
-    if (sigma.left == n) {
+    if (tree.getLeft(sigma) == n) {
       throw new RuntimeException("do not compute L for this n");
     }
 
     return L(sigma, schottky.fixpoint[n][0], schottky.fixpoint[n][1]);
   }
 
-  final double L(SchottkyGroupElement sigma, Complex A, Complex B) {
-    return A.dist(B) / schottky.dist(sigma, A) / schottky.dist(sigma, B);
+  final double L(int sigma, Complex A, Complex B) {
+    return A.dist(B) / tree.dist(sigma, A) / tree.dist(sigma, B);
     }
 
   final double L1(int n) {
@@ -256,8 +281,8 @@ class AbelianDifferential
 
       if (i != n) {
 
-        final double L1OfI = Math.max(L(schottky.generator[i], n),
-                                      L(schottky.generatorInv[i], n));
+        final double L1OfI = Math.max(L(1 + 2 * i, n),
+                                      L(2 + 2 * i, n));
 
         if (L1OfI > max) {
           max = L1OfI;
@@ -268,12 +293,12 @@ class AbelianDifferential
     return max;
   }
 
-  final double kappaLBar( SchottkyGroupElement sigma ) {
+  final double kappaLBar( final int sigma ) {
 
-    SchottkyGroupElement tau = sigma.parent;
+    final int tau = tree.getParent( sigma );
 
-    final int i    = sigma.leftIsInvert;
-    final int l    = sigma.left;
+    final int i    = tree.getLeftIsInvert( sigma );
+    final int l    = tree.getLeft( sigma );
 
     final Complex An = schottky.fixpoint[l][0];
     final Complex Bn = schottky.fixpoint[l][1];
@@ -287,47 +312,48 @@ class AbelianDifferential
       sqrtOfAbsMu = Math.sqrt(schottky.mu[l].abs());
     }
 
-    final double v1 = schottky.k(tau, An) / sqrtOfAbsMu
-        - schottky.K(tau, Bn) * sqrtOfAbsMu;
-    final double v2 = schottky.k(tau, Bn) * sqrtOfAbsMu
-        - schottky.K(tau, An) / sqrtOfAbsMu;
+    final double v1 = tree.dist(tau, An) / sqrtOfAbsMu
+        - tree.K(tau, Bn) * sqrtOfAbsMu;
+    final double v2 = tree.dist(tau, Bn) * sqrtOfAbsMu
+        - tree.K(tau, An) / sqrtOfAbsMu;
 
     return v1 > v2 ? v1 / An.dist(Bn) : v2 / An.dist(Bn);
   }
 
+      /**
+       * Computes minimum of kappaLBar for all words with given word length.
+       */
+      final class KappaLBarVisitor
+          implements SchottkyWordTree.Visitor, Serializable {
 
-      final private double evalKappaLBar(SchottkyGroupElement element,
-                                         double kappa, int wordLength ) {
+        private static final long serialVersionUID = 1L;
 
+        int wordLength;
 
-        if (element.wordLength > wordLength )
-          return kappa;
-        System.out.println("JEREMY, numelements2 = "+schottky.getNumElements());
+        double kappa;
 
-        System.out.println("Bet it only breaks here!, element.child = " + element.child);
-        if (element.updateID != updateID) {
-          System.out.println("Bet it only breaks here!, updateID = " + updateID);
-          System.out.println("Bet it only breaks here!, element.updateID = " + element.updateID);
-          schottky.updateElement(element);
-        }
-        System.out.println("JEREMY, numelements3 = "+schottky.getNumElements());
+        public boolean visit(final int element) {
 
-        if( element.wordLength == wordLength ) {
-          kappa = Math.min( kappaLBar( element ), kappa );
-        }
+          if (tree.getWordLength(element) < wordLength) {
+            return true;
+          }
 
-        if (element.child == null) {
-          schottky.createLeftChilds(element);
+          kappa = Math.min(kappaLBar(element), kappa);
+
+          return false;
         }
+      }
 
-        final SchottkyGroupElement[] child = element.child;
+      final KappaLBarVisitor kappaLBarVisitor = new KappaLBarVisitor();
 
-        final int numOfChilds = child.length;
+      final private double evalKappaLBar( double kappa, int wordLength ) {
 
-        for (int i = 0; i < numOfChilds; i++) {
-          kappa = evalKappaLBar(child[i], kappa, wordLength );
-        }
-        return kappa;
+        kappaLBarVisitor.kappa = kappa;
+        kappaLBarVisitor.wordLength = wordLength;
+
+        tree.walk(SchottkyWordTree.ROOT, kappaLBarVisitor);
+
+        return kappaLBarVisitor.kappa;
       }
 
       /**
@@ -348,7 +374,7 @@ class AbelianDifferential
 
 
         
-        return evalKappaLBar(schottky.id, Double.MAX_VALUE, wordLength );
+        return evalKappaLBar( Double.MAX_VALUE, wordLength );
       }
 
 
@@ -436,74 +462,700 @@ class AbelianDifferential
 //      s.im += H.im = im2 / as2 - im1 / as1;
     }
 
-    final void of1stKind(final SchottkyGroupElement element) {
+    /**
+     * Series of the normalized differential of 1st kind
+     * over the coset G/G_n. Each copy holds its own sum and error budget.
+     */
+    final class Of1stKindSeries
+        implements SchottkyWordTree.Series, SchottkyWordTree.BoundedSeries, Serializable {
 
-      if (element.updateID != updateID) {
-        schottky.updateElement(element);
+      private static final long serialVersionUID = 1L;
+
+      final Complex z = new Complex();
+      final Complex s = new Complex();
+      final Complex H = new Complex();
+
+      final Complex A = new Complex();
+      final Complex B = new Complex();
+
+      final Complex a = new Complex();
+      final Complex b = new Complex();
+
+      int n;
+
+      long [] noe;
+
+      double acc;
+      double eps;
+
+      final void H1st(final int element) {
+
+        tree.diff( element, B, A, H );
+
+        tree.getImageOfB( element, n, b );
+        H.assignDivide( z.re - b.re, z.im - b.im );
+        tree.getImageOfA( element, n, a );
+        H.assignDivide( z.re - a.re, z.im - a.im );
+
+        s.assignPlus( H );
       }
 
-      // remark: estimates only valid for word length greater or equal 2,
-      // therefore norm is inifinity for generators and id
-      final double error = L1[n] * element.norm * rho(element);
- 
-      if (error * noe[element.wordLength] < acc || error < eps ) {
-      	acc += acc / noe[element.wordLength] - error;
-      	return;
+      public boolean visit(final int element) {
+
+        final long noe = SchottkyWordTree.numOfElements(this.noe,
+            tree.getWordLength(element));
+
+        // remark: estimates only valid for word length greater or equal 2,
+        // therefore norm is inifinity for generators and id
+        final double error = L1[n] * tree.getNorm(element)
+            * rho[tree.getLeftIsInvert(element)][tree.getLeft(element)];
+
+        if (error * noe < acc || error < eps ) {
+          acc += acc / noe - error;
+          return false;
+        }
+
+        H1st(element);
+
+        return true;
       }
-      
-      H1st(element);
 
-      if (element.child == null) {
-        schottky.createLeftChilds(element);
+      public SchottkyWordTree.Series copy() {
+        final Of1stKindSeries copy = new Of1stKindSeries();
+        copy.z.assign(z);
+        copy.A.assign(A);
+        copy.B.assign(B);
+        copy.n = n;
+        copy.noe = noe;
+        copy.acc = acc;
+        copy.eps = eps;
+        return copy;
+      }
+
+      public void reduce(final SchottkyWordTree.Series other) {
+        final Of1stKindSeries series = (Of1stKindSeries) other;
+
+        s.assignPlus(series.s);
 
+        if (series.acc < 0) {
+          acc = series.acc;
+        }
       }
-      final SchottkyGroupElement[] child = element.child;
 
-      final int numOfChilds = child.length;
+      public double bound(final int element) {
+        return L1[n] * tree.getNorm(element)
+            * rho[tree.getLeftIsInvert(element)][tree.getLeft(element)];
+      }
 
-      for (int i = 0; i < numOfChilds; i++) {
-        of1stKind(child[i]);
+      public void add(final int element) {
+        H1st(element);
       }
     }
 
+    final Of1stKindSeries of1stKind = new Of1stKindSeries();
+
+    /**
+     * Computes the normalized differential of 1st kind with index n at z.
+     * If z lies outside the fundamental domain, the series is evaluated at
+     * the reduced point with the accuracy divided by the absolute value of
+     * the derivative of the reduction.
+     * @see Schottky#setReducingToFundamentalDomain(boolean)
+     */
     final void of1stKind
         (final Complex r,
          final Complex z,
          final int n, final double accuracy) {
 
+      if (schottky.reducingToFundamentalDomain && reduction.reduce(z)) {
+        of1stKindInF(r, reduction.z, n, accuracy / reduction.derivative.abs());
+        r.assignTimes(reduction.derivative);
+      }
+      else {
+        of1stKindInF(r, z, n, accuracy);
+      }
+    }
+
+    final void of1stKindInF
+        (final Complex r,
+         final Complex z,
+         final int n, final double accuracy) {
+
       if (updateID != schottky.updateID)
         update();
 
-      s.assign(0);
+      if (schottky.cachingExpansions) {
+        final ExpansionCache.Cell cell = schottky.expansionCache.cell(z, accuracy, this);
+        if (cell != null) {
+          cell.differential(n, z, r);
+          return;
+        }
+      }
 
-      this.z.assign(z);
-      this.n = n;
-      this.noe = schottky.numOfElementsOfCosetWithWordLength;
+      if (schottky.usingMultipoles && schottky.multipoles.differential(z, accuracy, n, r)) {
+        return;
+      }
+
+      final Of1stKindSeries series = of1stKind;
+
+      series.s.assign(0);
 
-      A.assign(schottky.fixpoint[n][0]);
-      B.assign(schottky.fixpoint[n][1]);
+      series.z.assign(z);
+      series.n = n;
+      series.noe = schottky.numOfElementsOfCosetWithWordLength;
 
-      H1st(schottky.id);
+      series.A.assign(schottky.fixpoint[n][0]);
+      series.B.assign(schottky.fixpoint[n][1]);
+
+      series.H1st(SchottkyWordTree.ROOT);
 
       if (numGenerators > 1) {
 
         prepareRho(z);
 
-        this.acc = accuracy;
-        this.eps = accuracy / schottky.maxNumOfElements;
-        
-        for (int i = 0; i < numGenerators; i++) {
-          if (i != n) {
-            of1stKind(schottky.generator[i]);
-            of1stKind(schottky.generatorInv[i]);
+        series.acc = accuracy;
+        series.eps = accuracy / schottky.maxNumOfElements;
+
+        if (schottky.bestFirst) {
+          tree.sumBestFirst(series, n, accuracy);
+        }
+        else {
+          tree.walk(series, n, executor());
+
+          if(series.acc < 0 ) // this test is needed because of the eps crieteria
+            throw new RuntimeException( "could not evaluate series because of numerical instabilities" );
+        }
+      }
+
+      r.assign(series.s);
+    }
+
+    /**
+     * Series of all normalized differentials of 1st kind.
+     * The component n is summed over the coset G/G_n,
+     * thus it excludes the words whose most right letter is n.
+     */
+    final class Of1stKindVectorSeries extends VectorSeries {
+
+      final Complex z = new Complex();
+      final Complex H = new Complex();
+
+      final Complex a = new Complex();
+      final Complex b = new Complex();
+
+      final Complex[] s = new Complex[numGenerators];
+
+      Of1stKindVectorSeries() {
+        super(AbelianDifferential.this.tree, numGenerators);
+
+        for (int n = 0; n < numGenerators; n++) {
+          s[n] = new Complex();
+        }
+      }
+
+      boolean excludes(final int element, final int n) {
+        return tree.getRight(element) == n;
+      }
+
+      double error(final int element, final int n) {
+        return L1[n] * tree.getNorm(element)
+            * rho[tree.getLeftIsInvert(element)][tree.getLeft(element)];
+      }
+
+      void add(final int element, final int n) {
+
+        tree.diff( element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], H );
+
+        tree.getImageOfB( element, n, b );
+        H.assignDivide( z.re - b.re, z.im - b.im );
+        tree.getImageOfA( element, n, a );
+        H.assignDivide( z.re - a.re, z.im - a.im );
+
+        s[n].assignPlus( H );
+      }
+
+      public SchottkyWordTree.Series copy() {
+        final Of1stKindVectorSeries copy = new Of1stKindVectorSeries();
+        copyTo(copy);
+        copy.z.assign(z);
+        return copy;
+      }
+
+      public void reduce(final SchottkyWordTree.Series other) {
+        final Of1stKindVectorSeries series = (Of1stKindVectorSeries) other;
+
+        for (int n = 0; n < numGenerators; n++) {
+          s[n].assignPlus(series.s[n]);
+        }
+
+        reduceBudget(series);
+      }
+    }
+
+    Of1stKindVectorSeries of1stKindVector;
+
+    /**
+     * Computes all normalized differentials of 1st kind in one walk;
+     * in best first mode each differential is summed on its own.
+     * Each differential gets the same terms as with {@link #of1stKind(Complex, Complex, int, double)}.
+     * @param r differentials on output
+     */
+    final void of1stKind
+        (final Complex[] r,
+         final Complex z, final double accuracy) {
+
+      if (schottky.reducingToFundamentalDomain && reduction.reduce(z)) {
+        of1stKindInF(r, reduction.z, accuracy / reduction.derivative.abs());
+        for (int n = 0; n < numGenerators; n++) {
+          r[n].assignTimes(reduction.derivative);
+        }
+      }
+      else {
+        of1stKindInF(r, z, accuracy);
+      }
+    }
+
+    final void of1stKindInF
+        (final Complex[] r,
+         final Complex z, final double accuracy) {
+
+      if (updateID != schottky.updateID)
+        update();
+
+      if (schottky.cachingExpansions) {
+        final ExpansionCache.Cell cell = schottky.expansionCache.cell(z, accuracy, this);
+        if (cell != null) {
+          for (int n = 0; n < numGenerators; n++) {
+            cell.differential(n, z, r[n]);
           }
+          return;
         }
       }
 
-      if(this.acc < 0 ) // this test is needed because of the eps crieteria
-      	throw new RuntimeException( "could not evaluate series because of numerical instabilities" );
-      
-      r.assign(s);
+      if (schottky.usingMultipoles && schottky.multipoles.differentials(z, accuracy, r)) {
+        return;
+      }
+
+      if (schottky.bestFirst) {
+        for (int n = 0; n < numGenerators; n++) {
+          of1stKindInF(r[n], z, n, accuracy);
+        }
+        return;
+      }
+
+      if (of1stKindVector == null) {
+        of1stKindVector = new Of1stKindVectorSeries();
+      }
+
+      final Of1stKindVectorSeries series = of1stKindVector;
+
+      series.z.assign(z);
+
+      for (int n = 0; n < numGenerators; n++) {
+        series.s[n].assign(0);
+        series.add(SchottkyWordTree.ROOT, n);
+      }
+
+      if (numGenerators > 1) {
+
+        prepareRho(z);
+
+        series.reset(schottky.numOfElementsOfCosetWithWordLength,
+                     accuracy, accuracy / schottky.maxNumOfElements);
+
+        tree.walk(series, -1, executor());
+
+        series.checkBudget();
+      }
+
+      for (int n = 0; n < numGenerators; n++) {
+        r[n].assign(series.s[n]);
+      }
+    }
+
+    /**
+     * Series of the normalized differential of 1st kind with index n
+     * at several points. The component j is the value at the point z[j];
+     * it gets the same terms as {@link Of1stKindSeries} for this point.
+     * The difference of the images of the fixpoints and the images
+     * themselves do not depend on the point, they are computed only once
+     * for each visited word.
+     */
+    final class Of1stKindPointsSeries extends VectorSeries {
+
+      final Complex[] z;
+      final Complex[] s;
+
+      /* derivative of the reduction of the point j into F */
+      final Complex[] derivative;
+
+      /* rho[j] is rho at z[j] */
+      final double[][][] rho;
+
+      int n;
+
+      /* word for which H, a and b are valid */
+      int word;
+
+      final Complex H = new Complex();
+      final Complex h = new Complex();
+
+      final Complex a = new Complex();
+      final Complex b = new Complex();
+
+      Of1stKindPointsSeries(final int numOfPoints) {
+        super(AbelianDifferential.this.tree, numOfPoints);
+
+        z = Complex.createArray(numOfPoints);
+        s = Complex.createArray(numOfPoints);
+
+        derivative = Complex.createArray(numOfPoints);
+
+        rho = new double[numOfPoints][2][numGenerators];
+
+        word = -1;
+      }
+
+      void begin(final int element) {
+        word = -1;
+      }
+
+      boolean excludes(final int element, final int j) {
+        return false;
+      }
+
+      double error(final int element, final int j) {
+        return L1[n] * tree.getNorm(element)
+            * rho[j][tree.getLeftIsInvert(element)][tree.getLeft(element)];
+      }
+
+      void add(final int element, final int j) {
+
+        if (word != element) {
+          tree.diff( element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], H );
+          tree.getImageOfB( element, n, b );
+          tree.getImageOfA( element, n, a );
+          word = element;
+        }
+
+        final Complex z = this.z[j];
+
+        h.assign( H );
+        h.assignDivide( z.re - b.re, z.im - b.im );
+        h.assignDivide( z.re - a.re, z.im - a.im );
+
+        s[j].assignPlus( h );
+      }
+
+      public SchottkyWordTree.Series copy() {
+        final Of1stKindPointsSeries copy = new Of1stKindPointsSeries(numOfComponents);
+        copyTo(copy);
+        copy.n = n;
+        for (int j = 0; j < numOfComponents; j++) {
+          copy.z[j].assign(z[j]);
+          for (int i = 0; i < 2; i++) {
+            System.arraycopy(rho[j][i], 0, copy.rho[j][i], 0, numGenerators);
+          }
+        }
+        return copy;
+      }
+
+      public void reduce(final SchottkyWordTree.Series other) {
+        final Of1stKindPointsSeries series = (Of1stKindPointsSeries) other;
+
+        for (int j = 0; j < numOfComponents; j++) {
+          s[j].assignPlus(series.s[j]);
+        }
+
+        reduceBudget(series);
+      }
+    }
+
+    /* maximal number of points which are evaluated in one walk */
+    static final int POINTS_BLOCK_SIZE = 64;
+
+    Of1stKindPointsSeries of1stKindPoints;
+
+    /**
+     * Computes the normalized differential of 1st kind with index n at
+     * the points z[offset],...,z[offset+numOfPoints-1]. The points are
+     * evaluated in blocks; each block is one walk through the coset G/G_n,
+     * in which a subtree is only pruned if it is neglible for all points
+     * of the block. Each point gets the same terms as with
+     * {@link #of1stKind(Complex, Complex, int, double)}.
+     * @param r values on output, r[offset+j] belongs to z[offset+j]
+     */
+    final void of1stKind
+        (final Complex[] r,
+         final Complex[] z, final int offset, final int numOfPoints,
+         final int n, final double accuracy) {
+
+      if (updateID != schottky.updateID)
+        update();
+
+      if (schottky.cachingExpansions) {
+
+        // the points without expansion are evaluated in blocks
+        final Complex[] zOfSeries = new Complex[numOfPoints];
+        final int[] index = new int[numOfPoints];
+
+        int numOfSeries = 0;
+
+        for (int j = 0; j < numOfPoints; j++) {
+
+          final Complex p = z[offset + j];
+
+          final boolean reduced = schottky.reducingToFundamentalDomain && reduction.reduce(p);
+
+          final Complex zInF = reduced ? reduction.z : p;
+          final double acc = reduced ? accuracy / reduction.derivative.abs() : accuracy;
+
+          final ExpansionCache.Cell cell = schottky.expansionCache.cell(zInF, acc, this);
+
+          if (cell == null) {
+            zOfSeries[numOfSeries] = p;
+            index[numOfSeries++] = offset + j;
+            continue;
+          }
+
+          cell.differential(n, zInF, r[offset + j]);
+
+          if (reduced) {
+            r[offset + j].assignTimes(reduction.derivative);
+          }
+        }
+
+        if (numOfSeries > 0) {
+
+          final Complex[] rOfSeries = Complex.createArray(numOfSeries);
+
+          of1stKindOfBlocks(rOfSeries, zOfSeries, 0, numOfSeries, n, accuracy);
+
+          for (int j = 0; j < numOfSeries; j++) {
+            r[index[j]].assign(rOfSeries[j]);
+          }
+        }
+      }
+      else {
+        of1stKindOfBlocks(r, z, offset, numOfPoints, n, accuracy);
+      }
+    }
+
+    final void of1stKindOfBlocks
+        (final Complex[] r,
+         final Complex[] z, final int offset, final int numOfPoints,
+         final int n, final double accuracy) {
+
+      for (int first = 0; first < numOfPoints; first += POINTS_BLOCK_SIZE) {
+
+        final int size = Math.min(POINTS_BLOCK_SIZE, numOfPoints - first);
+
+        if (of1stKindPoints == null || of1stKindPoints.numOfComponents != size) {
+          of1stKindPoints = new Of1stKindPointsSeries(size);
+        }
+
+        final Of1stKindPointsSeries series = of1stKindPoints;
+
+        series.n = n;
+        series.word = -1;
+
+        for (int j = 0; j < size; j++) {
+          if (schottky.reducingToFundamentalDomain && reduction.reduce(z[offset + first + j])) {
+            series.z[j].assign(reduction.z);
+            series.derivative[j].assign(reduction.derivative);
+          }
+          else {
+            series.z[j].assign(z[offset + first + j]);
+            series.derivative[j].assign(1);
+          }
+          series.s[j].assign(0);
+          series.add(SchottkyWordTree.ROOT, j);
+        }
+
+        if (numGenerators > 1) {
+
+          for (int j = 0; j < size; j++) {
+            prepareRho(series.z[j]);
+            for (int i = 0; i < 2; i++) {
+              System.arraycopy(rho[i], 0, series.rho[j][i], 0, numGenerators);
+            }
+          }
+
+          series.reset(schottky.numOfElementsOfCosetWithWordLength,
+                       accuracy, accuracy / schottky.maxNumOfElements);
+
+          for (int j = 0; j < size; j++) {
+            series.acc[j] /= series.derivative[j].abs();
+            series.eps = Math.min(series.eps, series.acc[j] / schottky.maxNumOfElements);
+          }
+
+          tree.walk(series, n, executor());
+
+          series.checkBudget();
+        }
+
+        for (int j = 0; j < size; j++) {
+          r[offset + first + j].assign(series.s[j]);
+          r[offset + first + j].assignTimes(series.derivative[j]);
+        }
+      }
+    }
+
+    /**
+     * Taylor coefficients at c of all normalized differentials of 1st kind.
+     * The term of a word is <code>1/(z-b)-1/(z-a)</code>, its coefficient k
+     * is <code>u^(k+1)-v^(k+1)</code> with <code>u=1/(a-c)</code> and
+     * <code>v=1/(b-c)</code>; it is computed by the recursion
+     * <code>D_k = u D_(k-1) + v^k (u-v)</code>, starting with
+     * <code>u-v=(b-a)uv</code>, which does not cancel for close a and b.
+     * The component n is summed over the coset G/G_n.
+     */
+    final class TaylorSeries extends VectorSeries {
+
+      final Complex c = new Complex();
+
+      /* bound of a term on the cell divided by |b-a| */
+      double factor;
+
+      final double[][] re, im;
+
+      /* sum of |b-a| of the words other than identity */
+      final double[] sumOfH;
+
+      final Complex H = new Complex();
+
+      final Complex a = new Complex();
+      final Complex b = new Complex();
+
+      TaylorSeries(final int degree) {
+        super(AbelianDifferential.this.tree, numGenerators);
+
+        re = new double[numGenerators][degree + 1];
+        im = new double[numGenerators][degree + 1];
+        sumOfH = new double[numGenerators];
+      }
+
+      boolean excludes(final int element, final int n) {
+        return tree.getRight(element) == n;
+      }
+
+      double error(final int element, final int n) {
+        tree.diff(element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], H);
+        return factor * H.abs();
+      }
+
+      void add(final int element, final int n) {
+
+        tree.diff(element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], H);
+
+        tree.getImageOfA(element, n, a);
+        tree.getImageOfB(element, n, b);
+
+        sumOfH[n] += H.abs();
+
+        // u = 1/(a-c), v = 1/(b-c)
+        a.assignMinus(c);
+        a.assignInvert();
+        b.assignMinus(c);
+        b.assignInvert();
+
+        final double uRe = a.re, uIm = a.im;
+        final double vRe = b.re, vIm = b.im;
+
+        // w = u-v = H u v
+        H.assignTimes(a);
+        H.assignTimes(b);
+
+        double wRe = H.re, wIm = H.im;
+        double dRe = wRe, dIm = wIm;
+
+        final double[] re = this.re[n];
+        final double[] im = this.im[n];
+
+        re[0] += dRe;
+        im[0] += dIm;
+
+        for (int k = 1; k < re.length; k++) {
+
+          final double tRe = wRe * vRe - wIm * vIm;
+          wIm = wRe * vIm + wIm * vRe;
+          wRe = tRe;
+
+          final double sRe = dRe * uRe - dIm * uIm + wRe;
+          dIm = dRe * uIm + dIm * uRe + wIm;
+          dRe = sRe;
+
+          re[k] += dRe;
+          im[k] += dIm;
+        }
+      }
+
+      public SchottkyWordTree.Series copy() {
+        final TaylorSeries copy = new TaylorSeries(re[0].length - 1);
+        copyTo(copy);
+        copy.c.assign(c);
+        copy.factor = factor;
+        return copy;
+      }
+
+      public void reduce(final SchottkyWordTree.Series other) {
+        final TaylorSeries series = (TaylorSeries) other;
+
+        for (int n = 0; n < numGenerators; n++) {
+          for (int k = 0; k < re[n].length; k++) {
+            re[n][k] += series.re[n][k];
+            im[n][k] += series.im[n][k];
+          }
+          sumOfH[n] += series.sumOfH[n];
+        }
+
+        reduceBudget(series);
+      }
+    }
+
+    /**
+     * Computes the Taylor coefficients at c of all normalized differentials
+     * of 1st kind, whose degree is given by the length of the arrays.
+     * A word is neglected if the bound of its term on the cell is small.
+     * @param c center of the expansion
+     * @param dist lower bound of the distance of the cell to the circles
+     * @param accuracy error budget of each differential on the cell
+     * @param re real parts of the coefficients on output, [n][k]
+     * @param im imaginary parts of the coefficients on output, [n][k]
+     * @param sumOfH sum of |b-a| of the summed words other than identity on output
+     */
+    final void taylorCoefficients
+        (final Complex c, final double dist, final double accuracy,
+         final double[][] re, final double[][] im, final double[] sumOfH) {
+
+      if (updateID != schottky.updateID)
+        update();
+
+      final TaylorSeries series = new TaylorSeries(re[0].length - 1);
+
+      series.c.assign(c);
+      series.factor = 2 / (dist * dist);
+
+      for (int n = 0; n < numGenerators; n++) {
+        series.add(SchottkyWordTree.ROOT, n);
+        // the remainder of the identity is bounded separately
+        series.sumOfH[n] = 0;
+      }
+
+      if (numGenerators > 1) {
+
+        series.reset(schottky.numOfElementsOfCosetWithWordLength,
+                     accuracy, accuracy / schottky.maxNumOfElements);
+
+        tree.walk(series, -1, executor());
+
+        series.checkBudget();
+      }
+
+      for (int n = 0; n < numGenerators; n++) {
+        System.arraycopy(series.re[n], 0, re[n], 0, re[n].length);
+        System.arraycopy(series.im[n], 0, im[n], 0, im[n].length);
+        sumOfH[n] = series.sumOfH[n];
+      }
     }
 
     Of1stKindAnalysis of1stKindAnalysis = new Of1stKindAnalysis();
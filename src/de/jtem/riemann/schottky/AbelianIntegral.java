@@ -46,6 +46,8 @@ class AbelianIntegral {
 
   final Schottky schottky;
 
+  final SchottkyWordTree tree;
+
   final double[][] rho;
 
   final int numGenerators;
@@ -56,14 +58,25 @@ class AbelianIntegral {
 
   AbelianIntegral(Schottky schottky) {
     this.schottky = schottky;
+    tree = schottky.wordTree;
     numGenerators = schottky.numGenerators;
-    updateID = schottky.updateID;
+    updateID = -1;
     rho = new double[2][numGenerators];
+    k2 = new double[2][numGenerators];
+    kVisitor = schottky.new KVisitor();
+    reduction = new DomainReduction(schottky);
   }
 
+  final DomainReduction reduction;
+
   final Complex zOfRho
       = new Complex(Double.NaN);
 
+  /* k for word length 3 at zOfRho */
+  final double[][] k2;
+
+  final Schottky.KVisitor kVisitor;
+
   final Complex z = new Complex();
   final Complex p = new Complex();
   final Complex H = new Complex();
@@ -126,7 +139,9 @@ class AbelianIntegral {
       final double R2Plus = schottky.rPlus(R2, q_);
 
       //final double[][] k2 = schottky.k2(z);
-      final double[][] k2 = schottky.kIndexed(z, 3);
+      if (!schottky.cachingBounds || !schottky.kGrid.lowerBounds(z, k2, kVisitor)) {
+        kVisitor.eval(z, k2, 3);
+      }
 
       for (int j = 0; j < 2; j++) {
         for (int m = 0; m < numGenerators; m++) {
@@ -157,7 +172,8 @@ class AbelianIntegral {
 
 
       //double dOfZ = schottky.d2(z);
-      double dOfZ = schottky.k(z,3);
+      double dOfZ = schottky.cachingBounds && schottky.kGrid.lowerBounds(z, k2, kVisitor)
+          ? KGrid.min(k2) : kVisitor.eval(z, null, 3);
 
       for (int j = 0; j < 2; j++) {
         for (int m = 0; m < numGenerators; m++) {
@@ -168,46 +184,145 @@ class AbelianIntegral {
     }
   }
 
-  final void of1stKind(final SchottkyGroupElement element) {
+  /**
+   * Product over the coset G/G_n, whose logarithm is the
+   * normalized integral of 1st kind. Each copy holds its own
+   * partial product and error budget.
+   */
+  final class Of1stKindSeries
+      implements SchottkyWordTree.Series {
+
+    final Complex z = new Complex();
+    final Complex p = new Complex();
+    final Complex H = new Complex();
+    final Complex d = new Complex();
 
-    if (element.updateID != updateID) {
-      schottky.updateElement(element);
-    }
+    final Complex A = new Complex();
+    final Complex B = new Complex();
 
-    element.diff(B, A, d);
+    final Complex a = new Complex();
+    final Complex b = new Complex();
 
-    final double error = (Math.abs(d.re) + Math.abs(d.im)) * rho(element);
+    int n;
 
-    if (error * noe[element.wordLength] < acc || error < eps ) {
-      acc += acc / noe[element.wordLength] - error;
-      return;
-    }
-    
-    H.assignDivide(z.re - element.imageOfB[n].re,
-                   z.im - element.imageOfB[n].im,
-                   z.re - element.imageOfA[n].re,
-                   z.im - element.imageOfA[n].im);
+    long [] noe;
+
+    double acc;
+    double eps;
 
-    p.assignTimes(H);
+    public boolean visit(final int element) {
 
-    if (element.child == null) {
-      schottky.createLeftChilds(element);
+      final long noe = SchottkyWordTree.numOfElements(this.noe,
+          tree.getWordLength(element));
 
+      tree.diff(element, B, A, d);
+
+      final double error = (Math.abs(d.re) + Math.abs(d.im))
+          * rho[tree.getLeftIsInvert(element)][tree.getLeft(element)];
+
+      if (error * noe < acc || error < eps ) {
+        acc += acc / noe - error;
+        return false;
+      }
+
+      tree.getImageOfA(element, n, a);
+      tree.getImageOfB(element, n, b);
+
+      H.assignDivide(z.re - b.re, z.im - b.im,
+                     z.re - a.re, z.im - a.im);
+
+      p.assignTimes(H);
+
+      return true;
+    }
+
+    public SchottkyWordTree.Series copy() {
+      final Of1stKindSeries copy = new Of1stKindSeries();
+      copy.z.assign(z);
+      copy.A.assign(A);
+      copy.B.assign(B);
+      copy.p.assign(1);
+      copy.n = n;
+      copy.noe = noe;
+      copy.acc = acc;
+      copy.eps = eps;
+      return copy;
     }
-    final SchottkyGroupElement[] child = element.child;
 
-    final int numOfChilds = child.length;
+    public void reduce(final SchottkyWordTree.Series other) {
+      final Of1stKindSeries series = (Of1stKindSeries) other;
 
-    for (int i = 0; i < numOfChilds; i++) {
-      of1stKind(child[i]);
+      p.assignTimes(series.p);
+
+      if (series.acc < 0) {
+        acc = series.acc;
+      }
     }
   }
 
+  final Of1stKindSeries of1stKind = new Of1stKindSeries();
+
+  /**
+   * Computes the normalized integral of 1st kind with index n at z.
+   * If z lies outside the fundamental domain, the series is evaluated at
+   * the reduced point and the periods of the reduction are added;
+   * the accuracy is shared by the series and the periods.
+   * The result is normalized, whether the series, an expansion or
+   * a reduction was used.
+   * @see Schottky#setReducingToFundamentalDomain(boolean)
+   * @see #normalize(Complex)
+   */
   final void eval
       (final Complex r,
        final Complex z,
        final int n, final double accuracy) {
 
+    if (schottky.reducingToFundamentalDomain && reduction.reduce(z)) {
+      final double acc = accuracy / (1 + reduction.numOfPeriods());
+      evalInF(r, reduction.z, n, acc);
+      reduction.addPeriods(r, n, acc);
+    }
+    else {
+      evalInF(r, z, n, accuracy);
+    }
+
+    normalize(r);
+  }
+
+  /**
+   * Normalizes the imaginary part of an integral of 1st kind
+   * to [-pi,pi]. The integral is the logarithm of a product, thus
+   * its imaginary part is only defined modulo 2pi.
+   */
+  static void normalize(final Complex r) {
+    r.im = Math.IEEEremainder(r.im, 2 * Math.PI);
+  }
+
+  final void evalInF
+      (final Complex r,
+       final Complex z,
+       final int n, final double accuracy) {
+
+    if (updateID != schottky.updateID) {
+      update();
+    }
+
+    if (schottky.cachingExpansions) {
+      final ExpansionCache.Cell cell = cell(z, accuracy);
+      if (cell != null) {
+        cell.integral(n, z, r);
+        return;
+      }
+    }
+
+    if (schottky.usingMultipoles && schottky.multipoles.integral(z, accuracy, n, r)) {
+      return;
+    }
+
+    final Of1stKindSeries series = of1stKind;
+
+    final Complex p = series.p;
+
     p.assignDivide(z.re - schottky.fixpoint[n][1].re,
                    z.im - schottky.fixpoint[n][1].im,
                    z.re - schottky.fixpoint[n][0].re,
@@ -219,30 +334,205 @@ class AbelianIntegral {
 
       prepareRho(z);
 
-      this.noe = schottky.numOfElementsOfCosetWithWordLength;
+      series.noe = schottky.numOfElementsOfCosetWithWordLength;
 
-      this.A.assign(schottky.fixpoint[n][0]);
-      this.B.assign(schottky.fixpoint[n][1]);
+      series.A.assign(schottky.fixpoint[n][0]);
+      series.B.assign(schottky.fixpoint[n][1]);
 
-      this.z.assign(z);
-      this.n = n;
-      this.acc = accuracy;
-      this.eps = accuracy / schottky.maxNumOfElements;
-      
-      for (int i = 0; i < numGenerators; i++) {
-        if (i != n) {
-          of1stKind(schottky.generator[i]);
-          of1stKind(schottky.generatorInv[i]);
-        }
-      }
+      series.z.assign(z);
+      series.n = n;
+      series.acc = accuracy;
+      series.eps = accuracy / schottky.maxNumOfElements;
+
+      tree.walk(series, n, schottky.executor);
     }
  
-    if(this.acc < 0 ) // this test is needed because of the eps crieteria
+    if(series.acc < 0 ) // this test is needed because of the eps crieteria
     	throw new RuntimeException( "could not evaluate series because of numerical instabilities" );
     
     r.assignLog(p);
   }
 
+  /**
+   * Products of all normalized integrals of 1st kind.
+   * The component n is taken over the coset G/G_n,
+   * thus it excludes the words whose most right letter is n.
+   */
+  final class Of1stKindVectorSeries extends VectorSeries {
+
+    final Complex z = new Complex();
+    final Complex H = new Complex();
+    final Complex d = new Complex();
+
+    final Complex a = new Complex();
+    final Complex b = new Complex();
+
+    final Complex[] p = new Complex[numGenerators];
+
+    Of1stKindVectorSeries() {
+      super(AbelianIntegral.this.tree, numGenerators);
+
+      for (int n = 0; n < numGenerators; n++) {
+        p[n] = new Complex();
+      }
+    }
+
+    boolean excludes(final int element, final int n) {
+      return tree.getRight(element) == n;
+    }
+
+    double error(final int element, final int n) {
+
+      tree.diff(element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], d);
+
+      return (Math.abs(d.re) + Math.abs(d.im))
+          * rho[tree.getLeftIsInvert(element)][tree.getLeft(element)];
+    }
+
+    void add(final int element, final int n) {
+
+      tree.getImageOfA(element, n, a);
+      tree.getImageOfB(element, n, b);
+
+      H.assignDivide(z.re - b.re, z.im - b.im,
+                     z.re - a.re, z.im - a.im);
+
+      p[n].assignTimes(H);
+    }
+
+    public SchottkyWordTree.Series copy() {
+      final Of1stKindVectorSeries copy = new Of1stKindVectorSeries();
+      copyTo(copy);
+      copy.z.assign(z);
+      for (int n = 0; n < numGenerators; n++) {
+        copy.p[n].assign(1);
+      }
+      return copy;
+    }
+
+    public void reduce(final SchottkyWordTree.Series other) {
+      final Of1stKindVectorSeries series = (Of1stKindVectorSeries) other;
+
+      for (int n = 0; n < numGenerators; n++) {
+        p[n].assignTimes(series.p[n]);
+      }
+
+      reduceBudget(series);
+    }
+  }
+
+  Of1stKindVectorSeries of1stKindVector;
+
+  /**
+   * Computes all normalized integrals of 1st kind in one walk.
+   * Each integral gets the same factors as with {@link #eval(Complex, Complex, int, double)}.
+   * @param r integrals on output
+   */
+  final void eval
+      (final Complex[] r,
+       final Complex z, final double accuracy) {
+
+    if (schottky.reducingToFundamentalDomain && reduction.reduce(z)) {
+      final double acc = accuracy / (1 + reduction.numOfPeriods());
+      evalInF(r, reduction.z, acc);
+      for (int n = 0; n < numGenerators; n++) {
+        reduction.addPeriods(r[n], n, acc);
+      }
+    }
+    else {
+      evalInF(r, z, accuracy);
+    }
+
+    for (int n = 0; n < numGenerators; n++) {
+      normalize(r[n]);
+    }
+  }
+
+  final void evalInF
+      (final Complex[] r,
+       final Complex z, final double accuracy) {
+
+    if (updateID != schottky.updateID) {
+      update();
+    }
+
+    if (schottky.cachingExpansions) {
+      final ExpansionCache.Cell cell = cell(z, accuracy);
+      if (cell != null) {
+        for (int n = 0; n < numGenerators; n++) {
+          cell.integral(n, z, r[n]);
+        }
+        return;
+      }
+    }
+
+    if (schottky.usingMultipoles && schottky.multipoles.integrals(z, accuracy, r)) {
+      return;
+    }
+
+    evalSeries(r, z, accuracy);
+  }
+
+  /* computes the coefficients of new cells */
+  AbelianDifferential differential;
+
+  /**
+   * Returns the expanded cell of z, whose integrals at the center
+   * are computed on first use.
+   */
+  final ExpansionCache.Cell cell(final Complex z, final double accuracy) {
+
+    if (differential == null) {
+      differential = new AbelianDifferential(schottky);
+    }
+
+    final ExpansionCache.Cell cell = schottky.expansionCache.cell(z, accuracy, differential);
+
+    if (cell != null && cell.integral == null) {
+      final Complex[] integral = Complex.createArray(numGenerators);
+      evalSeries(integral, cell.center, cell.accuracy / 2);
+      cell.integral = integral;
+    }
+
+    return cell;
+  }
+
+  final void evalSeries
+      (final Complex[] r,
+       final Complex z, final double accuracy) {
+
+    if (of1stKindVector == null) {
+      of1stKindVector = new Of1stKindVectorSeries();
+    }
+
+    final Of1stKindVectorSeries series = of1stKindVector;
+
+    series.z.assign(z);
+
+    for (int n = 0; n < numGenerators; n++) {
+      series.p[n].assignDivide(z.re - schottky.fixpoint[n][1].re,
+                               z.im - schottky.fixpoint[n][1].im,
+                               z.re - schottky.fixpoint[n][0].re,
+                               z.im - schottky.fixpoint[n][0].im);
+    }
+
+    if (numGenerators > 1) {
+
+      prepareRho(z);
+
+      series.reset(schottky.numOfElementsOfCosetWithWordLength,
+                   accuracy, accuracy / schottky.maxNumOfElements);
+
+      tree.walk(series, -1, schottky.executor);
+
+      series.checkBudget();
+    }
+
+    for (int n = 0; n < numGenerators; n++) {
+      r[n].assignLog(series.p[n]);
+    }
+  }
+
   Of1stKindAnalysis of1stKindAnalysis = new Of1stKindAnalysis();
 
   /**
@@ -403,68 +693,208 @@ class AbelianIntegral {
   }
 
 
-  final void of3rdKind(final SchottkyGroupElement element) {
+  /**
+   * Products over the whole group, whose logarithms are the integrals of
+   * 3rd kind for several pairs of poles at several points. The component
+   * <code>i*numOfPoints+j</code> belongs to the pair <code>A[i],B[i]</code> and
+   * the point <code>z[j]</code>. The images of the poles under a word are
+   * computed once for all points.
+   */
+  final class Of3rdKindSeries extends VectorSeries {
+
+    final int numOfPairs, numOfPoints;
+
+    final Complex[] A, B;
+    final Complex[] z;
+
+    final Complex[] p;
+
+    /* rho[j] is rho at z[j] */
+    final double[][][] rho;
+
+    /* word for which the images of the poles are valid */
+    int word;
+
+    /* images of the poles and their differences under word */
+    final Complex[] a, b, d;
+
+    final boolean[] valid;
+
+    final Complex H = new Complex();
+
+    Of3rdKindSeries(final int numOfPairs, final int numOfPoints) {
+      super(AbelianIntegral.this.tree, numOfPairs * numOfPoints);
+
+      this.numOfPairs = numOfPairs;
+      this.numOfPoints = numOfPoints;
+
+      A = Complex.createArray(numOfPairs);
+      B = Complex.createArray(numOfPairs);
+      z = Complex.createArray(numOfPoints);
+
+      p = Complex.createArray(numOfComponents);
+
+      rho = new double[numOfPoints][2][numGenerators];
+
+      a = Complex.createArray(numOfPairs);
+      b = Complex.createArray(numOfPairs);
+      d = Complex.createArray(numOfPairs);
+
+      valid = new boolean[numOfPairs];
+
+      word = -1;
+    }
+
+    void begin(final int element) {
+      word = element;
+      for (int i = 0; i < numOfPairs; i++) {
+        valid[i] = false;
+      }
+    }
+
+    /* computes the images of the poles of pair i under word */
+    final void images(final int i) {
+      if (!valid[i]) {
+        tree.diff(word, B[i], A[i], d[i]);
+        tree.applyTo(word, A[i], a[i]);
+        tree.applyTo(word, B[i], b[i]);
+        valid[i] = true;
+      }
+    }
 
-    if (element.updateID != updateID) {
-      schottky.updateElement(element);
+    boolean excludes(final int element, final int c) {
+      return false;
     }
 
-    element.diff(B, A, d);
+    double error(final int element, final int c) {
 
-    final double error = (Math.abs(d.re) + Math.abs(d.im)) * rho(element);
+      images(c / numOfPoints);
 
-    if (error * noe[element.wordLength] < acc || error < eps ) {
-    	acc += acc / noe[element.wordLength] - error;
-    	return;
+      final Complex d = this.d[c / numOfPoints];
+
+      return (Math.abs(d.re) + Math.abs(d.im))
+          * rho[c % numOfPoints][tree.getLeftIsInvert(element)][tree.getLeft(element)];
     }
-    
-    element.applyTo(A, a);
-    element.applyTo(B, b);
 
-    H.assignDivide(z.re - b.re, z.im - b.im,
-                   z.re - a.re, z.im - a.im);
+    void add(final int element, final int c) {
+
+      final int i = c / numOfPoints;
+
+      images(i);
 
-    p.assignTimes(H);
+      final Complex z = this.z[c % numOfPoints];
+      final Complex a = this.a[i];
+      final Complex b = this.b[i];
 
-    if (element.child == null) {
-      schottky.createLeftChilds(element);
+      H.assignDivide(z.re - b.re, z.im - b.im,
+                     z.re - a.re, z.im - a.im);
 
+      p[c].assignTimes(H);
     }
 
-    final SchottkyGroupElement[] child = element.child;
+    public SchottkyWordTree.Series copy() {
+      final Of3rdKindSeries copy = new Of3rdKindSeries(numOfPairs, numOfPoints);
+      copyTo(copy);
+      for (int i = 0; i < numOfPairs; i++) {
+        copy.A[i].assign(A[i]);
+        copy.B[i].assign(B[i]);
+      }
+      for (int j = 0; j < numOfPoints; j++) {
+        copy.z[j].assign(z[j]);
+        for (int k = 0; k < 2; k++) {
+          System.arraycopy(rho[j][k], 0, copy.rho[j][k], 0, numGenerators);
+        }
+      }
+      for (int c = 0; c < numOfComponents; c++) {
+        copy.p[c].assign(1);
+      }
+      return copy;
+    }
 
-    final int numOfChilds = child.length;
+    public void reduce(final SchottkyWordTree.Series other) {
+      final Of3rdKindSeries series = (Of3rdKindSeries) other;
+
+      for (int c = 0; c < numOfComponents; c++) {
+        p[c].assignTimes(series.p[c]);
+      }
 
-    for (int i = 0; i < numOfChilds; i++) {
-      of3rdKind(child[i]);
+      reduceBudget(series);
     }
   }
 
+  Of3rdKindSeries of3rdKind;
+
+  /**
+   * Computes the integrals of 3rd kind with poles <code>A[i],B[i]</code> at
+   * the points <code>z[j]</code> in one walk through the group.
+   * A subtree is only pruned if it is neglible for all pairs and points.
+   * @param r integrals on output, r[i][j] belongs to pair i and point z[j]
+   */
   final void of3rdKind
-      (final Complex r,
-       final Complex z,
-       final Complex A, final Complex B,
+      (final Complex[][] r,
+       final Complex[] z,
+       final Complex[] A, final Complex[] B,
        final double accuracy) {
 
-    this.noe = schottky.numOfElementsWithWordLength;
+    if (updateID != schottky.updateID) {
+      update();
+    }
 
-    this.A.assign(A);
-    this.B.assign(B);
+    final int numOfPairs = A.length;
+    final int numOfPoints = z.length;
 
-    this.z.assign(z);
-    this.acc = accuracy;
-    this.eps = accuracy / schottky.maxNumOfElements;
-    
-    prepareRho(z);
+    if (of3rdKind == null
+        || of3rdKind.numOfPairs != numOfPairs
+        || of3rdKind.numOfPoints != numOfPoints) {
+      of3rdKind = new Of3rdKindSeries(numOfPairs, numOfPoints);
+    }
 
-    p.assign(1);
+    final Of3rdKindSeries series = of3rdKind;
 
-    of3rdKind(schottky.id);
-    
-    if(this.acc < 0 ) // this test is needed because of the eps crieteria
-    	throw new RuntimeException( "could not evaluate series because of numerical instabilities" );
-    
-    r.assignLog(p);
+    for (int i = 0; i < numOfPairs; i++) {
+      series.A[i].assign(A[i]);
+      series.B[i].assign(B[i]);
+    }
+
+    for (int j = 0; j < numOfPoints; j++) {
+      series.z[j].assign(z[j]);
+      prepareRho(z[j]);
+      for (int k = 0; k < 2; k++) {
+        System.arraycopy(rho[k], 0, series.rho[j][k], 0, numGenerators);
+      }
+    }
+
+    // the identity
+    for (int i = 0; i < numOfPairs; i++) {
+      for (int j = 0; j < numOfPoints; j++) {
+        series.p[i * numOfPoints + j].assignDivide(z[j].re - B[i].re, z[j].im - B[i].im,
+                                                   z[j].re - A[i].re, z[j].im - A[i].im);
+      }
+    }
+
+    series.reset(schottky.numOfElementsWithWordLength,
+                 accuracy, accuracy / schottky.maxNumOfElements);
+
+    tree.walk(series, -1, schottky.executor);
+
+    series.checkBudget();
+
+    for (int i = 0; i < numOfPairs; i++) {
+      for (int j = 0; j < numOfPoints; j++) {
+        r[i][j].assignLog(series.p[i * numOfPoints + j]);
+      }
+    }
+  }
+
+  final void of3rdKind
+      (final Complex r,
+       final Complex z,
+       final Complex A, final Complex B,
+       final double accuracy) {
+
+    final Complex[][] values = new Complex[][] { { r } };
+
+    of3rdKind(values, new Complex[] { z }, new Complex[] { A }, new Complex[] { B }, accuracy);
   }
 
 
@@ -264,12 +264,12 @@ public class AbelianIntegralAnalysisFunctionFactory {
   }
 
   private static  final class AnalysisCheckFunctionFor1stKind extends de.jtem.riemann.schottky.SchottkyAnalysisFunction.ForIndexedProperty {
-	  final Complex r = new Complex();
-	  final Complex a = new Complex();
 	  private AnalysisCheckFunctionFor1stKind(Schottky schottky, double testAcc, int n) {
 		  super(schottky, testAcc, n);
 	  }
 	  public double eval(Complex z) {
+		  final Complex r = new Complex();
+		  final Complex a = new Complex();
 		  schottky.abelianIntegral.of1stKindAnalysis.
 			  eval(a, z, n, acc);
 		  schottky.abelianIntegralOf1stKind(r,z,n,acc);
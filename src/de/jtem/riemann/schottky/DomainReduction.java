@@ -0,0 +1,223 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.io.Serializable;
+
+import de.jtem.blas.ComplexMatrix;
+import de.jtem.mfc.field.Complex;
+
+/**
+ * Reduction of a point into the fundamental domain.
+ * <p>
+ * The series of the differentials and integrals converge slowly for points
+ * close to or inside the isometric circles, since there the images of the
+ * point come close to the limit set. A point <code>z</code> inside the
+ * circle of <code>generator[i]</code> is mapped by <code>generatorInv[i]</code>,
+ * a point inside the circle of <code>generatorInv[i]</code> by
+ * <code>generator[i]</code>, until it lies in the fundamental domain F.
+ * The result is the image <code>z0 = tau(z)</code> in F, the derivative
+ * of the reduction <code>tau</code> at <code>z</code>, and for each
+ * generator the sum of the exponents with which it occurs in the word
+ * <code>tau^-1</code>.
+ * <p>
+ * The values at <code>z</code> follow from the values at <code>z0</code>
+ * by the automorphy: a differential of 1st kind gets the factor
+ * <code>tau'(z)</code>, the integral of 1st kind with index n gets the
+ * periods <code>exponent[m] B[n][m]</code> modulo <code>2 pi i</code>.
+ * The period matrix is kept until the Schottky data changes; it is
+ * computed with an own evaluator, thus reductions of different contexts
+ * may be used concurrently.
+ */
+final class DomainReduction implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /* the reduction gives up for longer words, the point is then evaluated directly */
+  static final int MAX_WORD_LENGTH = 100;
+
+  /* points closer to a circle are not mapped */
+  static final double REL_TOL = 1e-12;
+
+  final Schottky schottky;
+
+  final int numGenerators;
+
+  /* image of the point in F */
+  final Complex z = new Complex();
+
+  /* derivative of the reduction at the point */
+  final Complex derivative = new Complex();
+
+  /* sum of exponents of each generator in the inverse of the reduction */
+  final int[] exponent;
+
+  int wordLength;
+
+  final Complex a = new Complex();
+  final Complex b = new Complex();
+  final Complex c = new Complex();
+  final Complex d = new Complex();
+  final Complex w = new Complex();
+
+  PeriodMatrix periods;
+
+  ComplexMatrix periodMatrix;
+
+  double accuracyOfPeriodMatrix;
+
+  int updateID = -1;
+
+  DomainReduction(final Schottky schottky) {
+    this.schottky = schottky;
+    numGenerators = schottky.numGenerators;
+    exponent = new int[numGenerators];
+  }
+
+  /**
+   * Maps p into the fundamental domain.
+   * @param p point
+   * @return true if p was mapped and lies now in F; false if p already
+   * lies in F or the word of the reduction became too long
+   */
+  boolean reduce(final Complex p) {
+
+    z.assign(p);
+    derivative.assign(1);
+    wordLength = 0;
+
+    for (int m = 0; m < numGenerators; m++) {
+      exponent[m] = 0;
+    }
+
+    reduce:
+    while (true) {
+
+      for (int i = 0; i < numGenerators; i++) {
+
+        final double thresh = schottky.radius[i] * schottky.radius[i] * (1 - 2 * REL_TOL);
+
+        for (int j = 0; j < 2; j++) {
+
+          if (!(schottky.center[i][j].distSqr(z) < thresh)) {
+            continue;
+          }
+
+          if (wordLength == MAX_WORD_LENGTH) {
+            return false;
+          }
+
+          // the circle with j=1 is the image of F under generator[i]
+          final SchottkyGroupElement h = j == 1
+              ? schottky.generatorInv[i]
+              : schottky.generator[i];
+
+          // h'(z) = ( ad - bc ) / ( cz + d )^2
+          h.getA(a);
+          h.getB(b);
+          h.getC(c);
+          h.getD(d);
+
+          a.assignTimes(d);
+          b.assignTimes(c);
+          a.assignMinus(b);
+
+          c.assignTimes(z);
+          c.assignPlus(d);
+          c.assignSqr();
+
+          a.assignDivide(c);
+
+          derivative.assignTimes(a);
+
+          h.applyTo(z, w);
+          z.assign(w);
+
+          exponent[i] += j == 1 ? 1 : -1;
+          wordLength++;
+
+          continue reduce;
+        }
+      }
+
+      return wordLength > 0;
+    }
+  }
+
+  /**
+   * Returns the sum of the absolute values of the exponents, which
+   * bounds the factor of the error of the period matrix in the periods
+   * of the last reduction.
+   */
+  int numOfPeriods() {
+
+    int num = 0;
+
+    for (int m = 0; m < numGenerators; m++) {
+      num += Math.abs(exponent[m]);
+    }
+
+    return num;
+  }
+
+  /**
+   * Adds the periods of the last reduction to the integral of 1st kind
+   * with index n.
+   */
+  void addPeriods(final Complex r, final int n, final double accuracy) {
+
+    if (updateID != schottky.updateID || accuracyOfPeriodMatrix > accuracy) {
+
+      if (periods == null) {
+        periods = new PeriodMatrix(schottky);
+        periodMatrix = new ComplexMatrix(numGenerators);
+      }
+
+      periods.eval(periodMatrix, accuracy);
+
+      accuracyOfPeriodMatrix = accuracy;
+      updateID = schottky.updateID;
+    }
+
+    for (int m = 0; m < numGenerators; m++) {
+
+      if (exponent[m] == 0) {
+        continue;
+      }
+
+      periodMatrix.get(n, m, w);
+
+      r.re += exponent[m] * w.re;
+      r.im += exponent[m] * w.im;
+    }
+  }
+}
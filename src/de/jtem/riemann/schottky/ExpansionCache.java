@@ -0,0 +1,327 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.jtem.mfc.field.Complex;
+
+/**
+ * Grid of Taylor expansions of the normalized differentials and
+ * integrals of 1st kind.
+ * <p>
+ * Each cell of the grid holds the Taylor polynomials at its center c of
+ * all differentials of 1st kind; the integrals are the integrated
+ * polynomials plus their values at c. A query inside the cell is then
+ * a polynomial evaluation instead of a walk through the group.
+ * <p>
+ * The polynomials are certified: a term of the series is
+ * <code>1/(z-b)-1/(z-a)</code> with <code>a,b</code> the images of the
+ * fixpoints of generator n under the word. For words other than the identity
+ * the segment from a to b lies inside one circle and thus in distance
+ * <code>R</code> from c. For <code>|z-c|<=r</code> the term and its
+ * Taylor polynomial are bounded by <code>|b-a|/(R-r)^2</code>, and the
+ * remainder of degree K by
+ * <code>|b-a| q^(K+1) ( (K+1)/(R(R-r)) + 1/(R-r)^2 )</code>
+ * with <code>q=r/R</code>. The identity adds at most
+ * <code>2 q^(K+1)/(R-r)</code> to the remainder. The degree is the smallest
+ * one whose remainder is below half of the accuracy, the other half is the
+ * error budget of the series of the coefficients.
+ * <p>
+ * Only cells with <code>q<=Q</code> are expanded, which excludes
+ * the cells close to the circles; there and outside the grid no expansion
+ * is given and the series has to be evaluated. A cell is computed when it is
+ * first used and is kept until the Schottky data changes or a higher
+ * accuracy is asked for. The grid may be used concurrently, each thread
+ * computes new cells with its own differential. As for {@link KGrid},
+ * the geometry and the cells are published together as one immutable
+ * {@link Snapshot}.
+ */
+final class ExpansionCache implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /* number of cells in each direction */
+  static final int SIZE = 64;
+
+  static final int MAX_DEGREE = 24;
+
+  /* maximal ratio of radius of cell and distance to circles */
+  static final double Q = 0.25;
+
+  /**
+   * Taylor expansions of one cell.
+   */
+  static final class Cell implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final Complex center;
+
+    /* accuracy of the differentials and integrals */
+    final double accuracy;
+
+    /* degree of the differentials, or -1 if the cell has no expansion */
+    final int degree;
+
+    /* Taylor coefficients of the differentials, [n][k] */
+    final double[][] re, im;
+
+    /* integrals at center, or null if not yet computed */
+    volatile Complex[] integral;
+
+    Cell(final Complex center, final double accuracy, final int degree,
+         final double[][] re, final double[][] im) {
+      this.center = center;
+      this.accuracy = accuracy;
+      this.degree = degree;
+      this.re = re;
+      this.im = im;
+    }
+
+    /**
+     * Evaluates the differential with index n at z.
+     */
+    void differential(final int n, final Complex z, final Complex r) {
+
+      final double[] re = this.re[n];
+      final double[] im = this.im[n];
+
+      final double dRe = z.re - center.re;
+      final double dIm = z.im - center.im;
+
+      double sRe = re[degree];
+      double sIm = im[degree];
+
+      for (int k = degree - 1; k >= 0; k--) {
+        final double tRe = sRe * dRe - sIm * dIm + re[k];
+        sIm = sRe * dIm + sIm * dRe + im[k];
+        sRe = tRe;
+      }
+
+      r.assign(sRe, sIm);
+    }
+
+    /**
+     * Evaluates the integral with index n at z.
+     */
+    void integral(final int n, final Complex z, final Complex r) {
+
+      final double[] re = this.re[n];
+      final double[] im = this.im[n];
+
+      final double dRe = z.re - center.re;
+      final double dIm = z.im - center.im;
+
+      double sRe = re[degree] / (degree + 1);
+      double sIm = im[degree] / (degree + 1);
+
+      for (int k = degree - 1; k >= 0; k--) {
+        final double tRe = sRe * dRe - sIm * dIm + re[k] / (k + 1);
+        sIm = sRe * dIm + sIm * dRe + im[k] / (k + 1);
+        sRe = tRe;
+      }
+
+      final Complex u = integral[n];
+
+      r.assign(sRe * dRe - sIm * dIm + u.re,
+               sRe * dIm + sIm * dRe + u.im);
+    }
+  }
+
+  final Schottky schottky;
+
+  final int numGenerators;
+
+  /**
+   * Geometry and cells of the grid for one update of the Schottky data.
+   */
+  static final class Snapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final int updateID;
+
+    final double minX, minY, cellWidth, cellHeight;
+
+    /* radius of the cells */
+    final double r;
+
+    /* expansions of the cells, or null if not yet computed */
+    final AtomicReferenceArray<Cell> cells;
+
+    Snapshot(final int updateID,
+             final double minX, final double minY,
+             final double cellWidth, final double cellHeight) {
+      this.updateID = updateID;
+      this.minX = minX;
+      this.minY = minY;
+      this.cellWidth = cellWidth;
+      this.cellHeight = cellHeight;
+
+      r = Math.sqrt(cellWidth * cellWidth + cellHeight * cellHeight) / 2;
+
+      cells = new AtomicReferenceArray<Cell>(SIZE * SIZE);
+    }
+  }
+
+  volatile Snapshot snapshot;
+
+  ExpansionCache(final Schottky schottky) {
+    this.schottky = schottky;
+    numGenerators = schottky.numGenerators;
+  }
+
+  /**
+   * Returns the snapshot of the grid for the current Schottky data.
+   */
+  synchronized Snapshot update() {
+
+    if (snapshot != null && snapshot.updateID == schottky.updateID) {
+      return snapshot;
+    }
+
+    final double[] bound = SchottkyDomainSampler.getBound(schottky);
+
+    // the grid extends the box of the circles by half its size on each side
+    final double width = bound[2] - bound[0];
+    final double height = bound[3] - bound[1];
+
+    snapshot = new Snapshot(schottky.updateID,
+                            bound[0] - width / 2, bound[1] - height / 2,
+                            2 * width / SIZE, 2 * height / SIZE);
+
+    return snapshot;
+  }
+
+  /**
+   * Returns the cell of z with the given accuracy.
+   * @param z point
+   * @param accuracy of the differentials and integrals
+   * @param differential which computes the coefficients of a new cell
+   * @return cell of z, or null if no expansion is given and the series
+   * has to be evaluated
+   */
+  Cell cell(final Complex z, final double accuracy,
+            final AbelianDifferential differential) {
+
+    Snapshot grid = snapshot;
+
+    if (grid == null || grid.updateID != schottky.updateID) {
+      grid = update();
+    }
+
+    final double x = (z.re - grid.minX) / grid.cellWidth;
+    final double y = (z.im - grid.minY) / grid.cellHeight;
+
+    if (!(x >= 0 && x < SIZE && y >= 0 && y < SIZE)) {
+      return null;
+    }
+
+    final int index = (int) y * SIZE + (int) x;
+
+    final AtomicReferenceArray<Cell> cells = grid.cells;
+
+    Cell cell = cells.get(index);
+
+    if (cell == null || cell.accuracy > accuracy) {
+      cell = expand(new Complex(grid.minX + ((int) x + 0.5) * grid.cellWidth,
+                                grid.minY + ((int) y + 0.5) * grid.cellHeight),
+                    grid.r, accuracy, differential);
+      cells.set(index, cell);
+    }
+
+    return cell.degree < 0 ? null : cell;
+  }
+
+  /**
+   * Returns distance of c to the circles.
+   */
+  double distToCircles(final Complex c) {
+
+    double min = Double.MAX_VALUE;
+
+    for (int i = 0; i < numGenerators; i++) {
+      for (int j = 0; j < 2; j++) {
+        min = Math.min(min, schottky.center[i][j].dist(c) - schottky.radius[i]);
+      }
+    }
+
+    return min;
+  }
+
+  /**
+   * Computes the expansions of a cell with center c and radius r.
+   */
+  Cell expand(final Complex c, final double r, final double accuracy,
+              final AbelianDifferential differential) {
+
+    final double R = distToCircles(c);
+
+    if (!(r <= Q * R)) {
+      return new Cell(c, accuracy, -1, null, null);
+    }
+
+    // the integrals get the error of the differentials times r
+    final double acc = accuracy / (2 * Math.max(1, r));
+
+    final double[][] re = new double[numGenerators][MAX_DEGREE + 1];
+    final double[][] im = new double[numGenerators][MAX_DEGREE + 1];
+    final double[] sumOfH = new double[numGenerators];
+
+    differential.taylorCoefficients(c, R - r, acc / 2, re, im, sumOfH);
+
+    final double q = r / R;
+
+    double maxSumOfH = 0;
+
+    for (int n = 0; n < numGenerators; n++) {
+      maxSumOfH = Math.max(maxSumOfH, sumOfH[n]);
+    }
+
+    double qPow = q;
+
+    for (int degree = 0; degree <= MAX_DEGREE; degree++, qPow *= q) {
+
+      final double remainder = qPow
+          * (maxSumOfH * ((degree + 1) / (R * (R - r)) + 1 / ((R - r) * (R - r)))
+             + 2 / (R - r));
+
+      if (remainder < acc / 2) {
+        return new Cell(c, accuracy, degree, re, im);
+      }
+    }
+
+    return new Cell(c, accuracy, -1, null, null);
+  }
+}
@@ -0,0 +1,204 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.jtem.mfc.field.Complex;
+
+/**
+ * Grid of lower bounds of k for the words with word length 3.
+ * <p>
+ * The error estimates of the differentials and integrals need
+ * k( sigma, z ), the distance of z to the target circle of sigma,
+ * minimized for each first letter over all words of word length 3.
+ * Computing this means walking all words of word length 3. Since k is a
+ * minimum of distances, it is Lipschitz continuous with constant 1; thus
+ * the value at the center c of a cell of the grid gives the lower
+ * bound k(c) - |z-c| for each z in the cell. Lower bounds of k only make
+ * the error estimates more conservative.
+ * <p>
+ * The values at the centers are computed when a cell is first used and are
+ * kept until the Schottky data changes. If z lies outside the grid or if
+ * the bound would lose more than half of k(c), which happens close
+ * to the circles, no bound is given and k has to be computed exactly.
+ * The grid may be used concurrently, each thread with its own visitor.
+ * Its geometry and cells are published together as one immutable
+ * {@link Snapshot}, thus a thread never pairs the geometry of one
+ * update with the cells of another.
+ */
+final class KGrid implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  static final int WORD_LENGTH = 3;
+
+  /* number of cells in each direction */
+  static final int SIZE = 64;
+
+  final Schottky schottky;
+
+  final int numGenerators;
+
+  /**
+   * Geometry and cells of the grid for one update of the Schottky data.
+   */
+  static final class Snapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final int updateID;
+
+    final double minX, minY, cellWidth, cellHeight;
+
+    /* k at the centers of the cells, or null if not yet computed */
+    final AtomicReferenceArray<double[][]> cells;
+
+    Snapshot(final int updateID,
+             final double minX, final double minY,
+             final double cellWidth, final double cellHeight) {
+      this.updateID = updateID;
+      this.minX = minX;
+      this.minY = minY;
+      this.cellWidth = cellWidth;
+      this.cellHeight = cellHeight;
+
+      cells = new AtomicReferenceArray<double[][]>(SIZE * SIZE);
+    }
+  }
+
+  volatile Snapshot snapshot;
+
+  KGrid(final Schottky schottky) {
+    this.schottky = schottky;
+    numGenerators = schottky.numGenerators;
+  }
+
+  /**
+   * Returns the snapshot of the grid for the current Schottky data.
+   */
+  synchronized Snapshot update() {
+
+    if (snapshot != null && snapshot.updateID == schottky.updateID) {
+      return snapshot;
+    }
+
+    final double[] bound = SchottkyDomainSampler.getBound(schottky);
+
+    // the grid extends the box of the circles by half its size on each side
+    final double width = bound[2] - bound[0];
+    final double height = bound[3] - bound[1];
+
+    snapshot = new Snapshot(schottky.updateID,
+                            bound[0] - width / 2, bound[1] - height / 2,
+                            2 * width / SIZE, 2 * height / SIZE);
+
+    return snapshot;
+  }
+
+  /**
+   * Computes lower bounds of k for z.
+   * @param z point
+   * @param k lower bound of k for each first letter on output;
+   * undefined if false is returned
+   * @param kVisitor visitor which computes k at the center of a new cell
+   * @return false if no bound is given and k has to be computed exactly
+   */
+  boolean lowerBounds(final Complex z, final double[][] k, final Schottky.KVisitor kVisitor) {
+
+    Snapshot grid = snapshot;
+
+    if (grid == null || grid.updateID != schottky.updateID) {
+      grid = update();
+    }
+
+    final double x = (z.re - grid.minX) / grid.cellWidth;
+    final double y = (z.im - grid.minY) / grid.cellHeight;
+
+    if (!(x >= 0 && x < SIZE && y >= 0 && y < SIZE)) {
+      return false;
+    }
+
+    final int ix = (int) x;
+    final int iy = (int) y;
+
+    final double centerX = grid.minX + (ix + 0.5) * grid.cellWidth;
+    final double centerY = grid.minY + (iy + 0.5) * grid.cellHeight;
+
+    final AtomicReferenceArray<double[][]> cells = grid.cells;
+
+    double[][] kOfCenter = cells.get(iy * SIZE + ix);
+
+    if (kOfCenter == null) {
+      kOfCenter = new double[2][numGenerators];
+      kVisitor.eval(new Complex(centerX, centerY), kOfCenter, WORD_LENGTH);
+      cells.set(iy * SIZE + ix, kOfCenter);
+    }
+
+    final double dx = z.re - centerX;
+    final double dy = z.im - centerY;
+
+    final double dist = Math.sqrt(dx * dx + dy * dy);
+
+    for (int i = 0; i < 2; i++) {
+      for (int n = 0; n < numGenerators; n++) {
+
+        final double kOfZ = kOfCenter[i][n] - dist;
+
+        if (kOfZ < kOfCenter[i][n] / 2) {
+          return false;
+        }
+
+        k[i][n] = kOfZ;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns minimum of k for all first letters.
+   */
+  static double min(final double[][] k) {
+
+    double min = Double.MAX_VALUE;
+
+    for (int i = 0; i < k.length; i++) {
+      for (int n = 0; n < k[i].length; n++) {
+        min = Math.min(min, k[i][n]);
+      }
+    }
+
+    return min;
+  }
+}
@@ -0,0 +1,670 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.jtem.mfc.field.Complex;
+
+/**
+ * Searches the global extremum of a function over the fundamental domain
+ * by many local searches. The function is evaluated at the points of a
+ * cover of the domain, see {@link SchottkyDomainSampler#getCover}; the best
+ * of them, which are not closer to each other than the start separation,
+ * are the starts of local searches by powells algorithm. The best samples
+ * of one basin are usually neighbors, thus the separation spreads the starts
+ * over several basins. A start is skipped, if a local extremum which is at
+ * least as good as its sample has been found closer than the start separation.
+ * Starts which converge to the same point, i.e. into the same basin, are
+ * counted once. If the schottky group has an executor, the samples and the
+ * local searches are evaluated by independent tasks, each with its own copy
+ * of the function and of the schottky group, because the functions are not
+ * thread safe; the local searches run in rounds of one start per task.
+ */
+public class MultiStartExtremizer {
+
+  final SchottkyAnalysisFunction function;
+
+  double dense = 0.05;
+
+  double xDist = 0.5, yDist = 0.5;
+
+  int numOfStarts = 16;
+
+  double ftol = 1e-10;
+
+  int maxNumOfSteps = 50;
+
+  double basinRadius = 1e-4;
+
+  double startSeparation = 2;
+
+  /** maximal number of tasks of a parallel search */
+  int numOfTasks = Runtime.getRuntime().availableProcessors();
+
+  /** function of each task; the first is the function, the others evaluate copies */
+  SchottkyAnalysisFunction[] functionOfTask = new SchottkyAnalysisFunction[0];
+
+  /** copies of schottky group for the tasks */
+  Schottky[] schottkyOfTask = new Schottky[0];
+
+  int[] updateIDOfTask = new int[0];
+
+  public MultiStartExtremizer(SchottkyAnalysisFunction function) {
+
+    if (function == null) {
+      throw new NullPointerException("must prescribe function");
+    }
+
+    this.function = function;
+  }
+
+  public SchottkyAnalysisFunction getFunction() {
+    return function;
+  }
+
+  /**
+   * Returns density of the cover which provides the starts.
+   */
+  public double getDense() {
+    return dense;
+  }
+
+  /**
+   * Sets density of the cover which provides the starts.
+   * @param dense distance of raster points relative to the bound
+   * @see SchottkyDomainSampler#getCover(Schottky, double, double, double)
+   */
+  public void setDense(double dense) {
+    this.dense = dense;
+  }
+
+  public double getXDist() {
+    return xDist;
+  }
+
+  /**
+   * Sets distance of the cover to the bounding box of the circles in x.
+   */
+  public void setXDist(double xDist) {
+    this.xDist = xDist;
+  }
+
+  public double getYDist() {
+    return yDist;
+  }
+
+  /**
+   * Sets distance of the cover to the bounding box of the circles in y.
+   */
+  public void setYDist(double yDist) {
+    this.yDist = yDist;
+  }
+
+  public int getNumOfStarts() {
+    return numOfStarts;
+  }
+
+  /**
+   * Sets maximal number of local searches, which start at the best
+   * points of the cover that are separated by the start separation.
+   */
+  public void setNumOfStarts(int numOfStarts) {
+    if (numOfStarts < 1) {
+      throw new IllegalArgumentException("number of starts must be positive");
+    }
+    this.numOfStarts = numOfStarts;
+  }
+
+  public double getFtol() {
+    return ftol;
+  }
+
+  /**
+   * Sets tolerance of powells algorithm.
+   */
+  public void setFtol(double ftol) {
+    this.ftol = ftol;
+  }
+
+  public int getMaxNumOfSteps() {
+    return maxNumOfSteps;
+  }
+
+  /**
+   * Sets maximal number of steps of powells algorithm.
+   */
+  public void setMaxNumOfSteps(int maxNumOfSteps) {
+    this.maxNumOfSteps = maxNumOfSteps;
+  }
+
+  public double getBasinRadius() {
+    return basinRadius;
+  }
+
+  /**
+   * Sets distance below which two results of local searches belong
+   * to the same basin.
+   */
+  public void setBasinRadius(double basinRadius) {
+    this.basinRadius = basinRadius;
+  }
+
+  public double getStartSeparation() {
+    return startSeparation;
+  }
+
+  /**
+   * Sets minimal distance of two starts in multiples of the distance of
+   * the raster points of the cover; a start is also skipped, if a local
+   * extremum within this distance is at least as good as its sample.
+   */
+  public void setStartSeparation(double startSeparation) {
+    this.startSeparation = startSeparation;
+  }
+
+  /**
+   * Returns maximal number of tasks, into which a search is split
+   * if the schottky group has an executor.
+   */
+  public int getNumOfTasks() {
+    return numOfTasks;
+  }
+
+  /**
+   * Sets maximal number of tasks, into which the sampling and the local
+   * searches are split if the schottky group has an executor.
+   * The default is the number of available processors.
+   */
+  public void setNumOfTasks(int numOfTasks) {
+    if (numOfTasks < 1) {
+      throw new IllegalArgumentException("number of tasks must be positive");
+    }
+    this.numOfTasks = numOfTasks;
+  }
+
+  /**
+   * Global extremum and statistics of the search.
+   */
+  public static final class Result {
+
+    final Complex z;
+
+    final double value;
+
+    final int numOfSamples;
+
+    final int numOfStarts;
+
+    final int numOfFailedStarts;
+
+    final int numOfSkippedStarts;
+
+    final Complex[] extremum;
+
+    final double[] valueOfExtremum;
+
+    final int[] numOfStartsOfExtremum;
+
+    Result(int numOfSamples, int numOfStarts, int numOfFailedStarts, int numOfSkippedStarts,
+           List<Complex> extrema, List<Double> values, List<Integer> counts, boolean maximize) {
+
+      this.numOfSamples = numOfSamples;
+      this.numOfStarts = numOfStarts;
+      this.numOfFailedStarts = numOfFailedStarts;
+      this.numOfSkippedStarts = numOfSkippedStarts;
+
+      final double[] v = new double[values.size()];
+
+      for (int i = 0; i < v.length; i++) {
+        v[i] = values.get(i).doubleValue();
+      }
+
+      // order basins by their values
+      final int[] order = bestSamples(v, v.length, maximize);
+
+      extremum = new Complex[order.length];
+      valueOfExtremum = new double[order.length];
+      numOfStartsOfExtremum = new int[order.length];
+
+      for (int i = 0; i < order.length; i++) {
+        extremum[i] = extrema.get(order[i]);
+        valueOfExtremum[i] = v[order[i]];
+        numOfStartsOfExtremum[i] = counts.get(order[i]).intValue();
+      }
+
+      z = extremum.length > 0 ? new Complex(extremum[0]) : new Complex(Double.NaN);
+      value = extremum.length > 0 ? valueOfExtremum[0] : Double.NaN;
+    }
+
+    /**
+     * Returns position of global extremum.
+     */
+    public Complex getZ() {
+      return new Complex(z);
+    }
+
+    /**
+     * Returns value of global extremum.
+     */
+    public double getValue() {
+      return value;
+    }
+
+    /**
+     * Returns number of points of the cover at which the function
+     * has been evaluated.
+     */
+    public int getNumOfSamples() {
+      return numOfSamples;
+    }
+
+    /**
+     * Returns number of local searches.
+     */
+    public int getNumOfStarts() {
+      return numOfStarts;
+    }
+
+    /**
+     * Returns number of local searches which failed with an exception.
+     */
+    public int getNumOfFailedStarts() {
+      return numOfFailedStarts;
+    }
+
+    /**
+     * Returns number of starts which have been skipped, because a
+     * local extremum close to them had been found before.
+     */
+    public int getNumOfSkippedStarts() {
+      return numOfSkippedStarts;
+    }
+
+    /**
+     * Returns number of basins, i.e. of distinct local extrema.
+     */
+    public int getNumOfBasins() {
+      return extremum.length;
+    }
+
+    /**
+     * Returns the local extremum of basin i; the basins are ordered
+     * by their values, the first is the global extremum.
+     */
+    public Complex getExtremum(int i) {
+      return new Complex(extremum[i]);
+    }
+
+    public double getValueOfExtremum(int i) {
+      return valueOfExtremum[i];
+    }
+
+    /**
+     * Returns number of local searches which converged into basin i.
+     */
+    public int getNumOfStartsOfExtremum(int i) {
+      return numOfStartsOfExtremum[i];
+    }
+  }
+
+  /**
+   * Searches global minimum.
+   */
+  public Result minimize() {
+    return extremize(false);
+  }
+
+  /**
+   * Searches global maximum.
+   */
+  public Result maximize() {
+    return extremize(true);
+  }
+
+  Result extremize(final boolean maximize) {
+
+    final Schottky schottky = function.getSchottky();
+
+    final double[] xy = SchottkyDomainSampler.getCover(schottky, dense, xDist, yDist);
+
+    final int numOfSamples = xy.length / 2;
+
+    final ExecutorService executor = schottky.getExecutor();
+
+    final int numOfTasks = executor == null ? 1 : this.numOfTasks;
+
+    prepareTasks(schottky, numOfTasks);
+
+    final SchottkyAnalysisFunction[] functionOfTask = this.functionOfTask;
+
+    // samples of the cover
+    final double[] valueAtXY = new double[numOfSamples];
+
+    final List<Callable<Void>> sampling = new ArrayList<Callable<Void>>(numOfTasks);
+
+    for (int t = 0; t < numOfTasks; t++) {
+
+      final SchottkyAnalysisFunction f = functionOfTask[t];
+      final int begin = t * numOfSamples / numOfTasks;
+      final int end = (t + 1) * numOfSamples / numOfTasks;
+
+      sampling.add(new Callable<Void>() {
+        public Void call() {
+          final Complex z = new Complex();
+          for (int i = begin; i < end; i++) {
+            z.assign(xy[2 * i], xy[2 * i + 1]);
+            valueAtXY[i] = f.eval(z);
+          }
+          return null;
+        }
+      });
+    }
+
+    run(executor, sampling);
+
+    // distance of the raster points of the cover
+    final double[] bound = SchottkyDomainSampler.getBound(schottky);
+
+    final int numOfRows = (int) (1 / dense);
+
+    final double minDist = startSeparation
+        * Math.max(bound[2] - bound[0] + 2 * xDist, bound[3] - bound[1] + 2 * yDist) / numOfRows;
+
+    // best separated samples, ordered by their values
+    final int[] start = separatedSamples(xy, valueAtXY, numOfStarts, minDist, maximize);
+
+    // results within the basin radius are the same extremum
+    final List<Complex> extrema = new ArrayList<Complex>();
+    final List<Double> values = new ArrayList<Double>();
+    final List<Integer> counts = new ArrayList<Integer>();
+
+    int numOfSearches = 0;
+    int numOfFailedStarts = 0;
+    int numOfSkippedStarts = 0;
+
+    final Complex[] z = new Complex[numOfTasks];
+    final double[] value = new double[numOfTasks];
+    final boolean[] failed = new boolean[numOfTasks];
+
+    for (int next = 0; next < start.length;) {
+
+      // one start for each task, which is not close to a found extremum
+      final int[] round = new int[numOfTasks];
+
+      int size = 0;
+
+      for (; next < start.length && size < numOfTasks; next++) {
+
+        final int k = start[next];
+
+        boolean skip = false;
+
+        for (int basin = 0; basin < extrema.size() && !skip; basin++) {
+          final Complex e = extrema.get(basin);
+          final double v = values.get(basin).doubleValue();
+          skip = Math.hypot(e.re - xy[2 * k], e.im - xy[2 * k + 1]) < minDist
+              && (maximize ? v >= valueAtXY[k] : v <= valueAtXY[k]);
+        }
+
+        if (skip) {
+          numOfSkippedStarts++;
+        }
+        else {
+          round[size++] = k;
+        }
+      }
+
+      final List<Callable<Void>> searching = new ArrayList<Callable<Void>>(size);
+
+      for (int t = 0; t < size; t++) {
+
+        final SchottkyAnalysisFunction f = functionOfTask[t];
+
+        final int task = t;
+        final int k = round[t];
+
+        searching.add(new Callable<Void>() {
+          public Void call() {
+            z[task] = new Complex(xy[2 * k], xy[2 * k + 1]);
+            failed[task] = false;
+            try {
+              value[task] = maximize
+                  ? f.maximize(z[task], ftol, maxNumOfSteps)
+                  : f.minimize(z[task], ftol, maxNumOfSteps);
+            }
+            catch (RuntimeException e) {
+              failed[task] = true;
+            }
+            return null;
+          }
+        });
+      }
+
+      run(executor, searching);
+
+      numOfSearches += size;
+
+      for (int t = 0; t < size; t++) {
+
+        if (failed[t] || Double.isNaN(value[t])) {
+          numOfFailedStarts++;
+          continue;
+        }
+
+        int basin = 0;
+        while (basin < extrema.size() && extrema.get(basin).dist(z[t]) > basinRadius) {
+          basin++;
+        }
+
+        if (basin < extrema.size()) {
+          counts.set(basin, Integer.valueOf(counts.get(basin).intValue() + 1));
+
+          final double v = values.get(basin).doubleValue();
+
+          // the basin is represented by its best result
+          if (maximize ? value[t] > v : value[t] < v) {
+            extrema.set(basin, z[t]);
+            values.set(basin, Double.valueOf(value[t]));
+          }
+        }
+        else {
+          extrema.add(z[t]);
+          values.add(Double.valueOf(value[t]));
+          counts.add(Integer.valueOf(1));
+        }
+      }
+    }
+
+    return new Result(numOfSamples, numOfSearches, numOfFailedStarts, numOfSkippedStarts,
+                      extrema, values, counts, maximize);
+  }
+
+  /** provides the function and a copy of schottky group for each task */
+  void prepareTasks(Schottky schottky, int numOfTasks) {
+
+    if (schottkyOfTask.length < numOfTasks) {
+
+      Schottky[] newSchottkyOfTask = new Schottky[numOfTasks];
+      SchottkyAnalysisFunction[] newFunctionOfTask = new SchottkyAnalysisFunction[numOfTasks];
+      int[] newUpdateIDOfTask = new int[numOfTasks];
+
+      System.arraycopy(schottkyOfTask, 0, newSchottkyOfTask, 0, schottkyOfTask.length);
+      System.arraycopy(updateIDOfTask, 0, newUpdateIDOfTask, 0, updateIDOfTask.length);
+
+      for (int t = updateIDOfTask.length; t < numOfTasks; t++) {
+        newUpdateIDOfTask[t] = -1;
+      }
+
+      schottkyOfTask = newSchottkyOfTask;
+      functionOfTask = newFunctionOfTask;
+      updateIDOfTask = newUpdateIDOfTask;
+    }
+
+    functionOfTask[0] = function;
+
+    for (int t = 1; t < numOfTasks; t++) {
+
+      if (updateIDOfTask[t] != schottky.updateID) {
+        schottkyOfTask[t] = schottky.copy();
+        updateIDOfTask[t] = schottky.updateID;
+      }
+
+      schottkyOfTask[t].assignSettings(schottky);
+
+      // the function may have changed since the last search
+      functionOfTask[t] = function.copy(schottkyOfTask[t]);
+    }
+  }
+
+  /**
+   * Returns indices of at most n of the smallest, or largest, values in
+   * the order of their values, such that the distance of the points of two
+   * indices is at least minDist; NaN values are left out.
+   */
+  static int[] separatedSamples(final double[] xy, final double[] value, final int n,
+                                final double minDist, final boolean largest) {
+
+    final int[] order = bestSamples(value, value.length, largest);
+
+    final int[] separated = new int[Math.min(n, order.length)];
+
+    int size = 0;
+
+    for (int i = 0; i < order.length && size < separated.length; i++) {
+
+      final int k = order[i];
+
+      if (Double.isNaN(value[k])) {
+        break;
+      }
+
+      boolean close = false;
+
+      for (int j = 0; j < size && !close; j++) {
+        close = Math.hypot(xy[2 * k] - xy[2 * separated[j]],
+                           xy[2 * k + 1] - xy[2 * separated[j] + 1]) < minDist;
+      }
+
+      if (!close) {
+        separated[size++] = k;
+      }
+    }
+
+    final int[] result = new int[size];
+    System.arraycopy(separated, 0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * Returns indices of the n smallest, or largest, values in
+   * the order of their values; NaN values are last.
+   */
+  static int[] bestSamples(final double[] value, final int n, final boolean largest) {
+
+    final Integer[] index = new Integer[value.length];
+
+    for (int i = 0; i < index.length; i++) {
+      index[i] = Integer.valueOf(i);
+    }
+
+    Arrays.sort(index, new Comparator<Integer>() {
+      public int compare(Integer o1, Integer o2) {
+        double v1 = value[o1.intValue()];
+        double v2 = value[o2.intValue()];
+        if (largest) {
+          v1 = -v1;
+          v2 = -v2;
+        }
+        return Double.compare(v1, v2);
+      }
+    });
+
+    final int[] best = new int[n];
+
+    for (int i = 0; i < n; i++) {
+      best[i] = index[i].intValue();
+    }
+
+    return best;
+  }
+
+  static void run(final ExecutorService executor, final List<Callable<Void>> tasks) {
+
+    try {
+      if (executor == null || tasks.size() == 1) {
+        for (int t = 0; t < tasks.size(); t++) {
+          tasks.get(t).call();
+        }
+        return;
+      }
+    }
+    catch (RuntimeException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+
+    for (int t = 0; t < tasks.size(); t++) {
+      futures.add(executor.submit(tasks.get(t)));
+    }
+
+    try {
+      for (int t = 0; t < futures.size(); t++) {
+        futures.get(t).get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("interrupted while extremizing");
+    }
+    catch (ExecutionException e) {
+      throw e.getCause() instanceof RuntimeException
+          ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+    }
+    finally {
+      for (int t = 0; t < futures.size(); t++) {
+        futures.get(t).cancel(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,767 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.jtem.mfc.field.Complex;
+import de.jtem.mfc.group.Moebius;
+
+/**
+ * Multipole expansions of the clusters of deep words of the series of the
+ * normalized differentials and integrals of 1st kind.
+ * <p>
+ * The term of a word <code>&sigma;</code> of the coset G/G_n has its poles
+ * at <code>a=&sigma;(A_n)</code> and <code>b=&sigma;(B_n)</code>.
+ * If <code>&sigma;=w&tau;</code> with a left subword <code>w=l_1...l_L</code>
+ * of word length {@link #LEVEL}, both poles lie in the disc
+ * <code>D_w = l_1...l_(L-1)(C)</code>, where C is the disc bounded by
+ * the circle of <code>l_L</code>, since the coset excludes the words whose
+ * most right letter is a power of the generator n. Thus the words of a
+ * cluster <code>w&tau;</code> are seen from a point z far from
+ * <code>D_w</code> like a multipole at the center c of <code>D_w</code>:
+ * <pre>
+ *   sum 1/(z-b) - 1/(z-a)       = sum_k  M_k / (z-c)^(k+1)
+ *   sum log( (z-b) / (z-a) )    = sum_k -M_k / (k (z-c)^k)
+ * </pre>
+ * with the moments <code>M_k = sum (b-c)^k - (a-c)^k</code>, k&gt;0.
+ * The moments of all clusters are computed in one walk through the group;
+ * since the tree grows to the left, the cluster of a word is given by the
+ * left letters of the last L words on the path of the walk. A query
+ * sums the terms of the words shorter than L and the expansions of the
+ * clusters, thus its cost is the number of clusters instead of the number
+ * of words.
+ * <p>
+ * The expansions are certified: with <code>S = sum |b-a|</code> over the
+ * cluster, <code>r</code> the radius of <code>D_w</code> and
+ * <code>q=r/|z-c|</code>, the remainder of the differential after degree K
+ * is below <code>S (K+1) q^K / ((1-q)^2 |z-c|^2)</code>, the one of the
+ * integral below <code>S q^K / ((1-q) |z-c|)</code>; each cluster gets the
+ * smallest degree which meets its share of the accuracy. A word which has been
+ * neglected in the walk adds at most <code>|b-a|/d^2</code> to the
+ * differential and <code>2|b-a|/d</code> to the integral, where d is the
+ * distance of z to the circles. If these bounds do not meet the accuracy,
+ * e.g. close to the circles, no value is given and the series has to be
+ * evaluated.
+ * <p>
+ * The moments are computed for the accuracy of the first query and
+ * again for a query which needs more accuracy; they are kept until the
+ * Schottky data changes. The expansions may be used concurrently.
+ * The budget of the walk is bounded from below by {@link #MIN_EPS} times
+ * the accuracy and the walk may use at most {@link #MAX_SHARE_OF_WORDS}
+ * of the tree of words; a query which needs more is left to the series,
+ * which thus always finds room in the tree.
+ */
+final class Multipoles implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /* word length of the left subwords which define the clusters */
+  static final int LEVEL = 3;
+
+  static final int DEGREE = 24;
+
+  /* maximal ratio of radius of a cluster and distance to its center */
+  static final double Q = 0.4;
+
+  /* the error budget of the walk is smaller than needed for the query, which leaves room for closer points */
+  static final double EPS_FACTOR = 0.1;
+
+  /* minimal ratio of the budget of the walk and the accuracy of a query */
+  static final double MIN_EPS = 1e-8;
+
+  /* maximal share of Schottky#maxNumOfElements which the walk may allocate */
+  static final double MAX_SHARE_OF_WORDS = 0.5;
+
+  /**
+   * Moments of all clusters, computed for one error budget.
+   */
+  static final class Expansions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final int updateID;
+
+    /* budget of the neglected sum of |b-a| */
+    final double eps;
+
+    final int numOfClusters;
+
+    /* center and radius of the disc of each cluster */
+    final double[] cRe, cIm, radius;
+
+    /* moments, [n][cluster][k] */
+    final double[][][] re, im;
+
+    /* maximum over n of sum of |b-a| of each cluster */
+    final double[] sumOfH;
+
+    /* poles of the words shorter than LEVEL: a.re, a.im, b.re, b.im for each word, [n][] */
+    final double[][] poles;
+
+    Expansions(final int updateID, final double eps, final int numOfClusters,
+               final int numGenerators) {
+      this.updateID = updateID;
+      this.eps = eps;
+      this.numOfClusters = numOfClusters;
+
+      cRe = new double[numOfClusters];
+      cIm = new double[numOfClusters];
+      radius = new double[numOfClusters];
+
+      re = new double[numGenerators][numOfClusters][DEGREE + 1];
+      im = new double[numGenerators][numOfClusters][DEGREE + 1];
+
+      sumOfH = new double[numOfClusters];
+
+      poles = new double[numGenerators][];
+    }
+  }
+
+  final Schottky schottky;
+
+  final SchottkyWordTree tree;
+
+  final int numGenerators;
+
+  /* number of letters */
+  final int numOfLetters;
+
+  volatile Expansions expansions;
+
+  /* budget of the last walk which exceeded the tree, and its update id */
+  double failedEps;
+  int failedUpdateID = -1;
+
+  Multipoles(final Schottky schottky) {
+    this.schottky = schottky;
+    tree = schottky.wordTree;
+    numGenerators = schottky.numGenerators;
+    numOfLetters = 2 * numGenerators;
+  }
+
+  /**
+   * Series of the moments. The component n is summed over the coset G/G_n.
+   */
+  final class MomentSeries extends VectorSeries {
+
+    /* cluster of each code of left letters, or -1 if the letters cancel */
+    final int[] clusterOfCode;
+
+    final double[] cRe, cIm;
+
+    /* moments, [n][cluster][k] */
+    final double[][][] re, im;
+
+    /* sum of |b-a| of each cluster, [n][cluster] */
+    final double[][] sumOfH;
+
+    /* poles of the words shorter than LEVEL, [n] */
+    final List<List<double[]>> poles;
+
+    /* the walk stops at a word if the tree holds more words */
+    int maxNumOfWords = Integer.MAX_VALUE;
+
+    /* whether a word was not visited because the tree was too large */
+    boolean truncated;
+
+    /* letter[l] is the left letter of the last visited word with length l */
+    int[] letter = new int[8];
+
+    final Complex H = new Complex();
+
+    final Complex a = new Complex();
+    final Complex b = new Complex();
+
+    MomentSeries(final int[] clusterOfCode, final double[] cRe, final double[] cIm) {
+      super(Multipoles.this.tree, numGenerators);
+
+      this.clusterOfCode = clusterOfCode;
+      this.cRe = cRe;
+      this.cIm = cIm;
+
+      re = new double[numGenerators][cRe.length][DEGREE + 1];
+      im = new double[numGenerators][cRe.length][DEGREE + 1];
+
+      sumOfH = new double[numGenerators][cRe.length];
+
+      poles = new ArrayList<List<double[]>>(numGenerators);
+
+      for (int n = 0; n < numGenerators; n++) {
+        poles.add(new ArrayList<double[]>());
+      }
+    }
+
+    void begin(final int element) {
+
+      final int wordLength = tree.getWordLength(element);
+
+      if (wordLength >= letter.length) {
+        final int[] newLetter = new int[2 * wordLength];
+        System.arraycopy(letter, 0, newLetter, 0, letter.length);
+        letter = newLetter;
+      }
+
+      letter[wordLength] = 2 * tree.getLeft(element) + tree.getLeftIsInvert(element);
+    }
+
+    public boolean visit(final int element) {
+
+      if (tree.getNumOfWords() > maxNumOfWords) {
+        truncated = true;
+        return false;
+      }
+
+      return super.visit(element);
+    }
+
+    boolean excludes(final int element, final int n) {
+      return tree.getRight(element) == n;
+    }
+
+    double error(final int element, final int n) {
+      tree.diff(element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], H);
+      return H.abs();
+    }
+
+    void add(final int element, final int n) {
+
+      tree.getImageOfA(element, n, a);
+      tree.getImageOfB(element, n, b);
+
+      final int wordLength = tree.getWordLength(element);
+
+      if (wordLength < LEVEL) {
+        poles.get(n).add(new double[] { a.re, a.im, b.re, b.im });
+        return;
+      }
+
+      int code = 0;
+
+      for (int l = wordLength; l > wordLength - LEVEL; l--) {
+        code = code * numOfLetters + letter[l];
+      }
+
+      final int cluster = clusterOfCode[code];
+
+      tree.diff(element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], H);
+
+      sumOfH[n][cluster] += H.abs();
+
+      // P_k = (b-c)^k - (a-c)^k = (b-c) P_(k-1) + (a-c)^(k-1) (b-a)
+      final double aRe = a.re - cRe[cluster], aIm = a.im - cIm[cluster];
+      final double bRe = b.re - cRe[cluster], bIm = b.im - cIm[cluster];
+
+      double pRe = H.re, pIm = H.im;
+      double wRe = H.re, wIm = H.im;
+
+      final double[] re = this.re[n][cluster];
+      final double[] im = this.im[n][cluster];
+
+      re[1] += pRe;
+      im[1] += pIm;
+
+      for (int k = 2; k <= DEGREE; k++) {
+
+        final double tRe = wRe * aRe - wIm * aIm;
+        wIm = wRe * aIm + wIm * aRe;
+        wRe = tRe;
+
+        final double sRe = pRe * bRe - pIm * bIm + wRe;
+        pIm = pRe * bIm + pIm * bRe + wIm;
+        pRe = sRe;
+
+        re[k] += pRe;
+        im[k] += pIm;
+      }
+    }
+
+    public SchottkyWordTree.Series copy() {
+      final MomentSeries copy = new MomentSeries(clusterOfCode, cRe, cIm);
+      copyTo(copy);
+      copy.maxNumOfWords = maxNumOfWords;
+      copy.letter = letter.clone();
+      return copy;
+    }
+
+    public void reduce(final SchottkyWordTree.Series other) {
+      final MomentSeries series = (MomentSeries) other;
+
+      for (int n = 0; n < numGenerators; n++) {
+        for (int i = 0; i < cRe.length; i++) {
+          for (int k = 1; k <= DEGREE; k++) {
+            re[n][i][k] += series.re[n][i][k];
+            im[n][i][k] += series.im[n][i][k];
+          }
+          sumOfH[n][i] += series.sumOfH[n][i];
+        }
+        poles.get(n).addAll(series.poles.get(n));
+      }
+
+      truncated |= series.truncated;
+
+      reduceBudget(series);
+    }
+  }
+
+  /**
+   * Returns the transformation of a letter with code <code>2i</code> for
+   * <code>generator[i]</code> and <code>2i+1</code> for <code>generatorInv[i]</code>.
+   */
+  final Moebius letter(final int code) {
+    return (code & 1) == 0
+        ? schottky.generator[code >> 1]
+        : schottky.generatorInv[code >> 1];
+  }
+
+  /**
+   * Computes the moments with the given budget of the neglected sum of |b-a|.
+   * @return false if the walk would exceed its share of the tree of words
+   */
+  synchronized boolean expand(final double eps) {
+
+    final Expansions old = expansions;
+
+    if (old != null && old.updateID == schottky.updateID && old.eps <= eps) {
+      return true;
+    }
+
+    if (failedUpdateID == schottky.updateID && failedEps >= eps) {
+      return false;
+    }
+
+    // enumerate the left subwords of word length LEVEL
+    int numOfCodes = 1;
+    for (int l = 0; l < LEVEL; l++) {
+      numOfCodes *= numOfLetters;
+    }
+
+    final int[] clusterOfCode = new int[numOfCodes];
+
+    final List<double[]> discs = new ArrayList<double[]>();
+
+    final Moebius m = new Moebius();
+    final Complex center = new Complex();
+    final Complex point = new Complex();
+
+    for (int code = 0; code < numOfCodes; code++) {
+
+      clusterOfCode[code] = -1;
+
+      // letters from left to right
+      final int[] letters = new int[LEVEL];
+
+      for (int l = LEVEL - 1, c = code; l >= 0; l--, c /= numOfLetters) {
+        letters[l] = c % numOfLetters;
+      }
+
+      boolean reduced = true;
+
+      for (int l = 1; l < LEVEL; l++) {
+        reduced &= letters[l] != (letters[l - 1] ^ 1);
+      }
+
+      if (!reduced) {
+        continue;
+      }
+
+      m.assign(1, 0, 0, 0, 0, 0, 1, 0);
+
+      for (int l = 0; l < LEVEL - 1; l++) {
+        m.assignTimes(letter(letters[l]));
+      }
+
+      final int last = letters[LEVEL - 1];
+
+      final Complex c = schottky.center[last >> 1][(last & 1) == 0 ? 1 : 0];
+      final double r = schottky.radius[last >> 1];
+
+      // the center of the image is the image of the reflection of the pole of m
+      if (m.getC().abs() == 0) {
+        center.assign(c);
+      }
+      else {
+        final Complex pole = m.getD().divide(m.getC()).neg();
+        center.assign(pole.minus(c).conjugate().invert().times(r * r).plus(c));
+      }
+
+      m.applyTo(center, center);
+      m.applyTo(new Complex(c.re + r, c.im), point);
+
+      clusterOfCode[code] = discs.size();
+      discs.add(new double[] { center.re, center.im, point.dist(center) });
+    }
+
+    final int numOfClusters = discs.size();
+
+    final Expansions expansions = new Expansions(schottky.updateID, eps, numOfClusters, numGenerators);
+
+    for (int i = 0; i < numOfClusters; i++) {
+      final double[] disc = discs.get(i);
+      expansions.cRe[i] = disc[0];
+      expansions.cIm[i] = disc[1];
+      expansions.radius[i] = disc[2];
+    }
+
+    final MomentSeries series = new MomentSeries(clusterOfCode, expansions.cRe, expansions.cIm);
+
+    series.letter[0] = -1;
+
+    for (int n = 0; n < numGenerators; n++) {
+      series.add(SchottkyWordTree.ROOT, n);
+    }
+
+    if (numGenerators > 1) {
+
+      series.reset(schottky.numOfElementsOfCosetWithWordLength,
+                   eps, eps / schottky.maxNumOfElements);
+
+      series.maxNumOfWords = Math.max(tree.getNumOfWords(),
+          (int) Math.min(MAX_SHARE_OF_WORDS * schottky.maxNumOfElements, Integer.MAX_VALUE));
+
+      tree.walk(series, -1, schottky.executor);
+
+      if (series.truncated) {
+        failedEps = eps;
+        failedUpdateID = schottky.updateID;
+        return false;
+      }
+
+      series.checkBudget();
+    }
+
+    for (int n = 0; n < numGenerators; n++) {
+
+      for (int i = 0; i < numOfClusters; i++) {
+        System.arraycopy(series.re[n][i], 0, expansions.re[n][i], 0, DEGREE + 1);
+        System.arraycopy(series.im[n][i], 0, expansions.im[n][i], 0, DEGREE + 1);
+        expansions.sumOfH[i] = Math.max(expansions.sumOfH[i], series.sumOfH[n][i]);
+      }
+
+      final List<double[]> poles = series.poles.get(n);
+
+      expansions.poles[n] = new double[4 * poles.size()];
+
+      for (int j = 0; j < poles.size(); j++) {
+        System.arraycopy(poles.get(j), 0, expansions.poles[n], 4 * j, 4);
+      }
+    }
+
+    this.expansions = expansions;
+
+    return true;
+  }
+
+  /**
+   * Returns the expansions which evaluate the differentials and integrals
+   * at z with the given accuracy, which are computed if necessary.
+   * @return expansions, or null if the series has to be evaluated
+   */
+  Expansions expansions(final Complex z, final double accuracy) {
+
+    double dist = Double.MAX_VALUE;
+
+    for (int i = 0; i < numGenerators; i++) {
+      for (int j = 0; j < 2; j++) {
+        dist = Math.min(dist, schottky.center[i][j].dist(z) - schottky.radius[i]);
+      }
+    }
+
+    if (!(dist > 0)) {
+      return null;
+    }
+
+    // budget of the neglected words, the other half is for the remainders
+    final double eps = accuracy / 4 * Math.min(dist * dist, dist / 2);
+
+    Expansions expansions = this.expansions;
+
+    if (expansions == null || expansions.updateID != schottky.updateID || expansions.eps > eps) {
+
+      if (eps < MIN_EPS * accuracy || !expand(Math.max(EPS_FACTOR * eps, MIN_EPS * accuracy))) {
+        return null;
+      }
+
+      expansions = this.expansions;
+    }
+
+    return expansions;
+  }
+
+  /**
+   * Returns the degree of each cluster, such that the remainders of the
+   * differentials and integrals at z sum up to at most half of the accuracy.
+   * @return degrees, or null if a cluster is too close to z
+   */
+  int[] degrees(final Expansions expansions, final Complex z, final double accuracy) {
+
+    final int[] degree = new int[expansions.numOfClusters];
+
+    final double budget = accuracy / (2 * expansions.numOfClusters);
+
+    for (int i = 0; i < expansions.numOfClusters; i++) {
+
+      final double dRe = z.re - expansions.cRe[i];
+      final double dIm = z.im - expansions.cIm[i];
+
+      final double d = Math.sqrt(dRe * dRe + dIm * dIm);
+
+      final double q = expansions.radius[i] / d;
+
+      if (!(q <= Q)) {
+        return null;
+      }
+
+      final double s = expansions.sumOfH[i];
+
+      double qPow = 1;
+      int k = 0;
+
+      while (Math.max(s * (k + 1) * qPow / ((1 - q) * (1 - q) * d * d),
+                      s * qPow / ((1 - q) * d)) > budget) {
+
+        if (++k > DEGREE) {
+          return null;
+        }
+
+        qPow *= q;
+      }
+
+      degree[i] = k;
+    }
+
+    return degree;
+  }
+
+  /**
+   * Evaluates the differential with index n at z.
+   * @return false if the series has to be evaluated
+   */
+  boolean differential(final Complex z, final double accuracy,
+                       final int n, final Complex r) {
+
+    final Expansions expansions = expansions(z, accuracy);
+
+    final int[] degree = expansions == null ? null : degrees(expansions, z, accuracy);
+
+    if (degree == null) {
+      return false;
+    }
+
+    differential(expansions, degree, z, n, r);
+
+    return true;
+  }
+
+  /**
+   * Evaluates all differentials at z.
+   * @return false if the series has to be evaluated
+   */
+  boolean differentials(final Complex z, final double accuracy, final Complex[] r) {
+
+    final Expansions expansions = expansions(z, accuracy);
+
+    final int[] degree = expansions == null ? null : degrees(expansions, z, accuracy);
+
+    if (degree == null) {
+      return false;
+    }
+
+    for (int n = 0; n < numGenerators; n++) {
+      differential(expansions, degree, z, n, r[n]);
+    }
+
+    return true;
+  }
+
+  /**
+   * Evaluates the integral with index n at z.
+   * @return false if the series has to be evaluated
+   */
+  boolean integral(final Complex z, final double accuracy,
+                   final int n, final Complex r) {
+
+    final Expansions expansions = expansions(z, accuracy);
+
+    final int[] degree = expansions == null ? null : degrees(expansions, z, accuracy);
+
+    if (degree == null) {
+      return false;
+    }
+
+    integral(expansions, degree, z, n, r);
+
+    return true;
+  }
+
+  /**
+   * Evaluates all integrals at z.
+   * @return false if the series has to be evaluated
+   */
+  boolean integrals(final Complex z, final double accuracy, final Complex[] r) {
+
+    final Expansions expansions = expansions(z, accuracy);
+
+    final int[] degree = expansions == null ? null : degrees(expansions, z, accuracy);
+
+    if (degree == null) {
+      return false;
+    }
+
+    for (int n = 0; n < numGenerators; n++) {
+      integral(expansions, degree, z, n, r[n]);
+    }
+
+    return true;
+  }
+
+  void differential(final Expansions expansions, final int[] degree,
+                    final Complex z, final int n, final Complex r) {
+
+    double sRe = 0, sIm = 0;
+
+    final double[] poles = expansions.poles[n];
+
+    for (int j = 0; j < poles.length; j += 4) {
+
+      // 1/(z-b) - 1/(z-a)
+      final double aRe = z.re - poles[j], aIm = z.im - poles[j + 1];
+      final double bRe = z.re - poles[j + 2], bIm = z.im - poles[j + 3];
+
+      final double aAbs = aRe * aRe + aIm * aIm;
+      final double bAbs = bRe * bRe + bIm * bIm;
+
+      sRe += bRe / bAbs - aRe / aAbs;
+      sIm += aIm / aAbs - bIm / bAbs;
+    }
+
+    for (int i = 0; i < expansions.numOfClusters; i++) {
+
+      final int K = degree[i];
+
+      if (K == 0) {
+        continue;
+      }
+
+      // t = 1/(z-c)
+      final double dRe = z.re - expansions.cRe[i];
+      final double dIm = z.im - expansions.cIm[i];
+      final double dAbs = dRe * dRe + dIm * dIm;
+
+      final double tRe = dRe / dAbs;
+      final double tIm = -dIm / dAbs;
+
+      final double[] re = expansions.re[n][i];
+      final double[] im = expansions.im[n][i];
+
+      // sum M_k t^(k+1) = t^2 ( M_1 + t ( M_2 + ... ) )
+      double pRe = re[K], pIm = im[K];
+
+      for (int k = K - 1; k >= 1; k--) {
+        final double uRe = pRe * tRe - pIm * tIm + re[k];
+        pIm = pRe * tIm + pIm * tRe + im[k];
+        pRe = uRe;
+      }
+
+      final double t2Re = tRe * tRe - tIm * tIm;
+      final double t2Im = 2 * tRe * tIm;
+
+      sRe += pRe * t2Re - pIm * t2Im;
+      sIm += pRe * t2Im + pIm * t2Re;
+    }
+
+    r.assign(sRe, sIm);
+  }
+
+  void integral(final Expansions expansions, final int[] degree,
+                final Complex z, final int n, final Complex r) {
+
+    // product of (z-b)/(z-a) of the short words
+    double pRe = 1, pIm = 0;
+
+    final double[] poles = expansions.poles[n];
+
+    for (int j = 0; j < poles.length; j += 4) {
+
+      final double aRe = z.re - poles[j], aIm = z.im - poles[j + 1];
+      final double bRe = z.re - poles[j + 2], bIm = z.im - poles[j + 3];
+
+      final double aAbs = aRe * aRe + aIm * aIm;
+
+      final double hRe = (bRe * aRe + bIm * aIm) / aAbs;
+      final double hIm = (bIm * aRe - bRe * aIm) / aAbs;
+
+      final double uRe = pRe * hRe - pIm * hIm;
+      pIm = pRe * hIm + pIm * hRe;
+      pRe = uRe;
+    }
+
+    double sRe = 0.5 * Math.log(pRe * pRe + pIm * pIm);
+    double sIm = Math.atan2(pIm, pRe);
+
+    for (int i = 0; i < expansions.numOfClusters; i++) {
+
+      final int K = degree[i];
+
+      if (K == 0) {
+        continue;
+      }
+
+      // t = 1/(z-c)
+      final double dRe = z.re - expansions.cRe[i];
+      final double dIm = z.im - expansions.cIm[i];
+      final double dAbs = dRe * dRe + dIm * dIm;
+
+      final double tRe = dRe / dAbs;
+      final double tIm = -dIm / dAbs;
+
+      final double[] re = expansions.re[n][i];
+      final double[] im = expansions.im[n][i];
+
+      // - sum M_k t^k / k = - t ( M_1 + t ( M_2 / 2 + ... ) )
+      double qRe = re[K] / K, qIm = im[K] / K;
+
+      for (int k = K - 1; k >= 1; k--) {
+        final double uRe = qRe * tRe - qIm * tIm + re[k] / k;
+        qIm = qRe * tIm + qIm * tRe + im[k] / k;
+        qRe = uRe;
+      }
+
+      sRe -= qRe * tRe - qIm * tIm;
+      sIm -= qRe * tIm + qIm * tRe;
+    }
+
+    r.assign(sRe, sIm);
+  }
+}
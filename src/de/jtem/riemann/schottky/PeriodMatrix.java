@@ -47,6 +47,8 @@ import de.jtem.mfc.field.Complex;
 
     final Schottky schottky;
 
+    final SchottkyWordTree tree;
+
     final int numGenerators;
 
     double theta1, q1;
@@ -55,26 +57,11 @@ import de.jtem.mfc.field.Complex;
 
     PeriodMatrix(Schottky schottky) {
       this.schottky = schottky;
+      tree = schottky.wordTree;
       numGenerators = schottky.numGenerators;
+      updateID = -1;
     }
 
-    int n;
-    int m;
-
-    double acc;
-
-    double factorForLeftIsNotM;
-    double factorForLeftIsM;
-
-    final Complex b = new Complex();
-    final Complex p = new Complex();
-    final Complex d = new Complex();
-
-    final Complex An = new Complex();
-    final Complex Bn = new Complex();
-    final Complex Am = new Complex();
-    final Complex Bm = new Complex();
-
     void update() {
 
       if (updateID == schottky.updateID) {
@@ -87,48 +74,211 @@ import de.jtem.mfc.field.Complex;
       q1 = schottky.q1;
     }
 
-    final private void B(final SchottkyGroupElement element) {
+    /**
+     * Product over the coset G/G_n, whose logarithm is the
+     * entry (n,m) of the period matrix. Each copy holds its own
+     * partial product.
+     */
+    final class BSeries
+        implements SchottkyWordTree.Series, Serializable {
+
+      private static final long serialVersionUID = 1L;
+
+      int n;
+      int m;
+
+      double acc;
+
+      double factorForLeftIsNotM;
+      double factorForLeftIsM;
+
+      final Complex b = new Complex();
+      final Complex p = new Complex();
+      final Complex d = new Complex();
+
+      final Complex An = new Complex();
+      final Complex Bn = new Complex();
+      final Complex Am = new Complex();
+      final Complex Bm = new Complex();
+
+      final Complex imageOfAn = new Complex();
+      final Complex imageOfBn = new Complex();
 
-      if (element.updateID != updateID) {
-        schottky.updateElement(element);
+      public boolean visit(final int element) {
+
+        final long noe = SchottkyWordTree.numOfElements(
+            schottky.numOfElementsOfCosetWithWordLength, tree.getWordLength(element));
+
+        tree.diff(element, Bn, An, d);
+
+        final double dist = Math.abs(d.re) + Math.abs(d.im);
+
+        final int left = tree.getLeft(element);
+
+        if (left != m && factorForLeftIsNotM * dist * noe < acc ||
+            left == m && factorForLeftIsM * dist * noe < acc) {
+          return false;
+        }
+
+        if (left != m) {
+          tree.getImageOfA(element, n, imageOfAn);
+          tree.getImageOfB(element, n, imageOfBn);
+
+          p.assignCrossRatio( Am, imageOfBn, Bm, imageOfAn );
+
+          b.assignTimes(p);
+        }
+
+        return true;
       }
 
-      final long noe = schottky.getNumOfElementsOfCosetWithWordLength(element.wordLength);
+      public SchottkyWordTree.Series copy() {
+        final BSeries copy = new BSeries();
+        copy.n = n;
+        copy.m = m;
+        copy.acc = acc;
+        copy.factorForLeftIsNotM = factorForLeftIsNotM;
+        copy.factorForLeftIsM = factorForLeftIsM;
+        copy.An.assign(An);
+        copy.Bn.assign(Bn);
+        copy.Am.assign(Am);
+        copy.Bm.assign(Bm);
+        copy.b.assign(1);
+        return copy;
+      }
 
-      element.diff(Bn, An, d);
+      public void reduce(final SchottkyWordTree.Series other) {
+        b.assignTimes(((BSeries) other).b);
+      }
+    }
 
-      final double dist = Math.abs(d.re) + Math.abs(d.im);
-//
-//      if( element.left != m )
-//        System.out.println( dist + " " + (factorForLeftIsNotM + " " + noe) );
-//      else
-//        System.out.println( dist + " " + (factorForLeftIsM + "  " + noe) );
+    final BSeries series = new BSeries();
 
-      if (element.left != m && factorForLeftIsNotM * dist * noe < acc ||
-          element.left == m && factorForLeftIsM * dist * noe < acc) {
-        return;
+    /**
+     * All entries (n,m) with m&lt;=n of the period matrix in one walk through
+     * the whole group. Entry (n,m) is the component n(n+1)/2+m and gets the
+     * same terms as the walk of {@link BSeries} through the coset G/G_n.
+     * The distance of the images of the fixpoints of generator n, which
+     * enters the error estimates of all entries (n,m), is computed only
+     * once for each visited word, as are the images of the fixpoints.
+     */
+    final class PeriodMatrixSeries extends VectorSeries {
+
+      final int[] nOfComponent;
+      final int[] mOfComponent;
+
+      final double[] factorForLeftIsNotM = new double[numGenerators];
+      final double[] factorForLeftIsM = new double[numGenerators];
+
+      final Complex[] b;
+
+      /* word for which dist[n] and the images of the fixpoints of generator n are valid */
+      final int[] distWord = new int[numGenerators];
+      final int[] imageWord = new int[numGenerators];
+
+      final double[] dist = new double[numGenerators];
+
+      final Complex[] imageOfA = new Complex[numGenerators];
+      final Complex[] imageOfB = new Complex[numGenerators];
+
+      final Complex p = new Complex();
+      final Complex d = new Complex();
+
+      PeriodMatrixSeries() {
+        super(PeriodMatrix.this.tree, numGenerators * (numGenerators + 1) / 2);
+
+        adaptAcc = false;
+
+        nOfComponent = new int[numOfComponents];
+        mOfComponent = new int[numOfComponents];
+
+        b = new Complex[numOfComponents];
+
+        for (int n = 0, i = 0; n < numGenerators; n++) {
+          for (int m = 0; m <= n; m++, i++) {
+            nOfComponent[i] = n;
+            mOfComponent[i] = m;
+            b[i] = new Complex();
+          }
+        }
+
+        for (int n = 0; n < numGenerators; n++) {
+          imageOfA[n] = new Complex();
+          imageOfB[n] = new Complex();
+        }
+
+        begin(-1);
       }
 
-      if (element.left != m) {
-        p.assignCrossRatio( Am, element.imageOfB[n],
-                            Bm, element.imageOfA[n]);
+      void begin(final int element) {
+        for (int n = 0; n < numGenerators; n++) {
+          distWord[n] = imageWord[n] = -1;
+        }
+      }
 
-        b.assignTimes(p);
+      boolean excludes(final int element, final int i) {
+        return tree.getRight(element) == nOfComponent[i];
       }
 
-      if (element.child == null) {
-        schottky.createLeftChilds(element);
+      double error(final int element, final int i) {
+
+        final int n = nOfComponent[i];
+        final int m = mOfComponent[i];
+
+        if (distWord[n] != element) {
+          tree.diff(element, schottky.fixpoint[n][1], schottky.fixpoint[n][0], d);
+          dist[n] = Math.abs(d.re) + Math.abs(d.im);
+          distWord[n] = element;
+        }
+
+        return tree.getLeft(element) == m
+            ? factorForLeftIsM[m] * dist[n]
+            : factorForLeftIsNotM[m] * dist[n];
+      }
+
+      void add(final int element, final int i) {
+
+        final int n = nOfComponent[i];
+        final int m = mOfComponent[i];
+
+        if (tree.getLeft(element) == m) {
+          return;
+        }
+
+        if (imageWord[n] != element) {
+          tree.getImageOfA(element, n, imageOfA[n]);
+          tree.getImageOfB(element, n, imageOfB[n]);
+          imageWord[n] = element;
+        }
+
+        p.assignCrossRatio( schottky.fixpoint[m][0], imageOfB[n],
+                            schottky.fixpoint[m][1], imageOfA[n] );
+
+        b[i].assignTimes(p);
+      }
 
+      public SchottkyWordTree.Series copy() {
+        final PeriodMatrixSeries copy = new PeriodMatrixSeries();
+        copyTo(copy);
+        System.arraycopy(factorForLeftIsNotM, 0, copy.factorForLeftIsNotM, 0, numGenerators);
+        System.arraycopy(factorForLeftIsM, 0, copy.factorForLeftIsM, 0, numGenerators);
+        for (int i = 0; i < numOfComponents; i++) {
+          copy.b[i].assign(1);
+        }
+        return copy;
       }
-      final SchottkyGroupElement[] child = element.child;
 
-      final int numOfChilds = child.length;
+      public void reduce(final SchottkyWordTree.Series other) {
+        final PeriodMatrixSeries series = (PeriodMatrixSeries) other;
 
-      for (int i = 0; i < numOfChilds; i++) {
-        B(child[i]);
+        for (int i = 0; i < numOfComponents; i++) {
+          b[i].assignTimes(series.b[i]);
+        }
       }
     }
 
+    PeriodMatrixSeries periodMatrixSeries;
+
     final double k1(final int m, final Complex P) {
 
       double min = Double.MAX_VALUE;
@@ -147,21 +297,100 @@ import de.jtem.mfc.field.Complex;
     }
 
     /**
-     * Computes period matrix with prescribed accuracy.
+     * Computes period matrix with prescribed accuracy in one walk through
+     * the group. The result equals the one of {@link #evalEntryByEntry}.
      * @param B period matrix on output
      * @param accuracy of computed period matrix
      */
     void eval(ComplexMatrix B, double accuracy) {
 
+      update();
+
+      B.newSize(numGenerators);
+
+      final Complex b = new Complex();
+
+      if (numGenerators == 1) { // treat genus one case seperatly
+        b.assignLog(schottky.mu[0]);
+        B.set(0, 0, b);
+        return;
+      }
+
+      if (periodMatrixSeries == null) {
+        periodMatrixSeries = new PeriodMatrixSeries();
+      }
+
+      final PeriodMatrixSeries series = periodMatrixSeries;
+
+      final double v = theta1 * theta1;
+
+      final double rOfV = schottky.r(v);
+      final double sumForLeftIsM = (2 * numGenerators - 2) * rOfV;
+      final double sumForLeftIsNotM = (2 * numGenerators - 4) * rOfV +
+          schottky.rPlus(rOfV, v) +
+          schottky.rMinus(rOfV, v);
+
+      for (int m = 0; m < numGenerators; m++) {
+
+        final Complex Am = schottky.fixpoint[m][0];
+        final Complex Bm = schottky.fixpoint[m][1];
+
+        final double factor = 1 / k1(m, Am ) + 1 / k1(m, Bm);
+
+        series.factorForLeftIsM[m] = factor * sumForLeftIsM;
+        series.factorForLeftIsNotM[m] = factor * sumForLeftIsNotM;
+      }
+
+      for (int i = 0; i < series.numOfComponents; i++) {
+
+        final int n = series.nOfComponent[i];
+        final int m = series.mOfComponent[i];
+
+        if (m < n) {
+          series.b[i].assignCrossRatio( schottky.fixpoint[m][0], schottky.fixpoint[n][1],
+                                        schottky.fixpoint[m][1], schottky.fixpoint[n][0] );
+        }
+        else { // n==m
+          series.b[i].assign(schottky.mu[n]);
+        }
+      }
+
+      series.reset(schottky.numOfElementsOfCosetWithWordLength, accuracy, 0);
+
+      tree.walk(series, -1, schottky.executor);
+
+      for (int i = 0; i < series.numOfComponents; i++) {
+
+        b.assignLog(series.b[i]);
+
+        B.set(series.nOfComponent[i], series.mOfComponent[i], b);
+        B.set(series.mOfComponent[i], series.nOfComponent[i], b);
+      }
+    }
+
+    /**
+     * Computes period matrix with prescribed accuracy entry by entry;
+     * each entry (n,m) with m&lt;=n is a walk through the coset G/G_n.
+     * @param B period matrix on output
+     * @param accuracy of computed period matrix
+     */
+    void evalEntryByEntry(ComplexMatrix B, double accuracy) {
+
+      update();
+
       B.newSize(numGenerators);
 
+      final BSeries series = this.series;
+
+      final Complex b = series.b;
+
       if (numGenerators == 1) { // treat genus one case seperatly
         b.assignLog(schottky.mu[0]);
         B.set(0, 0, b);
         return;
       }
 
-      this.acc = accuracy;
+      series.acc = accuracy;
 
       final double v = theta1 * theta1;
 
@@ -171,26 +400,36 @@ import de.jtem.mfc.field.Complex;
           schottky.rPlus(rOfV, v) +
           schottky.rMinus(rOfV, v);
 
-      for (m = 0; m < numGenerators; m++) {
+      for (int m = 0; m < numGenerators; m++) {
+
+        final Complex Am = series.Am;
+        final Complex Bm = series.Bm;
 
         Am.assign(schottky.fixpoint[m][0]);
         Bm.assign(schottky.fixpoint[m][1]);
 
-        factorForLeftIsM = factorForLeftIsNotM
+        series.m = m;
+
+        series.factorForLeftIsM = series.factorForLeftIsNotM
             = 1 / k1(m, Am ) + 1 / k1(m, Bm);
 
-        factorForLeftIsM *= sumForLeftIsM;
-        factorForLeftIsNotM *= sumForLeftIsNotM;
+        series.factorForLeftIsM *= sumForLeftIsM;
+        series.factorForLeftIsNotM *= sumForLeftIsNotM;
 
-        for (n = 0; n < numGenerators; n++) {
+        for (int n = 0; n < numGenerators; n++) {
 
           if (m > n) {
             B.get(m, n, b);
           }
           else {
+            final Complex An = series.An;
+            final Complex Bn = series.Bn;
+
             An.assign(schottky.fixpoint[n][0]);
             Bn.assign(schottky.fixpoint[n][1]);
 
+            series.n = n;
+
             if (m < n) {
               b.assignCrossRatio( Am, Bn, Bm, An );
             }
@@ -198,12 +437,7 @@ import de.jtem.mfc.field.Complex;
               b.assign(schottky.mu[n]);
             }
 
-            for (int i = 0; i < numGenerators; i++) {
-              if (i != n) {
-                B(schottky.generator[i]);
-                B(schottky.generatorInv[i]);
-              }
-            }
+            tree.walk(series, n, schottky.executor);
 
             b.assignLog();
           }
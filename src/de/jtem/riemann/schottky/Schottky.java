@@ -32,6 +32,7 @@ OF SUCH DAMAGE.
 package de.jtem.riemann.schottky;
 
 import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
 
 import de.jtem.blas.ComplexMatrix;
 import de.jtem.blas.ComplexVector;
@@ -105,6 +106,24 @@ public class Schottky
 
   boolean useFancyError = true;
 
+  boolean memoryBounded = false;
+
+  boolean bestFirst = false;
+
+  boolean cachingBounds = false;
+
+  boolean reducingToFundamentalDomain = false;
+
+  boolean cachingExpansions = false;
+
+  boolean usingMultipoles = false;
+
+  KGrid kGrid;
+
+  ExpansionCache expansionCache;
+
+  Multipoles multipoles;
+
   AbelianDifferential abelianDifferential;
 
   AbelianIntegral abelianIntegral;
@@ -113,6 +132,14 @@ public class Schottky
 
   Sigma sigma;
 
+  SchottkyWordTree wordTree;
+
+  /**
+   * Executor for the parallel evaluation of the series;
+   * the evaluation is sequential if null.
+   */
+  transient ExecutorService executor;
+
   public Schottky() {
     this(2);
   }
@@ -184,6 +211,11 @@ public class Schottky
     computeNumOfElementsWithWordLength();
     computeNumOfElementsOfCosetWithWordLength();
 
+    wordTree = new SchottkyWordTree(this);
+    kGrid = new KGrid(this);
+    expansionCache = new ExpansionCache(this);
+    multipoles = new Multipoles(this);
+
     abelianDifferential = new AbelianDifferential(this);
     abelianIntegral = new AbelianIntegral(this);
     periodMatrix = new PeriodMatrix(this);
@@ -224,6 +256,8 @@ public class Schottky
 
     updateElementTree();
 
+    wordTree.update();
+
     abelianIntegral.update();
     periodMatrix.update();
     sigma.update();
@@ -233,6 +267,175 @@ public class Schottky
     return numOfElements;
   }
 
+  /**
+   * Returns executor which evaluates the Poincare series in parallel.
+   * @return executor or null if the series are evaluated sequentially
+   */
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Sets executor for the parallel evaluation of the Poincare series
+   * of sigma, of the differentials of 1st kind and of the period matrix.
+   * The subtrees of the words with word length 2 are then summed up
+   * by independent tasks of the executor, whose partial results are
+   * added in a fixed order. The executor is not shut down by this.
+   * @param executor executor or null, which is the default,
+   * for sequential evaluation
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Returns true if the tree of words evicts subtrees instead of failing,
+   * when it is full.
+   */
+  public boolean isMemoryBounded() {
+    return memoryBounded;
+  }
+
+  /**
+   * Sets memory bounded mode of the tree of words, which is used by the
+   * Poincare series of sigma, of the differentials of 1st kind and of the
+   * period matrix. If set, the tree does not fail when it holds
+   * {@link #maxNumOfElements} words, but evicts the least recently visited
+   * deep subtrees and regenerates them when they are needed again.
+   * The results do not depend on the mode.
+   * The mode must not be changed while a series is evaluated.
+   * @param memoryBounded true for memory bounded mode
+   */
+  public void setMemoryBounded(boolean memoryBounded) {
+    this.memoryBounded = memoryBounded;
+  }
+
+  public boolean isBestFirst() {
+    return bestFirst;
+  }
+
+  /**
+   * Sets best first summation of the Poincare series of sigma, of the
+   * vectors V^(k) and of the differentials of 1st kind at single points.
+   * The other series, e.g. those of the period matrix and of blocks of
+   * points, keep the depth first walk.
+   * If set, the words are summed in the order
+   * of the bounds of their subtrees, starting with the biggest, until the
+   * bound of the remainder is smaller than the accuracy. This needs fewer
+   * terms, if one generator dominates the group. The best first summation
+   * is sequential, the executor is not used.
+   * @param bestFirst true for best first summation;
+   * the default is the depth first walk
+   */
+  public void setBestFirst(boolean bestFirst) {
+    this.bestFirst = bestFirst;
+  }
+
+  public boolean isCachingBounds() {
+    return cachingBounds;
+  }
+
+  /**
+   * Sets caching of the bounds which prepare the error estimates of the
+   * differentials and integrals of 1st kind at a new point.
+   * If set, lower bounds are taken from a grid over the fundamental domain,
+   * whose cells are computed once; otherwise the words with word length 3
+   * are walked for each new point. The cached bounds are more conservative,
+   * thus the series may take a few more terms.
+   * @param cachingBounds true for cached bounds
+   * @see KGrid
+   */
+  public void setCachingBounds(boolean cachingBounds) {
+    this.cachingBounds = cachingBounds;
+  }
+
+  public boolean isReducingToFundamentalDomain() {
+    return reducingToFundamentalDomain;
+  }
+
+  /**
+   * Sets the reduction of the points of evaluation of the differentials
+   * and integrals of 1st kind into the fundamental domain. If set, a point
+   * inside an isometric circle is mapped by the generators into the
+   * fundamental domain, the series is evaluated there, and the value is
+   * carried back by the automorphy: the differentials get the derivative
+   * of the reduction, the integrals get periods. This makes the convergence
+   * uniform over the whole plane. The values only change within the
+   * accuracy; in either mode the imaginary parts of all integrals of 1st
+   * kind are normalized to [-pi,pi], thus equivalent points give the same
+   * branch.
+   * @param reducingToFundamentalDomain true for the reduction; the default
+   * is false, the series is evaluated at the point itself
+   * @see DomainReduction
+   */
+  public void setReducingToFundamentalDomain(boolean reducingToFundamentalDomain) {
+    this.reducingToFundamentalDomain = reducingToFundamentalDomain;
+  }
+
+  public boolean isCachingExpansions() {
+    return cachingExpansions;
+  }
+
+  /**
+   * Sets caching of Taylor expansions of the differentials and integrals
+   * of 1st kind. If set, the fundamental domain is covered by a grid whose
+   * cells get the Taylor polynomials at their centers, computed once for
+   * the requested accuracy; a later evaluation inside the cell is a
+   * polynomial evaluation. This pays off for dense sampling, e.g. of
+   * meshes or solutions of differential equations. Cells close to the
+   * circles are not expanded, there the series are evaluated.
+   * @param cachingExpansions true for cached expansions
+   * @see ExpansionCache
+   */
+  public void setCachingExpansions(boolean cachingExpansions) {
+    this.cachingExpansions = cachingExpansions;
+  }
+
+  public boolean isUsingMultipoles() {
+    return usingMultipoles;
+  }
+
+  /**
+   * Sets the use of multipole expansions for the differentials and
+   * integrals of 1st kind. If set, the deep words are grouped in clusters
+   * by their left subwords of word length 3, whose poles lie in small
+   * discs; the moments of the clusters are computed once, and an evaluation
+   * sums the expansions of the clusters instead of the terms of the words.
+   * Points close to the circles are evaluated by the series.
+   * @param usingMultipoles true for multipole expansions
+   * @see Multipoles
+   */
+  public void setUsingMultipoles(boolean usingMultipoles) {
+    this.usingMultipoles = usingMultipoles;
+  }
+
+  /**
+   * Returns an instance with the same uniformization, accuracy and settings,
+   * but with its own caches; it may be used concurrently to this one.
+   * The executor is not copied.
+   */
+  Schottky copy() {
+    final Schottky copy = new Schottky(getUniformizationData(), acc);
+    copy.assignSettings(this);
+    return copy;
+  }
+
+  /**
+   * Assigns the settings of schottky, which do not change the uniformization.
+   */
+  void assignSettings(Schottky schottky) {
+    l = schottky.l;
+    C = schottky.C;
+    maxNumOfElements = schottky.maxNumOfElements;
+    useFancyError = schottky.useFancyError;
+    memoryBounded = schottky.memoryBounded;
+    bestFirst = schottky.bestFirst;
+    cachingBounds = schottky.cachingBounds;
+    reducingToFundamentalDomain = schottky.reducingToFundamentalDomain;
+    cachingExpansions = schottky.cachingExpansions;
+    usingMultipoles = schottky.usingMultipoles;
+  }
+
   void updateInnerCircles() {
 
     for (int n = 0; n < numGenerators; n++) {
@@ -529,82 +732,81 @@ public class Schottky
 
     zOfK2.assign(z);
 
-    for (int i = 0; i < 2; i++) {
-      for (int n = 0; n < numGenerators; n++) {
-        k2[i][n] = Double.MAX_VALUE;
-      }
-    }
-
-    if (updateID != updateID) {
-      update();
-    }
-
-    eval_k( id, z, k2, wordLength );
+    kVisitor.eval( z, k2, wordLength );
 
     return k2;
   }
 
 
-  final private void eval_k(SchottkyGroupElement element,
-                              Complex z,
-                              double [][] k, int wordLength) {
+  /**
+   * Computes minimum of k( sigma, z ) for all words sigma with given
+   * word length; the minimum is also taken for each first letter in k,
+   * if k is not null.
+   * Each thread which evaluates k concurrently needs its own visitor.
+   */
+  final class KVisitor
+      implements SchottkyWordTree.Visitor, Serializable {
 
-    if (element.wordLength > wordLength) {
-      return;
-    }
+    private static final long serialVersionUID = 1L;
 
-    if (element.updateID != updateID) {
-      updateElement(element);
-    }
+    Complex z;
 
-    if (element.wordLength == wordLength) {
-      k[element.leftIsInvert][element.left]
-          = Math.min(k(element, z), k[element.leftIsInvert][element.left] );
-    }
+    int wordLength;
 
-    if (element.child == null) {
-      createLeftChilds(element);
-    }
+    double[][] k;
 
-    final SchottkyGroupElement[] child = element.child;
+    double min;
 
-    final int numOfChilds = child.length;
+    public boolean visit(final int element) {
 
-    for (int i = 0; i < numOfChilds; i++) {
-      eval_k(child[i], z, k, wordLength);
-    }
-  }
+      if (wordTree.getWordLength(element) < wordLength) {
+        return true;
+      }
 
-  final private double eval_k(SchottkyGroupElement element,
-                              Complex z,
-                              double k, int wordLength) {
+      final double kOfElement = wordTree.dist(element, z);
 
-    if (element.wordLength > wordLength) {
-      return k;
-    }
+      if (k != null) {
+        final int i = wordTree.getLeftIsInvert(element);
+        final int n = wordTree.getLeft(element);
+        k[i][n] = Math.min(kOfElement, k[i][n]);
+      }
 
-    if (element.updateID != updateID) {
-      updateElement(element);
-    }
+      min = Math.min(kOfElement, min);
 
-    if (element.wordLength == wordLength) {
-      k = Math.min(k(element, z), k);
+      return false;
     }
 
-    if (element.child == null) {
-      createLeftChilds(element);
-    }
+    /**
+     * Computes k for z and given word length.
+     * @param k minimum for each first letter on output, may be null
+     * @return minimum of k( sigma, z ) for all words sigma
+     */
+    final double eval(final Complex z, final double[][] k, final int wordLength) {
+
+      if (k != null) {
+        for (int i = 0; i < 2; i++) {
+          for (int n = 0; n < numGenerators; n++) {
+            k[i][n] = Double.MAX_VALUE;
+          }
+        }
+      }
 
-    final SchottkyGroupElement[] child = element.child;
+      this.z = z;
+      this.k = k;
+      this.wordLength = wordLength;
+      this.min = Double.MAX_VALUE;
 
-    final int numOfChilds = child.length;
+      wordTree.walk(SchottkyWordTree.ROOT, this);
 
-    for (int i = 0; i < numOfChilds; i++) {
-      k = eval_k(child[i], z, k, wordLength);
+      this.z = null;
+      this.k = null;
+
+      return min;
     }
-    return k;
   }
 
+  final KVisitor kVisitor = new KVisitor();
+
   /**
    * Computes k for given z and word lengths.
    */
@@ -614,7 +816,7 @@ public class Schottky
       update();
     }
 
-    return eval_k(id, z, Double.MAX_VALUE, wordLength);
+    return kVisitor.eval(z, null, wordLength);
   }
 
 
@@ -635,6 +837,24 @@ public class Schottky
     return r;
   }
 
+  /**
+   * Computes the normalized differential of 1st kind with index n
+   * at all points z. Blocks of points share one walk through the group,
+   * which is only pruned where the series is neglible for all points
+   * of the block.
+   * @param r values on output, r[j] belongs to z[j]
+   */
+  public final void abelianDifferentialOf1stKind(Complex[] r,
+                                                 Complex[] z, int n) {
+    abelianDifferential.of1stKind(r, z, 0, z.length, n, acc);
+  }
+
+  public final void abelianDifferentialOf1stKind(Complex[] r,
+                                                 Complex[] z, int n,
+                                                 double accuracy) {
+    abelianDifferential.of1stKind(r, z, 0, z.length, n, accuracy);
+  }
+
   public final Complex abelianDifferentialOf1stKind(Complex z, int n,
       double accuracy) {
     Complex r = new Complex();
@@ -730,6 +950,29 @@ public class Schottky
     abelianIntegral.of3rdKind(r, z, A, B, acc);
   }
 
+  /**
+   * Computes the integrals of 3rd kind with poles <code>A[i]</code> and
+   * <code>B[i]</code> at all points <code>z[j]</code> in one walk through
+   * the group. The images of the poles under a word are shared by all
+   * points, and a subtree is only pruned if it is neglible for all pairs
+   * and points.
+   * @param r integrals on output, r[i][j] belongs to the pair i and z[j]
+   * @param z points of evaluation
+   * @param A poles with residue -1
+   * @param B poles with residue 1
+   * @param accuracy of each integral
+   */
+  public final void abelianIntegralsOf3rdKind(Complex[][] r, Complex[] z,
+                                              Complex[] A, Complex[] B,
+                                              double accuracy) {
+    abelianIntegral.of3rdKind(r, z, A, B, accuracy);
+  }
+
+  public final void abelianIntegralsOf3rdKind(Complex[][] r, Complex[] z,
+                                              Complex[] A, Complex[] B) {
+    abelianIntegral.of3rdKind(r, z, A, B, acc);
+  }
+
   
   final public void getV(final ComplexVector V, final double accuracy) {
     V.newSize(numGenerators);
@@ -784,6 +1027,30 @@ public class Schottky
   	return getV( k, acc);
   }
 
+  /**
+   * Computes the vectors V^(k) for k=1..maxPower in one walk through the group;
+   * V[0] equals {@link #getV()} and V[k-1] equals {@link #getV(int)} for k&gt;1.
+   * @param maxPower largest power
+   * @param V vectors V^(1),...,V^(maxPower) on output
+   * @param accuracy of each entry
+   */
+  final public void getVs( final int maxPower, final ComplexVector [] V, final double accuracy) {
+  	sigma.evalPowers(V, maxPower, accuracy);
+  }
+
+  final public ComplexVector [] getVs( final int maxPower, final double accuracy) {
+  	ComplexVector [] V = new ComplexVector[maxPower];
+  	for( int k=0; k<maxPower; k++ ) {
+  		V[k] = new ComplexVector(numGenerators);
+  	}
+  	getVs(maxPower, V, accuracy);
+  	return V;
+  }
+
+  final public ComplexVector [] getVs( int maxPower ) {
+  	return getVs( maxPower, acc);
+  }
+
   final void V(Complex r, int k, int n) {
   	sigma.evalPow(r, k, n, acc);
   }
@@ -866,29 +1133,75 @@ public class Schottky
     periodMatrix.eval(B, accuracy);
   }
 
+  /**
+   * Computes all normalized differentials of 1st kind at z
+   * in one walk through the tree of words.
+   * @param r array of length N with the differentials on output
+   * @param z point of evaluation
+   * @param accuracy of each differential
+   */
+  public final void abelianDifferentialsOf1stKind(Complex[] r, Complex z,
+                                                  double accuracy) {
+    abelianDifferential.of1stKind(r, z, accuracy);
+  }
+
+  public final void abelianDifferentialsOf1stKind(Complex[] r, Complex z) {
+    abelianDifferential.of1stKind(r, z, acc);
+  }
+
+  /**
+   * Computes all normalized integrals of 1st kind at z
+   * in one walk through the tree of words.
+   * The imaginary parts are normalized to [-pi,pi].
+   * @param r array of length N with the integrals on output
+   * @param z point of evaluation
+   * @param accuracy of each integral
+   */
+  public final void abelianIntegralsOf1stKind(Complex[] r, Complex z,
+                                              double accuracy) {
+    abelianIntegral.eval(r, z, accuracy);
+  }
+
+  public final void abelianIntegralsOf1stKind(Complex[] r, Complex z) {
+    abelianIntegral.eval(r, z, acc);
+  }
+
+  private transient Complex[] abelMapValues;
+
+  private Complex[] abelMapValues() {
+    if (abelMapValues == null) {
+      abelMapValues = Complex.createArray(numGenerators);
+    }
+    return abelMapValues;
+  }
+
   public void abelMapDifferential(ComplexVector v, Complex z) {
     v.newSize(numGenerators);
 
+    final Complex[] values = abelMapValues();
+
+    abelianDifferentialsOf1stKind(values, z);
+
     for (int i = 0; i < numGenerators; i++) {
-      abelianDifferentialOf1stKind(tmp, z, i);
-      v.set(i, tmp);
+      v.set(i, values[i]);
     }
   }
 
   public void abelMap(Complex[] v, Complex z) {
     if (v.length == numGenerators) {
-      for (int i = 0; i < numGenerators; i++) {
-        abelianIntegralOf1stKind(v[i], z, i);
-      }
+      abelianIntegralsOf1stKind(v, z);
     }
   }
 
   public void abelMap(ComplexVector v, Complex z) {
     v.newSize(numGenerators);
 
+    final Complex[] values = abelMapValues();
+
+    abelianIntegralsOf1stKind(values, z);
+
     for (int i = 0; i < numGenerators; i++) {
-      abelianIntegralOf1stKind(tmp, z, i);
-      v.set(i, tmp);
+      v.set(i, values[i]);
     }
   }
 
@@ -39,7 +39,7 @@ import de.jtem.numericalMethods.calculus.minimizing.Info;
 import de.jtem.numericalMethods.calculus.minimizing.Powell;
 
 public abstract class SchottkyAnalysisFunction
-    implements Serializable {
+    implements Serializable, Cloneable {
 
   public static final long serialVersionUID = 1L;
 
@@ -129,8 +129,28 @@ public abstract class SchottkyAnalysisFunction
     this.controlAcc = controlAcc;
   }
 
-  final Complex testValue = new Complex();
-  final Complex controlValue = new Complex();
+  Complex testValue = new Complex();
+  Complex controlValue = new Complex();
+
+  /**
+   * Returns a copy of this function which evaluates with schottky,
+   * e.g. an independent instance for an other thread.
+   * @param schottky instance of the copy
+   * @return copy of function
+   */
+  SchottkyAnalysisFunction copy(Schottky schottky) {
+    final SchottkyAnalysisFunction copy;
+    try {
+      copy = (SchottkyAnalysisFunction) clone();
+    }
+    catch (CloneNotSupportedException e) {
+      throw new InternalError(e.toString());
+    }
+    copy.schottky = schottky;
+    copy.testValue = new Complex();
+    copy.controlValue = new Complex();
+    return copy;
+  }
 
   /**
    * Evaluates function at z.
@@ -222,6 +242,12 @@ public abstract class SchottkyAnalysisFunction
       super(function.schottky, function.acc, function.n);
       this.function = function;
     }
+
+    SchottkyAnalysisFunction copy(Schottky schottky) {
+      final BenchMarkFunction copy = (BenchMarkFunction) super.copy(schottky);
+      copy.function = function.copy(schottky);
+      return copy;
+    }
   }
 
   abstract class ExtremizerFunctional
@@ -0,0 +1,229 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import de.jtem.blas.ComplexMatrix;
+import de.jtem.blas.ComplexVector;
+import de.jtem.mfc.field.Complex;
+
+/**
+ * Evaluation context of a {@link Schottky} uniformization.
+ * <p>
+ * The evaluation of the Poincare series needs temporary state,
+ * e.g. the point of evaluation, the partial sums, the remaining error
+ * budget and the estimates for the current point. A context owns
+ * this state, while the group and its tree of words are shared.
+ * Thus one Schottky uniformization can answer concurrent queries,
+ * if each thread uses its own context:
+ * <pre>
+ *   final Schottky schottky = new Schottky( data, accuracy );
+ *   ...
+ *   // in each thread
+ *   final SchottkyContext context = new SchottkyContext( schottky );
+ *   context.abelianIntegralOf1stKind( r, z, n );
+ * </pre>
+ * The data of the shared Schottky must not be changed while contexts
+ * evaluate, and its own evaluation methods must not be used concurrently.
+ * A context itself is not thread-safe.
+ * @see Schottky#setExecutor(java.util.concurrent.ExecutorService)
+ */
+public class SchottkyContext {
+
+  final Schottky schottky;
+
+  final AbelianDifferential abelianDifferential;
+
+  final AbelianIntegral abelianIntegral;
+
+  final PeriodMatrix periodMatrix;
+
+  final Sigma sigma;
+
+  final Complex tmp = new Complex();
+
+  final Complex[] values;
+
+  public SchottkyContext(final Schottky schottky) {
+    this.schottky = schottky;
+
+    values = Complex.createArray(schottky.numGenerators);
+
+    abelianDifferential = new AbelianDifferential(schottky);
+    abelianIntegral = new AbelianIntegral(schottky);
+    periodMatrix = new PeriodMatrix(schottky);
+    sigma = new Sigma(schottky);
+  }
+
+  /**
+   * Returns the shared Schottky uniformization.
+   */
+  public Schottky getSchottky() {
+    return schottky;
+  }
+
+  public void abelianDifferentialOf1stKind(Complex r, Complex z, int n) {
+    abelianDifferential.of1stKind(r, z, n, schottky.acc);
+  }
+
+  public void abelianDifferentialOf1stKind(Complex r, Complex z, int n,
+                                           double accuracy) {
+    abelianDifferential.of1stKind(r, z, n, accuracy);
+  }
+
+  public Complex abelianDifferentialOf1stKind(Complex z, int n) {
+    Complex r = new Complex();
+    abelianDifferential.of1stKind(r, z, n, schottky.acc);
+    return r;
+  }
+
+  public void abelianDifferentialOf1stKind(Complex[] r, Complex[] z, int n) {
+    abelianDifferential.of1stKind(r, z, 0, z.length, n, schottky.acc);
+  }
+
+  public void abelianDifferentialOf1stKind(Complex[] r, Complex[] z, int n,
+                                           double accuracy) {
+    abelianDifferential.of1stKind(r, z, 0, z.length, n, accuracy);
+  }
+
+  public Complex abelianDifferentialOf1stKind(Complex z, int n,
+                                              double accuracy) {
+    Complex r = new Complex();
+    abelianDifferential.of1stKind(r, z, n, accuracy);
+    return r;
+  }
+
+  public void abelianIntegralOf1stKind(Complex r, Complex z, int n) {
+    abelianIntegral.eval(r, z, n, schottky.acc);
+  }
+
+  public void abelianIntegralOf1stKind(Complex r, Complex z, int n,
+                                       double accuracy) {
+    abelianIntegral.eval(r, z, n, accuracy);
+  }
+
+  public Complex abelianIntegralOf1stKind(Complex z, int n) {
+    Complex r = new Complex();
+    abelianIntegral.eval(r, z, n, schottky.acc);
+    return r;
+  }
+
+  public Complex abelianIntegralOf1stKind(Complex z, int n, double accuracy) {
+    Complex r = new Complex();
+    abelianIntegral.eval(r, z, n, accuracy);
+    return r;
+  }
+
+  public void abelianDifferentialsOf1stKind(Complex[] r, Complex z) {
+    abelianDifferential.of1stKind(r, z, schottky.acc);
+  }
+
+  public void abelianDifferentialsOf1stKind(Complex[] r, Complex z,
+                                            double accuracy) {
+    abelianDifferential.of1stKind(r, z, accuracy);
+  }
+
+  public void abelianIntegralsOf1stKind(Complex[] r, Complex z) {
+    abelianIntegral.eval(r, z, schottky.acc);
+  }
+
+  public void abelianIntegralsOf1stKind(Complex[] r, Complex z,
+                                        double accuracy) {
+    abelianIntegral.eval(r, z, accuracy);
+  }
+
+  public void abelianIntegralsOf3rdKind(Complex[][] r, Complex[] z,
+                                        Complex[] A, Complex[] B) {
+    abelianIntegral.of3rdKind(r, z, A, B, schottky.acc);
+  }
+
+  public void abelianIntegralsOf3rdKind(Complex[][] r, Complex[] z,
+                                        Complex[] A, Complex[] B,
+                                        double accuracy) {
+    abelianIntegral.of3rdKind(r, z, A, B, accuracy);
+  }
+
+  public void abelMapDifferential(ComplexVector v, Complex z) {
+    v.newSize(schottky.numGenerators);
+
+    abelianDifferentialsOf1stKind(values, z);
+
+    for (int i = 0; i < schottky.numGenerators; i++) {
+      v.set(i, values[i]);
+    }
+  }
+
+  public void abelMap(ComplexVector v, Complex z) {
+    v.newSize(schottky.numGenerators);
+
+    abelianIntegralsOf1stKind(values, z);
+
+    for (int i = 0; i < schottky.numGenerators; i++) {
+      v.set(i, values[i]);
+    }
+  }
+
+  public void sigma(Complex r, Complex z, Complex w) {
+    sigma.eval(r, z, w, schottky.acc);
+  }
+
+  public void sigma(Complex r, Complex z, Complex w, double accuracy) {
+    sigma.eval(r, z, w, accuracy);
+  }
+
+  public void getV(ComplexVector V) {
+    getV(V, schottky.acc);
+  }
+
+  public void getV(ComplexVector V, double accuracy) {
+    V.newSize(schottky.numGenerators);
+    for (int n = 0; n < schottky.numGenerators; n++) {
+      sigma.eval(tmp, n, accuracy);
+      V.set(n, tmp);
+    }
+  }
+
+  public void getVs(int maxPower, ComplexVector[] V) {
+    getVs(maxPower, V, schottky.acc);
+  }
+
+  public void getVs(int maxPower, ComplexVector[] V, double accuracy) {
+    sigma.evalPowers(V, maxPower, accuracy);
+  }
+
+  public void getPeriodMatrix(ComplexMatrix B) {
+    periodMatrix.eval(B, schottky.acc);
+  }
+
+  public void getPeriodMatrix(ComplexMatrix B, double accuracy) {
+    periodMatrix.eval(B, accuracy);
+  }
+}
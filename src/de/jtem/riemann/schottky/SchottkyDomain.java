@@ -57,6 +57,18 @@ public class SchottkyDomain implements Serializable, Cloneable {
 
     double [] point;
 
+    int [] indices;
+
+    int [] neighbors;
+
+    /* center and radius of the circles of the boundary components 1,2,... */
+    double [] circles;
+
+    boolean movingMesh = false;
+
+    /* triangulator does not have the moved points */
+    boolean triangulatorIsStale;
+
     /**
      * Get the value of xMax.
      * @return Value of xMax.
@@ -231,10 +243,406 @@ public class SchottkyDomain implements Serializable, Cloneable {
 	setSchottky( schottky );
     }
 
+    /**
+     * Returns whether {@link #update()} moves the triangulation.
+     * @see #setMovingMesh(boolean)
+     */
+    public boolean isMovingMesh() {
+	return movingMesh;
+    }
+
+    /**
+     * Sets whether {@link #update()} moves the triangulation to the new
+     * boundary, if possible, instead of triangulating from scratch.
+     * This is much faster when the generators move slightly, e.g. while
+     * editing the schottky data interactively.
+     * Default is false.
+     * @see #move()
+     */
+    public void setMovingMesh(boolean movingMesh) {
+	this.movingMesh = movingMesh;
+    }
+
     public Ruppert getTriangulator() {
+	if( triangulatorIsStale )
+	    updateTriangulator( false );
+
 	return triangulator;
     }
 
+    /* triangulates the moved points from scratch */
+    void rebuildTriangulator() {
+
+	triangulator = new Ruppert( boundary );
+
+	final int numOfBoundaryPoints = getNumOfBoundaryPoints( boundary );
+
+	final boolean [] onBoundary = getVerticesOnBoundary();
+
+	for( int i=numOfBoundaryPoints; i<point.length/2; i++ )
+	    if( !onBoundary[i] )
+		triangulator.addPoint( point[2*i], point[2*i+1] );
+
+	triangulatorIsStale = false;
+    }
+
+    static int getNumOfBoundaryPoints( double [][] boundary ) {
+	int n = 0;
+	for( int k=0; k<boundary.length; k++ )
+	    n += boundary[k].length / 2;
+	return n;
+    }
+
+    /* marks the vertices of the edges without neighbor */
+    boolean [] getVerticesOnBoundary() {
+
+	final boolean [] onBoundary = new boolean[ point.length / 2 ];
+
+	for( int f=0; f<neighbors.length; f++ )
+	    if( neighbors[f] < 0 ) {
+		final int first = f - f % 3;
+		onBoundary[ indices[ first + (f+1) % 3 ] ] = true;
+		onBoundary[ indices[ first + (f+2) % 3 ] ] = true;
+	    }
+
+	return onBoundary;
+    }
+
+    public static double [] getCircles( Schottky schottky ) {
+
+	final double [] circles = new double[ 6 * schottky.getNumGenerators() ];
+
+	for( int i=0, k=0; i<schottky.getNumGenerators(); i++ )
+	    for( int j=0; j<2; j++ ) {
+		circles[k++] = schottky.center[i][j].re;
+		circles[k++] = schottky.center[i][j].im;
+		circles[k++] = schottky.radius[i];
+	    }
+
+	return circles;
+    }
+
+    /**
+     * Moves the triangulation to the current boundary of the schottky
+     * domain. The boundary vertices are mapped to their new positions on
+     * the boundary; the others are moved by the similarities which map
+     * the old circles and the outer boundary to the new ones, weighted
+     * by the inverse square of their distances to the vertex.
+     * Afterwards the edges which are no longer Delaunay are flipped.
+     * Nothing is changed if the number of boundary points has changed,
+     * if a triangle gets flipped over, or if the smallest angle drops
+     * below half of the angle constraint.
+     * The triangulator is rebuilt from the moved points, when it is
+     * needed by {@link #getTriangulator()} or a refinement.
+     * @return true if the triangulation has been moved
+     */
+    public boolean move() {
+
+	if( triangulator == null || boundary == null || circles == null )
+	    return false;
+
+	final double [][] newBoundary = getBoundary();
+	final double [] newCircles = getCircles( schottky );
+
+	if( newBoundary.length != boundary.length )
+	    return false;
+
+	for( int k=0; k<boundary.length; k++ )
+	    if( newBoundary[k].length != boundary[k].length )
+		return false;
+
+	final int numOfPoints = point.length / 2;
+
+	final double [] newPoint = new double[ point.length ];
+
+	final boolean [] onBoundary = getVerticesOnBoundary();
+
+	final int numOfBoundaryPoints = getNumOfBoundaryPoints( boundary );
+
+	for( int k=0, i=0; k<boundary.length; k++ ) {
+	    System.arraycopy( newBoundary[k], 0, newPoint, 2*i, newBoundary[k].length );
+	    i += boundary[k].length / 2;
+	}
+
+	for( int i=numOfBoundaryPoints; i<numOfPoints; i++ ) {
+	    if( onBoundary[i] ) {
+		if( !moveBoundaryPoint( i, newBoundary, newPoint ) )
+		    return false;
+	    } else
+		moveInnerPoint( i, newBoundary, newCircles, newPoint );
+	}
+
+	final int numOfFaces = indices.length / 3;
+
+	for( int f=0; f<numOfFaces; f++ )
+	    if( orientation( newPoint, indices[3*f], indices[3*f+1], indices[3*f+2] ) <= 0 )
+		return false;
+
+	final int [] newIndices = indices.clone();
+	final int [] newNeighbors = neighbors.clone();
+
+	if( !flipToDelaunay( newPoint, newIndices, newNeighbors ) )
+	    return false;
+
+	if( minAngle( newPoint, newIndices ) < minAngle / 2 )
+	    return false;
+
+	boundary  = newBoundary;
+	circles   = newCircles;
+	point     = newPoint;
+	indices   = newIndices;
+	neighbors = newNeighbors;
+
+	triangulatorIsStale = true;
+
+	return true;
+    }
+
+    /* maps a vertex on a boundary segment to the same position on the new segment */
+    boolean moveBoundaryPoint( int i, double [][] newBoundary, double [] newPoint ) {
+
+	final double x = point[2*i];
+	final double y = point[2*i+1];
+
+	double minDist = Double.MAX_VALUE;
+
+	for( int k=0; k<boundary.length; k++ ) {
+
+	    final double [] b = boundary[k];
+	    final int n = b.length / 2;
+
+	    for( int s=0; s<n; s++ ) {
+
+		final int e = (s+1) % n;
+
+		final double dx = b[2*e] - b[2*s];
+		final double dy = b[2*e+1] - b[2*s+1];
+
+		final double t = ((x - b[2*s]) * dx + (y - b[2*s+1]) * dy) / (dx*dx + dy*dy);
+
+		if( t < 0 || t > 1 )
+		    continue;
+
+		final double ex = b[2*s] + t * dx - x;
+		final double ey = b[2*s+1] + t * dy - y;
+
+		final double dist = ex*ex + ey*ey;
+
+		if( dist < minDist ) {
+		    minDist = dist;
+
+		    final double [] nb = newBoundary[k];
+
+		    newPoint[2*i]   = nb[2*s]   + t * (nb[2*e]   - nb[2*s]);
+		    newPoint[2*i+1] = nb[2*s+1] + t * (nb[2*e+1] - nb[2*s+1]);
+		}
+	    }
+	}
+
+	return minDist < 1e-16 * (x*x + y*y + 1);
+    }
+
+    /* moves an inner vertex by the blend of the similarities of the boundary components */
+    void moveInnerPoint( int i, double [][] newBoundary, double [] newCircles, double [] newPoint ) {
+
+	final double x = point[2*i];
+	final double y = point[2*i+1];
+
+	// outer boundary: xMax, yMax, xMin, yMax, xMin, yMin, xMax, yMin
+	final double [] o = boundary[0];
+	final double [] no = newBoundary[0];
+
+	final double sx = (no[0] - no[2]) / (o[0] - o[2]);
+	final double sy = (no[1] - no[5]) / (o[1] - o[5]);
+
+	double d = Math.min( Math.min( x - o[2], o[0] - x ), Math.min( y - o[5], o[1] - y ) );
+
+	double w = 1 / (d * d + 1e-300);
+
+	double sumW = w;
+	double sumX = w * (no[2] + (x - o[2]) * sx - x);
+	double sumY = w * (no[5] + (y - o[5]) * sy - y);
+
+	for( int k=0; k<circles.length; k+=3 ) {
+
+	    final double cx = circles[k];
+	    final double cy = circles[k+1];
+	    final double r  = circles[k+2];
+
+	    final double s = newCircles[k+2] / r;
+
+	    d = Math.sqrt( (x-cx)*(x-cx) + (y-cy)*(y-cy) ) - r;
+	    w = 1 / (d * d + 1e-300);
+
+	    sumW += w;
+	    sumX += w * (newCircles[k]   + (x - cx) * s - x);
+	    sumY += w * (newCircles[k+1] + (y - cy) * s - y);
+	}
+
+	newPoint[2*i]   = x + sumX / sumW;
+	newPoint[2*i+1] = y + sumY / sumW;
+    }
+
+    static double orientation( double [] p, int i, int j, int k ) {
+	return (p[2*j] - p[2*i]) * (p[2*k+1] - p[2*i+1])
+	    -  (p[2*k] - p[2*i]) * (p[2*j+1] - p[2*i+1]);
+    }
+
+    /* true if l lies in the circumcircle of the positively oriented triangle i,j,k */
+    static boolean inCircle( double [] p, int i, int j, int k, int l ) {
+
+	final double ax = p[2*i] - p[2*l], ay = p[2*i+1] - p[2*l+1];
+	final double bx = p[2*j] - p[2*l], by = p[2*j+1] - p[2*l+1];
+	final double cx = p[2*k] - p[2*l], cy = p[2*k+1] - p[2*l+1];
+
+	final double det =
+	      (ax*ax + ay*ay) * (bx*cy - cx*by)
+	    - (bx*bx + by*by) * (ax*cy - cx*ay)
+	    + (cx*cx + cy*cy) * (ax*by - bx*ay);
+
+	final double scale = ax*ax + ay*ay + bx*bx + by*by + cx*cx + cy*cy;
+
+	return det > 1e-14 * scale * scale;
+    }
+
+    /**
+     * Flips the edges which are not locally Delaunay (Lawson's algorithm).
+     * The neighbor of face f opposite to its vertex j is neighbors[3f+j];
+     * edges without neighbor are boundary edges and are never flipped.
+     * @return false if the flips do not terminate
+     */
+    static boolean flipToDelaunay( double [] p, int [] indices, int [] neighbors ) {
+
+	final int numOfFaces = indices.length / 3;
+
+	int [] stack = new int[ numOfFaces ];
+	final boolean [] onStack = new boolean[ numOfFaces ];
+
+	int size = 0;
+
+	for( int f=numOfFaces-1; f>=0; f-- ) {
+	    stack[size++] = f;
+	    onStack[f] = true;
+	}
+
+	long numOfFlips = 0;
+
+	while( size > 0 ) {
+
+	    final int f = stack[--size];
+	    onStack[f] = false;
+
+	    for( int j=0; j<3; j++ ) {
+
+		final int g = neighbors[3*f+j];
+
+		if( g < 0 )
+		    continue;
+
+		// vertex of g opposite to the common edge
+		int m = 0;
+		while( neighbors[3*g+m] != f )
+		    m++;
+
+		final int a = indices[3*f+j];
+		final int b = indices[3*f+(j+1)%3];
+		final int c = indices[3*f+(j+2)%3];
+		final int d = indices[3*g+m];
+
+		if( !inCircle( p, a, b, c, d ) )
+		    continue;
+
+		// the quadrilateral a,b,d,c must be convex
+		if( orientation( p, a, b, d ) <= 0 || orientation( p, a, d, c ) <= 0 )
+		    continue;
+
+		if( ++numOfFlips > 100L * numOfFaces )
+		    return false;
+
+		// neighbors of the quadrilateral
+		final int fb = neighbors[3*f+(j+1)%3]; // opposite b: edge c,a
+		final int fc = neighbors[3*f+(j+2)%3]; // opposite c: edge a,b
+
+		// g is b,c,d in some rotation with d at m
+		final int gb = vertexOpposite( indices, neighbors, g, b ); // edge c,d
+		final int gc = vertexOpposite( indices, neighbors, g, c ); // edge d,b
+
+		// f becomes a,b,d and g becomes a,d,c
+		indices[3*f] = a; indices[3*f+1] = b; indices[3*f+2] = d;
+		neighbors[3*f] = gc; neighbors[3*f+1] = g; neighbors[3*f+2] = fc;
+
+		indices[3*g] = a; indices[3*g+1] = d; indices[3*g+2] = c;
+		neighbors[3*g] = gb; neighbors[3*g+1] = fb; neighbors[3*g+2] = f;
+
+		replaceNeighbor( neighbors, gc, g, f );
+		replaceNeighbor( neighbors, fb, f, g );
+
+		if( !onStack[f] ) {
+		    if( size == stack.length ) {
+			int [] newStack = new int[ 2 * size ];
+			System.arraycopy( stack, 0, newStack, 0, size );
+			stack = newStack;
+		    }
+		    stack[size++] = f;
+		    onStack[f] = true;
+		}
+
+		if( !onStack[g] ) {
+		    if( size == stack.length ) {
+			int [] newStack = new int[ 2 * size ];
+			System.arraycopy( stack, 0, newStack, 0, size );
+			stack = newStack;
+		    }
+		    stack[size++] = g;
+		    onStack[g] = true;
+		}
+
+		break;
+	    }
+	}
+
+	return true;
+    }
+
+    static int vertexOpposite( int [] indices, int [] neighbors, int f, int vertex ) {
+	for( int j=0; j<3; j++ )
+	    if( indices[3*f+j] == vertex )
+		return neighbors[3*f+j];
+	throw new IllegalStateException( "vertex is not in face" );
+    }
+
+    static void replaceNeighbor( int [] neighbors, int f, int oldNeighbor, int newNeighbor ) {
+	if( f < 0 )
+	    return;
+	for( int j=0; j<3; j++ )
+	    if( neighbors[3*f+j] == oldNeighbor ) {
+		neighbors[3*f+j] = newNeighbor;
+		return;
+	    }
+    }
+
+    static double minAngle( double [] p, int [] indices ) {
+
+	double minCos = -1;
+
+	for( int f=0; f<indices.length; f+=3 )
+	    for( int j=0; j<3; j++ ) {
+		final int a = indices[f+j];
+		final int b = indices[f+(j+1)%3];
+		final int c = indices[f+(j+2)%3];
+
+		final double ux = p[2*b] - p[2*a], uy = p[2*b+1] - p[2*a+1];
+		final double vx = p[2*c] - p[2*a], vy = p[2*c+1] - p[2*a+1];
+
+		final double cos = (ux*vx + uy*vy) / Math.sqrt( (ux*ux + uy*uy) * (vx*vx + vy*vy) );
+
+		if( cos > minCos )
+		    minCos = cos;
+	    }
+
+	return Math.toDegrees( Math.acos( Math.min( 1, minCos ) ) );
+    }
+
     public static double [][] getBoundary( Schottky schottky, 
 					   double xDist, double yDist, int circleDiscr ) {
 	
@@ -329,13 +737,19 @@ public class SchottkyDomain implements Serializable, Cloneable {
 	
 	if( triangulator == null || rebuildTriangulator )
 	    triangulator = new Ruppert( boundary );
+	else if( triangulatorIsStale )
+	    rebuildTriangulator();
+
+	triangulatorIsStale = false;
 
 	triangulator.setAngleConstraint( minAngle );
 	triangulator.setAreaConstraint( maxArea );
 	
 	triangulator.refine();
 
-	point = triangulator.getPoints();
+	point     = triangulator.getPoints();
+	indices   = triangulator.getIndices();
+	neighbors = triangulator.getNeighbors();
     }
 
     public int getLengthOfBoundaryComponent(int i ) {
@@ -344,13 +758,17 @@ public class SchottkyDomain implements Serializable, Cloneable {
     
     public void update() {
 
+	if( movingMesh && move() )
+	    return;
+
 	boundary = getBoundary();
+	circles  = getCircles( schottky );
 
 	updateTriangulator( true );
     }
 
     public void addPoint( final double x, final double y ) {
-	triangulator.addPoint( x, y );
+	getTriangulator().addPoint( x, y );
 
 	System.out.println( "adding ("+x+","+y+")" );
 
@@ -366,7 +784,7 @@ public class SchottkyDomain implements Serializable, Cloneable {
 	for( int i=0; i<resolution; i++, y -= step )
 	    addPoint( x, y );
 
-	triangulator.addPoint( x, yMin );
+	getTriangulator().addPoint( x, yMin );
 
 	updateTriangulator( false );
     }
@@ -376,11 +794,11 @@ public class SchottkyDomain implements Serializable, Cloneable {
     }
 
     public int getNumOfPoints() {
-	return triangulator.getNumPoints();
+	return point.length / 2;
     }
 
     public int getNumOfElements() {
-	return triangulator.getNumFaces();
+	return indices.length / 3;
     }
 
     public double [] getPoints() {
@@ -388,11 +806,11 @@ public class SchottkyDomain implements Serializable, Cloneable {
     }
 
     public int [] getIndices() {
-	return triangulator.getIndices();
+	return indices;
     }
 
     public int [] getNeighbors() {
-	return triangulator.getNeighbors();
+	return neighbors;
     }
 }      
 	
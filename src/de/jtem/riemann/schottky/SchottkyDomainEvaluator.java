@@ -0,0 +1,333 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.jtem.mfc.field.Complex;
+
+/**
+ * Evaluates a function at all vertices of the triangulation of a
+ * schottky domain. The values are kept; after a refinement of the
+ * domain only the new vertices are evaluated, i.e. the vertices
+ * which are not at the position of the previous vertex with the
+ * same index.
+ * <p>
+ * The vertices are visited in breadth first order along the edges of
+ * the triangulation, so that consecutive vertices are close and share
+ * warm caches. If the schottky group has an executor, this order is split
+ * into contiguous parts, which are evaluated by independent tasks; each
+ * task evaluates with its own copy of the function and of the schottky
+ * group, because the functions are not thread safe. Its values agree
+ * with the sequential ones within the accuracy of the function.
+ */
+public class SchottkyDomainEvaluator {
+
+    /** minimal number of vertices of a task */
+    static final int MIN_TASK_SIZE = 32;
+
+    final SchottkyDomain domain;
+
+    final SchottkyAnalysisFunction function;
+
+    /** vertices and values of last evaluation */
+    double [] point = new double[0];
+    double [] value = new double[0];
+
+    int updateID = -1;
+
+    int numOfEvaluations;
+
+    /** maximal number of tasks of a parallel evaluation */
+    int numOfTasks = Runtime.getRuntime().availableProcessors();
+
+    /** copies of schottky group and function for the tasks */
+    Schottky [] schottkyOfTask = new Schottky[0];
+    SchottkyAnalysisFunction [] functionOfTask = new SchottkyAnalysisFunction[0];
+
+    int [] updateIDOfTask = new int[0];
+
+    public SchottkyDomainEvaluator( SchottkyDomain domain, SchottkyAnalysisFunction function ) {
+
+	if( domain == null || function == null )
+	    throw new NullPointerException( "must prescribe domain and function" );
+
+	this.domain   = domain;
+	this.function = function;
+    }
+
+    public SchottkyDomain getDomain() {
+	return domain;
+    }
+
+    public SchottkyAnalysisFunction getFunction() {
+	return function;
+    }
+
+    /**
+     * Returns number of vertices which have been evaluated by the last
+     * call of {@link #eval()}.
+     */
+    public int getNumOfEvaluations() {
+	return numOfEvaluations;
+    }
+
+    /**
+     * Returns maximal number of tasks, into which an evaluation is split
+     * if the schottky group has an executor.
+     */
+    public int getNumOfTasks() {
+	return numOfTasks;
+    }
+
+    /**
+     * Sets maximal number of tasks, into which an evaluation is split
+     * if the schottky group has an executor; each task evaluates at least
+     * {@link #MIN_TASK_SIZE} vertices. The default is the number of
+     * available processors.
+     */
+    public void setNumOfTasks( int numOfTasks ) {
+	if( numOfTasks < 1 )
+	    throw new IllegalArgumentException( "number of tasks must be positive" );
+	this.numOfTasks = numOfTasks;
+    }
+
+    /**
+     * Forgets all values, e.g. after a parameter of the function
+     * has been changed.
+     */
+    public void invalidate() {
+	point = new double[0];
+	value = new double[0];
+    }
+
+    /**
+     * Evaluates function at all vertices of the triangulation.
+     * @return values, the ith belongs to the vertex with index i
+     */
+    public double [] eval() {
+
+	final Schottky schottky = function.getSchottky();
+
+	if( updateID != schottky.updateID ) {
+	    updateID = schottky.updateID;
+	    invalidate();
+	}
+
+	final double [] newPoint = domain.getPoints();
+
+	final int numOfPoints = newPoint.length / 2;
+
+	final double [] newValue = new double[ numOfPoints ];
+
+	final boolean [] known = new boolean[ numOfPoints ];
+
+	for( int i=0; i<Math.min( numOfPoints, value.length ); i++ )
+	    if( newPoint[2*i] == point[2*i] && newPoint[2*i+1] == point[2*i+1] ) {
+		newValue[i] = value[i];
+		known[i] = true;
+	    }
+
+	final int [] order = getOrder( numOfPoints, domain.getIndices(), known );
+
+	numOfEvaluations = order.length;
+
+	eval( schottky, newPoint, newValue, order );
+
+	point = newPoint.clone();
+	value = newValue;
+
+	return value.clone();
+    }
+
+    /**
+     * Returns the vertices which are not known in breadth first order
+     * along the edges of the triangles given by indices.
+     */
+    static int [] getOrder( int numOfPoints, int [] indices, boolean [] known ) {
+
+	// adjacency lists in compressed form
+	final int [] degree = new int[ numOfPoints + 1 ];
+
+	for( int f=0; f<indices.length; f+=3 )
+	    for( int k=0; k<3; k++ )
+		degree[ indices[f+k] ] += 2;
+
+	final int [] first = new int[ numOfPoints + 1 ];
+
+	for( int i=0; i<numOfPoints; i++ )
+	    first[i+1] = first[i] + degree[i];
+
+	final int [] neighbor = new int[ first[numOfPoints] ];
+	final int [] fill = first.clone();
+
+	for( int f=0; f<indices.length; f+=3 )
+	    for( int k=0; k<3; k++ ) {
+		final int i = indices[f+k];
+		neighbor[ fill[i]++ ] = indices[f + (k+1) % 3];
+		neighbor[ fill[i]++ ] = indices[f + (k+2) % 3];
+	    }
+
+	final boolean [] visited = known.clone();
+
+	int numOfUnknown = 0;
+
+	for( int i=0; i<numOfPoints; i++ )
+	    if( !known[i] )
+		numOfUnknown++;
+
+	final int [] order = new int[ numOfUnknown ];
+
+	int head = 0, tail = 0;
+
+	for( int start=0; start<numOfPoints; start++ ) {
+
+	    if( visited[start] )
+		continue;
+
+	    visited[start] = true;
+	    order[tail++] = start;
+
+	    while( head < tail ) {
+		final int i = order[head++];
+
+		for( int k=first[i]; k<first[i+1]; k++ ) {
+		    final int j = neighbor[k];
+
+		    if( !visited[j] ) {
+			visited[j] = true;
+			order[tail++] = j;
+		    }
+		}
+	    }
+	}
+
+	return order;
+    }
+
+    void eval( final Schottky schottky,
+	       final double [] xy, final double [] valueAtXY, final int [] order ) {
+
+	final ExecutorService executor = schottky.getExecutor();
+
+	final int numOfTasks = executor == null ? 1 :
+	    Math.max( 1, Math.min( this.numOfTasks, order.length / MIN_TASK_SIZE ) );
+
+	if( numOfTasks == 1 ) {
+	    eval( function, xy, valueAtXY, order, 0, order.length );
+	    return;
+	}
+
+	prepareTasks( schottky, numOfTasks );
+
+	final List<Future<Void>> futures = new ArrayList<Future<Void>>( numOfTasks );
+
+	for( int t=0; t<numOfTasks; t++ ) {
+
+	    final SchottkyAnalysisFunction f = functionOfTask[t];
+	    final int begin = t * order.length / numOfTasks;
+	    final int end   = (t+1) * order.length / numOfTasks;
+
+	    futures.add( executor.submit( new Callable<Void>() {
+		    public Void call() {
+			eval( f, xy, valueAtXY, order, begin, end );
+			return null;
+		    }
+		} ) );
+	}
+
+	try {
+	    for( int t=0; t<numOfTasks; t++ )
+		futures.get(t).get();
+	} catch( InterruptedException e ) {
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException( "interrupted while evaluating domain" );
+	} catch( ExecutionException e ) {
+	    throw e.getCause() instanceof RuntimeException
+		? (RuntimeException)e.getCause() : new RuntimeException( e.getCause() );
+	} finally {
+	    for( int t=0; t<futures.size(); t++ )
+		futures.get(t).cancel( true );
+	}
+    }
+
+    /** provides a copy of schottky group and function for each task */
+    void prepareTasks( Schottky schottky, int numOfTasks ) {
+
+	if( schottkyOfTask.length < numOfTasks ) {
+
+	    Schottky [] newSchottkyOfTask = new Schottky[ numOfTasks ];
+	    SchottkyAnalysisFunction [] newFunctionOfTask = new SchottkyAnalysisFunction[ numOfTasks ];
+	    int [] newUpdateIDOfTask = new int[ numOfTasks ];
+
+	    System.arraycopy( schottkyOfTask, 0, newSchottkyOfTask, 0, schottkyOfTask.length );
+	    System.arraycopy( updateIDOfTask, 0, newUpdateIDOfTask, 0, updateIDOfTask.length );
+
+	    for( int t=updateIDOfTask.length; t<numOfTasks; t++ )
+		newUpdateIDOfTask[t] = -1;
+
+	    schottkyOfTask   = newSchottkyOfTask;
+	    functionOfTask   = newFunctionOfTask;
+	    updateIDOfTask   = newUpdateIDOfTask;
+	}
+
+	for( int t=0; t<numOfTasks; t++ ) {
+
+	    if( updateIDOfTask[t] != schottky.updateID ) {
+		schottkyOfTask[t] = schottky.copy();
+		updateIDOfTask[t] = schottky.updateID;
+	    }
+
+	    schottkyOfTask[t].assignSettings( schottky );
+
+	    // the function may have changed since the last evaluation
+	    functionOfTask[t] = function.copy( schottkyOfTask[t] );
+	}
+    }
+
+    static void eval( SchottkyAnalysisFunction f, double [] xy, double [] valueAtXY,
+		      int [] order, int begin, int end ) {
+
+	final Complex z = new Complex();
+
+	for( int k=begin; k<end; k++ ) {
+	    final int i = order[k];
+	    z.assign( xy[2*i], xy[2*i+1] );
+	    valueAtXY[i] = f.eval( z );
+	}
+    }
+}
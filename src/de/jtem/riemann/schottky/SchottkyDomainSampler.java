@@ -32,6 +32,12 @@ OF SUCH DAMAGE.
 package de.jtem.riemann.schottky;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import de.jtem.mfc.field.Complex;
 
@@ -79,40 +85,256 @@ public class SchottkyDomainSampler implements Serializable{
 	return getRaster( schottky, numRows, numCols, bound );
     }
 
+    /** number of rows and columns of a tile */
+    static final int TILE_SIZE = 16;
+
+    /**
+     * Returns the points of the raster of bound which lie in the
+     * fundamental domain. The raster is split into bands of
+     * {@link #TILE_SIZE} rows, which are sampled by independent tasks
+     * of the executor of the schottky group, if it has one.
+     * Within a band the tiles of TILE_SIZE x TILE_SIZE points are
+     * rejected or accepted as a whole if they lie in a circle or
+     * outside the bounding boxes of all circles; only the
+     * points of the remaining tiles are tested.
+     * @return x and y coordinates of the points in row major order
+     */
     public static double [] getRaster( Schottky schottky,
 				       int numRows, int numCols, double [] bound ) {
 
-	Complex z = new Complex();
+	return toArray( getBands( schottky, numRows, numCols, bound ), null, 0 );
+    }
+
+    /** growable buffer of x and y coordinates */
+    static final class Coordinates {
+
+	double [] xy;
+
+	int size;
+
+	Coordinates( int capacity ) {
+	    xy = new double[ Math.max( 2, capacity ) ];
+	}
+
+	void add( double x, double y ) {
+	    if( size + 2 > xy.length ) {
+		double [] newXY = new double[ 2 * xy.length ];
+		System.arraycopy( xy, 0, newXY, 0, size );
+		xy = newXY;
+	    }
+	    xy[size++] = x;
+	    xy[size++] = y;
+	}
+    }
 
-	double [] xy = new double[2*(numRows+1)*(numCols+1)];
+    static Coordinates [] getBands( final Schottky schottky,
+				    final int numRows, final int numCols, double [] bound ) {
 
-	double deltaX = (bound[2]-bound[0]) / numCols;
-	double deltaY = (bound[3]-bound[1]) / numRows;
+	// the coordinates are accumulated like in a sequential loop
+	final double [] x = new double[ numCols + 1 ];
+	final double [] y = new double[ numRows + 1 ];
+
+	final double deltaX = (bound[2]-bound[0]) / numCols;
+	final double deltaY = (bound[3]-bound[1]) / numRows;
+
+	double col = bound[0];
+	for( int j=0; j<=numCols; j++, col += deltaX )
+	    x[j] = col;
 
 	double row = bound[1];
+	for( int i=0; i<=numRows; i++, row += deltaY )
+	    y[i] = row;
+
+	final int numOfBands = numRows / TILE_SIZE + 1;
+
+	final List<Callable<Coordinates>> tasks = new ArrayList<Callable<Coordinates>>( numOfBands );
+
+	for( int b=0; b<numOfBands; b++ ) {
+
+	    final int firstRow = b * TILE_SIZE;
+	    final int lastRow  = Math.min( numRows, firstRow + TILE_SIZE - 1 );
+
+	    tasks.add( new Callable<Coordinates>() {
+		    public Coordinates call() {
+			return getBand( schottky, x, y, firstRow, lastRow );
+		    }
+		} );
+	}
+
+	final Coordinates [] bands = new Coordinates[ numOfBands ];
+
+	final ExecutorService executor = schottky.executor;
+
+	if( executor == null || numOfBands == 1 ) {
+	    try {
+		for( int b=0; b<numOfBands; b++ )
+		    bands[b] = tasks.get(b).call();
+	    } catch( RuntimeException e ) {
+		throw e;
+	    } catch( Exception e ) {
+		throw new RuntimeException( e );
+	    }
+	    return bands;
+	}
+
+	final List<Future<Coordinates>> futures = new ArrayList<Future<Coordinates>>( numOfBands );
+
+	for( int b=0; b<numOfBands; b++ )
+	    futures.add( executor.submit( tasks.get(b) ) );
+
+	try {
+	    for( int b=0; b<numOfBands; b++ )
+		bands[b] = futures.get(b).get();
+	} catch( InterruptedException e ) {
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException( "interrupted while sampling domain" );
+	} catch( ExecutionException e ) {
+	    throw e.getCause() instanceof RuntimeException
+		? (RuntimeException)e.getCause() : new RuntimeException( e.getCause() );
+	} finally {
+	    for( int b=0; b<numOfBands; b++ )
+		futures.get(b).cancel( true );
+	}
+
+	return bands;
+    }
+
+    /* tile lies in no circle, in some circle or needs to be tested */
+    static final int OUTSIDE = 0, INSIDE = 1, MIXED = 2;
+
+    static Coordinates getBand( Schottky schottky, double [] x, double [] y,
+				int firstRow, int lastRow ) {
+
+	final int numGenerators = schottky.numGenerators;
+
+	final int numCols = x.length - 1;
+	final int numOfTiles = numCols / TILE_SIZE + 1;
+
+	final int [] state = new int[ numOfTiles ];
+
+	// circles which intersect the tile
+	final int [][] circles = new int[ numOfTiles ][];
+	final int [] numOfCircles = new int[ numOfTiles ];
+
+	final double minY = Math.min( y[firstRow], y[lastRow] );
+	final double maxY = Math.max( y[firstRow], y[lastRow] );
+
+	for( int t=0; t<numOfTiles; t++ ) {
+
+	    final int firstCol = t * TILE_SIZE;
+	    final int lastCol  = Math.min( numCols, firstCol + TILE_SIZE - 1 );
+
+	    final double minX = Math.min( x[firstCol], x[lastCol] );
+	    final double maxX = Math.max( x[firstCol], x[lastCol] );
 
-	int k=0;
+	    circles[t] = new int[ 2 * numGenerators ];
 
-	for( int i=0; i<=numRows; i++, row += deltaY ) {
+	    for( int j=0; j<2 && state[t] != INSIDE; j++ )
+		for( int i=0; i<numGenerators; i++ ) {
 
-	    double col = bound[0];
+		    final Complex c = schottky.center[i][j];
+		    final double  r = schottky.radius[i];
 
-	    for( int j=0; j<=numCols; j++, col += deltaX ) {
+		    if( maxX < c.re - r || minX > c.re + r ||
+			maxY < c.im - r || minY > c.im + r )
+			continue;
 
-		z.assign( col, row );
+		    // a disk is convex, i.e. it contains the tile if it contains the corners
+		    final double rr = r * (1 - 1e-10);
 
-		if( schottky.dist( z ) == 0 ) {
-		    xy[k++] = col;
-		    xy[k++] = row;
+		    if( inDisk( c, rr, minX, minY ) && inDisk( c, rr, maxX, minY ) &&
+			inDisk( c, rr, minX, maxY ) && inDisk( c, rr, maxX, maxY ) ) {
+			state[t] = INSIDE;
+			break;
+		    }
+
+		    state[t] = MIXED;
+		    circles[t][numOfCircles[t]++] = j * numGenerators + i;
+		}
+	}
+
+	// a band is small, thus its buffer gets the size of all its points
+	final Coordinates band = new Coordinates( 2 * (lastRow - firstRow + 1) * (numCols + 1) );
+
+	final Complex z = new Complex();
+
+	for( int i=firstRow; i<=lastRow; i++ ) {
+
+	    final double row = y[i];
+
+	    for( int t=0; t<numOfTiles; t++ ) {
+
+		if( state[t] == INSIDE )
+		    continue;
+
+		final int firstCol = t * TILE_SIZE;
+		final int lastCol  = Math.min( numCols, firstCol + TILE_SIZE - 1 );
+
+		if( state[t] == OUTSIDE ) {
+		    for( int j=firstCol; j<=lastCol; j++ )
+			band.add( x[j], row );
+		    continue;
+		}
+
+		for( int j=firstCol; j<=lastCol; j++ ) {
+
+		    z.assign( x[j], row );
+
+		    if( !inCircles( schottky, z, circles[t], numOfCircles[t] ) )
+			band.add( x[j], row );
 		}
 	    }
 	}
 
-	double [] rasterXY = new double[k];
+	return band;
+    }
+
+    static boolean inDisk( Complex c, double r, double x, double y ) {
+	final double dx = x - c.re;
+	final double dy = y - c.im;
+	return dx * dx + dy * dy < r * r;
+    }
+
+    /* same test as Schottky.dist(Complex) restricted to the given circles */
+    static boolean inCircles( Schottky schottky, Complex z, int [] circles, int numOfCircles ) {
 
-	System.arraycopy( xy, 0, rasterXY, 0, k );
+	final int numGenerators = schottky.numGenerators;
 
-	return rasterXY;
+	for( int k=0; k<numOfCircles; k++ ) {
+
+	    final int i = circles[k] % numGenerators;
+	    final int j = circles[k] / numGenerators;
+
+	    final double aDist = schottky.radius[i] - schottky.center[i][j].dist( z );
+
+	    if( aDist >= 0 )
+		return aDist > 0;
+	}
+
+	return false;
+    }
+
+    /** concatenates bands and extra coordinates into one array */
+    static double [] toArray( Coordinates [] bands, double [] extra, int extraSize ) {
+
+	int size = extraSize;
+
+	for( int b=0; b<bands.length; b++ )
+	    size += bands[b].size;
+
+	final double [] xy = new double[ size ];
+
+	int k = 0;
+
+	for( int b=0; b<bands.length; b++ ) {
+	    System.arraycopy( bands[b].xy, 0, xy, k, bands[b].size );
+	    k += bands[b].size;
+	}
+
+	if( extraSize > 0 )
+	    System.arraycopy( extra, 0, xy, k, extraSize );
+
+	return xy;
     }
 
     public static double [] getCover( Schottky schottky, double dense, double xDist, double yDist ) {
@@ -137,18 +359,14 @@ public class SchottkyDomainSampler implements Serializable{
 	int numRows = (int)(1 / dense);
 	int numCols = (int)(1 / dense);
 
-	double [] raster = getRaster( schottky, numRows, numCols, bound );
-
 	int ringLength = 0;
 
 	for( int i=0; i<schottky.numGenerators; i++ )
 	    ringLength += 2 * Math.max( 4, 2*(int)(1 / ringDense) );
 
-	double [] cover = new double [ raster.length + 2 * ringLength ];
+	double [] ring = new double [ 2 * ringLength ];
 
-	System.arraycopy( raster, 0, cover, 0, raster.length );
-
-	int k = raster.length;
+	int k = 0;
 
 	for( int i=0; i<schottky.numGenerators; i++ ) {
 
@@ -157,21 +375,20 @@ public class SchottkyDomainSampler implements Serializable{
 	    for( int j=0; j<2; j++ ) {
 
 		for( int l=0; l<numPointsOnRing; l++ ) {
-		    cover[k  ] = schottky.center[i][j].re
+		    ring[k  ] = schottky.center[i][j].re
 			+ schottky.radius[i] * Math.cos( 2 * l/numPointsOnRing * Math.PI ) * 1.0001;
-		    cover[k+1] = schottky.center[i][j].im
+		    ring[k+1] = schottky.center[i][j].im
 			+ schottky.radius[i] * Math.sin( 2 * l/numPointsOnRing * Math.PI ) * 1.0001;
 
-		    if( cover[k  ] >= bound[0] && cover[k  ]<=bound[2] &&
-			cover[k+1] >= bound[1] && cover[k+1]<=bound[3]   )
+		    if( ring[k  ] >= bound[0] && ring[k  ]<=bound[2] &&
+			ring[k+1] >= bound[1] && ring[k+1]<=bound[3]   )
 			k+=2;
 		}
 	    }
 	}
 
-	double [] finalCover = new double[k];
-
-	System.arraycopy( cover, 0, finalCover, 0, k );
+	// the raster is written directly in front of the rings
+	double [] finalCover = toArray( getBands( schottky, numRows, numCols, bound ), ring, k );
 
 	return finalCover;
     }
@@ -0,0 +1,1407 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.jtem.mfc.field.Complex;
+import de.jtem.mfc.group.Moebius;
+
+/**
+ * Compact storage of the tree of words of a Schottky group.
+ * <p>
+ * This is a flat counterpart of the tree of {@link SchottkyGroupElement}s:
+ * a word is just an integer index into arrays which hold the
+ * coefficients of its Moebius transformation, its norm, the images of
+ * the fixpoints of the generators, the values <code>L</code> of its inverse
+ * and the circle which is the target of its next left subword.
+ * The arrays are organized in blocks of fixed size, thus growing the tree
+ * never copies or moves data.
+ * <p>
+ * As for the tree of elements, the tree grows to the left:
+ * the children of a word <code>&sigma;</code> are the words
+ * <code>g&sigma;</code> with a generator <code>g</code> which does not cancel.
+ * The <code>2N-1</code> children of a word are stored consecutively,
+ * starting at {@link #expand(int)}, and are created on demand.
+ * The root <code>0</code> is the identity and its <code>2N</code> children are
+ * the generators in the order <code>generator[0], generatorInv[0], generator[1], ...</code>.
+ * The tree is reset, whenever the Schottky data changes.
+ * <p>
+ * Words may be expanded concurrently: the directories of blocks are
+ * allocated for {@link Schottky#maxNumOfElements} words in advance and
+ * never replaced, childs are created under the lock of the tree, and
+ * the index of the first child is published last, such that a word
+ * which has been expanded by one thread is seen completely by all other
+ * threads. Between an update and the walks the tree must not be used
+ * concurrently.
+ * <p>
+ * If {@link Schottky#isMemoryBounded()} is set, a full tree does not
+ * fail, but evicts the least recently visited subtrees of words whose
+ * word length is at least {@link #MIN_EVICTABLE_WORD_LENGTH}; the shallow
+ * levels stay materialized. The childs of an evicted word are regenerated
+ * from the word, when it is expanded again. A walk pins the childs of
+ * the words on its path, thus words which may still be visited by a walk
+ * are never evicted. Since the index of an evicted word is reused,
+ * indices of words must not be kept across visits and bounded walks
+ * must start at words shorter than {@link #MIN_EVICTABLE_WORD_LENGTH}.
+ * @see SchottkyGroupElement
+ */
+final class SchottkyWordTree implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  static final int BLOCK_BITS = 10;
+  static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+  static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+  static final int ROOT = 0;
+
+  /* parent of a word which has been evicted */
+  static final int FREE = -2;
+
+  /**
+   * Minimal word length of the words whose childs may be evicted.
+   */
+  static final int MIN_EVICTABLE_WORD_LENGTH = 2;
+
+  final Schottky schottky;
+
+  final int numGenerators;
+
+  /* number of childs of a word which is not the identity */
+  final int numOfChilds;
+
+  /* stride of the images of the fixpoints: A.re, A.im, B.re, B.im for each generator */
+  final int imageStride;
+
+  int updateID = -1;
+
+  int size;
+
+  /* first words of evicted childs, which are reused before the tree grows */
+  int[] freeGroups = new int[0];
+  int numOfFreeGroups;
+
+  /* number of words which have been evicted since the last update */
+  long numOfEvictedWords;
+
+  /* time of last expansion in a bounded walk */
+  int clock;
+
+  int[][] parent;
+  AtomicIntegerArray[] firstChild;
+  /* number of bounded walks which will still visit the childs of a word */
+  AtomicIntegerArray[] pins;
+  int[][] lastVisit;
+  int[][] left;
+  int[][] leftIsInvert;
+  int[][] right;
+  int[][] rightIsInvert;
+  int[][] wordLength;
+
+  /* aRe, aIm, bRe, bIm, cRe, cIm, dRe, dIm */
+  double[][] coefficients;
+  double[][] norm;
+  /* center.re, center.im, radius */
+  double[][] targetCircle;
+  double[][] imageOfFixpoints;
+  double[][] LOfInverse;
+
+  /* initial size of the stack of a walk */
+  static final int STACK_SIZE = 64;
+
+  final Moebius inverseOfParent = new Moebius();
+
+  final Complex a = new Complex();
+  final Complex b = new Complex();
+  final Complex c = new Complex();
+  final Complex d = new Complex();
+  final Complex tmp = new Complex();
+
+  SchottkyWordTree(final Schottky schottky) {
+    this.schottky = schottky;
+
+    numGenerators = schottky.numGenerators;
+    numOfChilds = 2 * numGenerators - 1;
+    imageStride = 4 * numGenerators;
+
+    allocateDirectories(0);
+  }
+
+  /**
+   * Resets the tree if the Schottky data has changed;
+   * only the identity and the generators are kept.
+   */
+  void update() {
+
+    if (updateID == schottky.updateID) {
+      return;
+    }
+
+    updateID = schottky.updateID;
+
+    size = 0;
+
+    numOfFreeGroups = 0;
+    numOfEvictedWords = 0;
+    clock = 0;
+
+    final long maxNumOfBlocks = (schottky.maxNumOfElements + 1 + 2 * numGenerators + BLOCK_MASK) >>> BLOCK_BITS;
+
+    if (maxNumOfBlocks != parent.length) {
+      allocateDirectories((int) Math.min(maxNumOfBlocks, Integer.MAX_VALUE >>> BLOCK_BITS));
+    }
+
+    ensureCapacity(1 + 2 * numGenerators);
+
+    size = 1 + 2 * numGenerators;
+
+    int block = 0;
+
+    parent[block][ROOT] = -1;
+    firstChild[block].set(ROOT, 1);
+    pins[block].set(ROOT, 0);
+    left[block][ROOT] = right[block][ROOT] = SchottkyGroupElement.IDENTITY;
+    leftIsInvert[block][ROOT] = rightIsInvert[block][ROOT] = SchottkyGroupElement.IDENTITY;
+    wordLength[block][ROOT] = 0;
+    norm[block][ROOT] = Double.POSITIVE_INFINITY;
+
+    final double[] coefficientsOfRoot = coefficients[block];
+    for (int k = 0; k < 8; k++) {
+      coefficientsOfRoot[k] = 0;
+    }
+    coefficientsOfRoot[0] = coefficientsOfRoot[6] = 1;
+
+    computeImageOfFixpoints(ROOT);
+
+    for (int i = 0; i < numGenerators; i++) {
+      for (int j = 0; j < 2; j++) {
+
+        final int w = 1 + 2 * i + j;
+
+        final int o = w & BLOCK_MASK;
+
+        block = w >>> BLOCK_BITS;
+
+        parent[block][o] = ROOT;
+        firstChild[block].set(o, -1);
+        pins[block].set(o, 0);
+        left[block][o] = right[block][o] = i;
+        leftIsInvert[block][o] = rightIsInvert[block][o] = j;
+        wordLength[block][o] = 1;
+
+        final SchottkyGroupElement generator = j == 0 ? schottky.generator[i] : schottky.generatorInv[i];
+
+        generator.getA(a);
+        generator.getB(b);
+        generator.getC(c);
+        generator.getD(d);
+
+        final double[] coef = coefficients[block];
+        final int k = 8 * o;
+        coef[k    ] = a.re; coef[k + 1] = a.im;
+        coef[k + 2] = b.re; coef[k + 3] = b.im;
+        coef[k + 4] = c.re; coef[k + 5] = c.im;
+        coef[k + 6] = d.re; coef[k + 7] = d.im;
+
+        computeConstants(w);
+
+        // the target of a generator is the circle it maps F into
+        final Complex center = schottky.center[i][j == 0 ? 1 : 0];
+
+        final double[] target = targetCircle[block];
+        target[3 * o    ] = center.re;
+        target[3 * o + 1] = center.im;
+        target[3 * o + 2] = schottky.radius[i];
+      }
+    }
+  }
+
+  /**
+   * Callback of a walk through the tree of words.
+   */
+  interface Visitor {
+
+    /**
+     * Visits a word.
+     * @param w index of word
+     * @return true if the childs of the word are to be visited;
+     * false prunes the subtree of the word.
+     */
+    boolean visit(int w);
+  }
+
+  /**
+   * Walks in depth first order through the subtree of a word.
+   * The words are visited in the same order as by a recursion
+   * over the childs, but the walk uses an explicit stack of word indices,
+   * thus its depth is only limited by the size of the tree.
+   * @param w index of root of the walk
+   * @param visitor callback which is invoked for each word
+   * @see Walk
+   */
+  void walk(final int w, final Visitor visitor) {
+
+    final Walk walk = new Walk(w, visitor);
+
+    try {
+      while (!walk.resume(Integer.MAX_VALUE)) {
+        // continue
+      }
+    }
+    finally {
+      walk.cancel();
+    }
+  }
+
+  /**
+   * Depth first walk through the subtree of a word, which can be paused
+   * after a number of visits and resumed later, e.g. to interleave
+   * several walks or to stop a series which takes too long.
+   * The state of the walk is its explicit stack of word indices.
+   * A paused walk keeps the childs of the words on its path pinned;
+   * {@link #cancel()} releases them, if the walk is not resumed until
+   * it has finished. A walk cannot be resumed after the tree has been
+   * reset by an update.
+   */
+  final class Walk {
+
+    final Visitor visitor;
+
+    final int updateID;
+
+    int[] stack = new int[STACK_SIZE];
+
+    int top;
+
+    Walk(final int w, final Visitor visitor) {
+      this.visitor = visitor;
+      this.updateID = SchottkyWordTree.this.updateID;
+
+      stack[top++] = w;
+    }
+
+    /**
+     * Returns whether all words of the subtree have been visited
+     * or the walk has been cancelled.
+     */
+    boolean isFinished() {
+      return top == 0;
+    }
+
+    /**
+     * Continues the walk.
+     * @param maxNumOfVisits maximal number of words which are visited
+     * before the walk is paused
+     * @return true if the walk has finished
+     * @throws IllegalStateException if the tree has been reset
+     * since the walk has been started
+     */
+    boolean resume(final int maxNumOfVisits) {
+
+      if (top > 0 && updateID != SchottkyWordTree.this.updateID) {
+        throw new IllegalStateException("tree of words has been reset");
+      }
+
+      final boolean bounded = schottky.memoryBounded;
+
+      int numOfVisits = 0;
+
+      while (top > 0 && numOfVisits < maxNumOfVisits) {
+
+        final int word = stack[--top];
+
+        if (word < 0) { // all childs of ~word have been walked
+          unpin(~word);
+          continue;
+        }
+
+        numOfVisits++;
+
+        if (!visitor.visit(word)) {
+          continue;
+        }
+
+        final int first = bounded ? expandAndPin(word) : expand(word);
+        final int numOfChilds = getNumOfChilds(word);
+
+        if (top + numOfChilds + 1 > stack.length) {
+          final int[] newStack = new int[2 * (top + numOfChilds + 1)];
+          System.arraycopy(stack, 0, newStack, 0, top);
+          stack = newStack;
+        }
+
+        if (bounded) {
+          stack[top++] = ~word;
+        }
+
+        // reverse order, so that the first child is visited first
+        for (int j = numOfChilds - 1; j >= 0; j--) {
+          stack[top++] = first + j;
+        }
+      }
+
+      return top == 0;
+    }
+
+    /**
+     * Stops the walk and releases the pinned words.
+     */
+    void cancel() {
+      while (top > 0) {
+        final int word = stack[--top];
+        if (word < 0 && updateID == SchottkyWordTree.this.updateID) {
+          unpin(~word);
+        }
+      }
+    }
+  }
+
+  /**
+   * Walks through the words of the coset G/G_n (G_n\G), i.e. through all
+   * words but the identity whose most right letter is not the n-th generator.
+   * @param visitor callback which is invoked for each word
+   * @param n index of generator; the whole group is walked if n is negative
+   */
+  void walk(final Visitor visitor, final int n) {
+    for (int i = 0; i < numGenerators; i++) {
+      if (i != n) {
+        walk(1 + 2 * i, visitor);
+        walk(2 + 2 * i, visitor);
+      }
+    }
+  }
+
+  /**
+   * Visitor which accumulates a series, e.g. a sum or a product,
+   * and which can be copied to evaluate subtrees independently.
+   */
+  interface Series extends Visitor {
+
+    /**
+     * Returns a new series with the same parameters, but with
+     * a neutral partial result, e.g. zero for a sum.
+     * A copy is made right after the parent of the subtree,
+     * which is walked with the copy, has been visited.
+     */
+    Series copy();
+
+    /**
+     * Combines partial result of other series, which is a copy of this,
+     * with the partial result of this.
+     */
+    void reduce(Series other);
+  }
+
+  /**
+   * Word length of the roots of the subtrees which are walked
+   * by the tasks of a parallel walk.
+   */
+  static final int TASK_WORD_LENGTH = 2;
+
+  /**
+   * Walks in parallel through the words of the coset G/G_n (G_n\G).
+   * The words which are shorter than {@link #TASK_WORD_LENGTH} are visited
+   * by series in the calling thread; the subtrees of their childs are
+   * each walked by a task with its own copy of series, i.e. with its own
+   * partial result and error budget. The partial results of the tasks are
+   * reduced in the order of the subtrees, thus the result does not depend
+   * on the scheduling of the tasks.
+   * @param series which is evaluated
+   * @param n index of generator; the whole group is walked if n is negative
+   * @param executor which runs the tasks; the walk is sequential if null
+   * @see #walk(Visitor, int)
+   */
+  void walk(final Series series, final int n, final ExecutorService executor) {
+
+    if (executor == null) {
+      walk(series, n);
+      return;
+    }
+
+    final List<Integer> roots = new ArrayList<Integer>();
+    final List<Series> copies = new ArrayList<Series>();
+
+    walk(new Visitor() {
+      public boolean visit(final int w) {
+
+        if (!series.visit(w)) {
+          return false;
+        }
+
+        if (getWordLength(w) < TASK_WORD_LENGTH - 1) {
+          return true;
+        }
+
+        final int first = expand(w);
+
+        for (int j = 0, numOfChilds = getNumOfChilds(w); j < numOfChilds; j++) {
+          roots.add(Integer.valueOf(first + j));
+          copies.add(series.copy());
+        }
+
+        return false;
+      }
+    }, n);
+
+    final List<Future<Series>> tasks = new ArrayList<Future<Series>>(roots.size());
+
+    for (int i = 0; i < roots.size(); i++) {
+
+      final int root = roots.get(i).intValue();
+      final Series copy = copies.get(i);
+
+      tasks.add(executor.submit(new Callable<Series>() {
+        public Series call() {
+          walk(root, copy);
+          return copy;
+        }
+      }));
+    }
+
+    try {
+      for (int i = 0; i < tasks.size(); i++) {
+        series.reduce(get(tasks.get(i)));
+      }
+    }
+    catch (RuntimeException e) {
+      for (int i = 0; i < tasks.size(); i++) {
+        tasks.get(i).cancel(true);
+      }
+      throw e;
+    }
+  }
+
+  private static <T> T get(final Future<T> future) {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("interrupted while walking the tree of words");
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Series whose terms are summed in the order of their size.
+   */
+  interface BoundedSeries {
+
+    /**
+     * Returns bound of the sum of the absolute values of the terms
+     * of the subtree of word w, including the term of w.
+     */
+    double bound(int w);
+
+    /**
+     * Adds term of word w.
+     */
+    void add(int w);
+  }
+
+  /**
+   * Sums series over the coset G/G_n (G_n\G) in best first order:
+   * the words are kept in a priority queue ordered by the bounds of
+   * their subtrees, and the word with the biggest bound is added and
+   * replaced by its childs next. The summation stops as soon as the sum of the
+   * bounds in the queue, which bounds the remainder of the series, is smaller
+   * than accuracy. In contrast to the depth first walks, the error budget
+   * is not distributed over the word lengths, which saves terms if the
+   * group is anisotropic.
+   * @param series which is summed
+   * @param n index of generator; the whole group is summed if n is negative
+   * @param accuracy bound of remainder
+   * @return number of added terms
+   * @throws RuntimeException if the series does not converge for any reasonable word length
+   */
+  int sumBestFirst(final BoundedSeries series, final int n, final double accuracy) {
+
+    final boolean bounded = schottky.memoryBounded;
+
+    final int maxWordLength = schottky.numOfElementsWithWordLength.length - 1;
+
+    Heap heap = new Heap();
+
+    int numOfTerms = 0;
+
+    for (int i = 0; i < numGenerators; i++) {
+      if (i != n) {
+        heap.push(1 + 2 * i, series.bound(1 + 2 * i));
+        heap.push(2 + 2 * i, series.bound(2 + 2 * i));
+      }
+    }
+
+    try {
+      while (heap.size > 0 && (heap.numOfUnbounded > 0 || heap.sum >= accuracy)) {
+
+        final int w = heap.pop();
+
+        series.add(w);
+
+        numOfTerms++;
+
+        final int wordLength = getWordLength(w);
+
+        if (wordLength >= maxWordLength) {
+          throw new RuntimeException("series did not converge up to word length " + maxWordLength);
+        }
+
+        // the childs of w are pinned, before w leaves the queue
+        final int first;
+
+        try {
+          first = bounded ? expandAndPin(w) : expand(w);
+        }
+        catch (RuntimeException e) {
+          if (bounded) {
+            unpin(w);
+            pinAncestors(w, -1);
+          }
+          throw e;
+        }
+
+        for (int j = 0; j < numOfChilds; j++) {
+          heap.push(first + j, series.bound(first + j));
+        }
+
+        if (bounded) {
+          pins[w >>> BLOCK_BITS].addAndGet(w & BLOCK_MASK, numOfChilds - 1);
+          pinAncestors(w, numOfChilds - 1);
+        }
+      }
+    }
+    finally {
+      if (bounded) {
+        for (int i = 0; i < heap.size; i++) {
+          pinAncestors(heap.word[i], -1);
+        }
+      }
+    }
+
+    return numOfTerms;
+  }
+
+  /* adds delta to the pins of the parent of w and of its ancestors */
+  private void pinAncestors(int w, final int delta) {
+    for (w = getParent(w); w > ROOT; w = getParent(w)) {
+      pins[w >>> BLOCK_BITS].addAndGet(w & BLOCK_MASK, delta);
+    }
+  }
+
+  /**
+   * Priority queue of words ordered by bounds, the biggest first.
+   */
+  static final class Heap {
+
+    int size;
+
+    int[] word = new int[STACK_SIZE];
+    double[] bound = new double[STACK_SIZE];
+
+    /* sum of finite bounds */
+    double sum;
+
+    /* number of words with infinite bound */
+    int numOfUnbounded;
+
+    void push(final int w, final double b) {
+
+      if (size == word.length) {
+        final int[] newWord = new int[2 * size];
+        final double[] newBound = new double[2 * size];
+        System.arraycopy(word, 0, newWord, 0, size);
+        System.arraycopy(bound, 0, newBound, 0, size);
+        word = newWord;
+        bound = newBound;
+      }
+
+      if (b == Double.POSITIVE_INFINITY) {
+        numOfUnbounded++;
+      }
+      else {
+        sum += b;
+      }
+
+      int i = size++;
+
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        if (bound[parent] >= b) {
+          break;
+        }
+        word[i] = word[parent];
+        bound[i] = bound[parent];
+        i = parent;
+      }
+
+      word[i] = w;
+      bound[i] = b;
+    }
+
+    int pop() {
+
+      final int w = word[0];
+
+      if (bound[0] == Double.POSITIVE_INFINITY) {
+        numOfUnbounded--;
+      }
+      else {
+        sum -= bound[0];
+      }
+
+      final int last = word[--size];
+      final double b = bound[size];
+
+      int i = 0;
+
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && bound[child + 1] > bound[child]) {
+          child++;
+        }
+        if (bound[child] <= b) {
+          break;
+        }
+        word[i] = word[child];
+        bound[i] = bound[child];
+        i = child;
+      }
+
+      word[i] = last;
+      bound[i] = b;
+
+      return w;
+    }
+  }
+
+  /**
+   * Returns number of elements with given word length from table noe.
+   * @param noe number of elements of the group or of a coset
+   * @param wordLength word length
+   * @throws RuntimeException if the word length exceeds the table,
+   * i.e. the series did not converge for any reasonable word length.
+   * @see Schottky#getNumOfElementsWithWordLength(int)
+   */
+  static long numOfElements(final long[] noe, final int wordLength) {
+    if (wordLength >= noe.length) {
+      throw new RuntimeException("series did not converge up to word length " +
+                                 (noe.length - 1));
+    }
+    return noe[wordLength];
+  }
+
+  /**
+   * Returns number of words which are currently stored.
+   */
+  int getNumOfWords() {
+    return size - numOfFreeGroups * numOfChilds;
+  }
+
+  /**
+   * Returns number of childs of a word.
+   */
+  int getNumOfChilds(final int w) {
+    return w == ROOT ? 2 * numGenerators : numOfChilds;
+  }
+
+  /**
+   * Returns index of first child of a word and creates the childs, if needed.
+   * @param w index of word
+   * @return index of first child; the other follow consecutively.
+   */
+  int expand(final int w) {
+
+    final int first = firstChild[w >>> BLOCK_BITS].get(w & BLOCK_MASK);
+
+    if (first >= 0) {
+      return first;
+    }
+
+    return createLeftChilds(w);
+  }
+
+  /**
+   * Expands a word like {@link #expand(int)} and pins its childs,
+   * such that they are not evicted before {@link #unpin(int)}.
+   */
+  private int expandAndPin(final int w) {
+
+    final int block = w >>> BLOCK_BITS;
+    final int o = w & BLOCK_MASK;
+
+    // pin before reading first child, evict clears first child before checking pins
+    pins[block].incrementAndGet(o);
+
+    lastVisit[block][o] = ++clock;
+
+    final int first = firstChild[block].get(o);
+
+    if (first >= 0) {
+      return first;
+    }
+
+    return createLeftChilds(w);
+  }
+
+  private void unpin(final int w) {
+    pins[w >>> BLOCK_BITS].decrementAndGet(w & BLOCK_MASK);
+  }
+
+  private synchronized int createLeftChilds(final int w) {
+
+    final int block = w >>> BLOCK_BITS;
+    final int o = w & BLOCK_MASK;
+
+    final int first = firstChild[block].get(o);
+
+    // another thread has been faster
+    if (first >= 0) {
+      return first;
+    }
+
+    final int childs = allocateChilds();
+
+    final int leftOfParent = left[block][o];
+    final int leftIsInvertOfParent = leftIsInvert[block][o];
+
+    int child = childs;
+
+    for (int n = 0; n < numGenerators; n++) {
+      if (n == leftOfParent) {
+        createLeftChild(w, child++, n, leftIsInvertOfParent);
+      } else {
+        createLeftChild(w, child++, n, 0);
+        createLeftChild(w, child++, n, 1);
+      }
+    }
+
+    // publishes the childs
+    firstChild[block].set(o, childs);
+
+    return childs;
+  }
+
+  /**
+   * Returns index of first of numOfChilds consecutive unused words.
+   * Evicted words are reused first; if the tree is full,
+   * subtrees are evicted in the bounded mode.
+   */
+  private int allocateChilds() {
+
+    if (numOfFreeGroups == 0 && isFull()) {
+
+      if (schottky.memoryBounded) {
+        evict();
+      }
+
+      if (numOfFreeGroups == 0) {
+        System.out.println("stoped computations with more than " + schottky.maxNumOfElements +
+            " number of group elements.");
+        throw new RuntimeException("too many elements");
+      }
+    }
+
+    if (numOfFreeGroups > 0) {
+      return freeGroups[--numOfFreeGroups];
+    }
+
+    final int childs = size;
+
+    ensureCapacity(size + numOfChilds);
+
+    size += numOfChilds;
+
+    return childs;
+  }
+
+  private boolean isFull() {
+    return size + numOfChilds > schottky.maxNumOfElements ||
+        (size + numOfChilds + BLOCK_MASK) >>> BLOCK_BITS > parent.length;
+  }
+
+  /**
+   * Evicts the least recently visited subtrees, until half of the words
+   * are free. Only childs of unpinned words with word length of at least
+   * {@link #MIN_EVICTABLE_WORD_LENGTH} are evicted.
+   */
+  private void evict() {
+
+    if (clock > Integer.MAX_VALUE / 2) { // keep order of visits without overflow
+      for (int i = 0; i < lastVisit.length && lastVisit[i] != null; i++) {
+        for (int o = 0; o < BLOCK_SIZE; o++) {
+          lastVisit[i][o] /= 2;
+        }
+      }
+      clock /= 2;
+    }
+
+    final long[] candidates = new long[size];
+
+    int numOfCandidates = 0;
+
+    for (int w = 1 + 2 * numGenerators; w < size; w++) {
+
+      final int block = w >>> BLOCK_BITS;
+      final int o = w & BLOCK_MASK;
+
+      if (parent[block][o] != FREE &&
+          wordLength[block][o] >= MIN_EVICTABLE_WORD_LENGTH &&
+          firstChild[block].get(o) >= 0 &&
+          pins[block].get(o) == 0) {
+        candidates[numOfCandidates++] = (long) lastVisit[block][o] << 32 | w;
+      }
+    }
+
+    Arrays.sort(candidates, 0, numOfCandidates);
+
+    final int numOfWordsToEvict = getNumOfWords() / 2;
+
+    int numOfEvicted = 0;
+
+    for (int i = 0; i < numOfCandidates && numOfEvicted < numOfWordsToEvict; i++) {
+
+      final int w = (int) candidates[i];
+
+      final int block = w >>> BLOCK_BITS;
+      final int o = w & BLOCK_MASK;
+
+      if (parent[block][o] == FREE) { // in a subtree which has been evicted before
+        continue;
+      }
+
+      final int first = firstChild[block].get(o);
+
+      if (first < 0) {
+        continue;
+      }
+
+      // unpublish childs before checking pins, see expandAndPin
+      firstChild[block].set(o, -1);
+
+      if (pins[block].get(o) > 0) {
+        firstChild[block].set(o, first);
+        continue;
+      }
+
+      numOfEvicted += free(first);
+    }
+
+    numOfEvictedWords += numOfEvicted;
+  }
+
+  /**
+   * Frees childs, which start at first, and their subtrees.
+   * @return number of freed words
+   */
+  private int free(final int first) {
+
+    int numOfFreed = 0;
+
+    int[] stack = new int[STACK_SIZE];
+
+    int top = 0;
+
+    stack[top++] = first;
+
+    while (top > 0) {
+
+      final int childs = stack[--top];
+
+      if (top + numOfChilds > stack.length) {
+        final int[] newStack = new int[2 * (top + numOfChilds)];
+        System.arraycopy(stack, 0, newStack, 0, top);
+        stack = newStack;
+      }
+
+      for (int j = 0; j < numOfChilds; j++) {
+
+        final int block = (childs + j) >>> BLOCK_BITS;
+        final int o = (childs + j) & BLOCK_MASK;
+
+        final int firstOfChild = firstChild[block].get(o);
+
+        if (firstOfChild >= 0) {
+          stack[top++] = firstOfChild;
+        }
+
+        parent[block][o] = FREE;
+        firstChild[block].set(o, -1);
+      }
+
+      if (numOfFreeGroups == freeGroups.length) {
+        final int[] newFreeGroups = new int[2 * numOfFreeGroups + 16];
+        System.arraycopy(freeGroups, 0, newFreeGroups, 0, numOfFreeGroups);
+        freeGroups = newFreeGroups;
+      }
+
+      freeGroups[numOfFreeGroups++] = childs;
+
+      numOfFreed += numOfChilds;
+    }
+
+    return numOfFreed;
+  }
+
+  private void createLeftChild(final int w, final int child, final int n, final int i) {
+
+    final int block = w >>> BLOCK_BITS;
+    final int o = w & BLOCK_MASK;
+
+    final int childBlock = child >>> BLOCK_BITS;
+    final int childO = child & BLOCK_MASK;
+
+    parent[childBlock][childO] = w;
+    firstChild[childBlock].set(childO, -1);
+    pins[childBlock].set(childO, 0);
+    left[childBlock][childO] = n;
+    leftIsInvert[childBlock][childO] = i;
+    right[childBlock][childO] = right[block][o];
+    rightIsInvert[childBlock][childO] = rightIsInvert[block][o];
+    wordLength[childBlock][childO] = wordLength[block][o] + 1;
+
+    final SchottkyGroupElement generator = i == 0 ? schottky.generator[n] : schottky.generatorInv[n];
+
+    generator.getA(a);
+    generator.getB(b);
+    generator.getC(c);
+    generator.getD(d);
+
+    // child = generator * parent
+    final double[] p = coefficients[block];
+    final int k = 8 * o;
+
+    final double paRe = p[k    ], paIm = p[k + 1];
+    final double pbRe = p[k + 2], pbIm = p[k + 3];
+    final double pcRe = p[k + 4], pcIm = p[k + 5];
+    final double pdRe = p[k + 6], pdIm = p[k + 7];
+
+    final double[] q = coefficients[childBlock];
+    final int l = 8 * childO;
+
+    q[l    ] = a.re * paRe - a.im * paIm + b.re * pcRe - b.im * pcIm;
+    q[l + 1] = a.re * paIm + a.im * paRe + b.re * pcIm + b.im * pcRe;
+    q[l + 2] = a.re * pbRe - a.im * pbIm + b.re * pdRe - b.im * pdIm;
+    q[l + 3] = a.re * pbIm + a.im * pbRe + b.re * pdIm + b.im * pdRe;
+    q[l + 4] = c.re * paRe - c.im * paIm + d.re * pcRe - d.im * pcIm;
+    q[l + 5] = c.re * paIm + c.im * paRe + d.re * pcIm + d.im * pcRe;
+    q[l + 6] = c.re * pbRe - c.im * pbIm + d.re * pdRe - d.im * pdIm;
+    q[l + 7] = c.re * pbIm + c.im * pbRe + d.re * pdIm + d.im * pdRe;
+
+    computeConstants(child);
+
+    // the target of the next left subword of the child is the image
+    // of the target of the parent under the generator
+    final double[] targetOfParent = targetCircle[block];
+    a.assign(targetOfParent[3 * o], targetOfParent[3 * o + 1]);
+
+    final double radius = generator.getRadiusOfMappedCircle(a, targetOfParent[3 * o + 2], tmp);
+
+    final double[] target = targetCircle[childBlock];
+    target[3 * childO    ] = tmp.re;
+    target[3 * childO + 1] = tmp.im;
+    target[3 * childO + 2] = radius;
+  }
+
+  private void computeConstants(final int w) {
+
+    final int block = w >>> BLOCK_BITS;
+    final int o = w & BLOCK_MASK;
+
+    final double[] coef = coefficients[block];
+    final double cRe = coef[8 * o + 4];
+    final double cIm = coef[8 * o + 5];
+
+    norm[block][o] = 1 / (cRe * cRe + cIm * cIm);
+
+    computeImageOfFixpoints(w);
+    computeLOfInverse(w);
+  }
+
+  private void computeImageOfFixpoints(final int w) {
+
+    final int block = w >>> BLOCK_BITS;
+    final int o = w & BLOCK_MASK;
+
+    final double[] image = imageOfFixpoints[block];
+
+    for (int n = 0, k = imageStride * o; n < numGenerators; n++, k += 4) {
+      applyTo(w, schottky.fixpoint[n][0], tmp);
+      image[k    ] = tmp.re;
+      image[k + 1] = tmp.im;
+      applyTo(w, schottky.fixpoint[n][1], tmp);
+      image[k + 2] = tmp.re;
+      image[k + 3] = tmp.im;
+    }
+  }
+
+  private void computeLOfInverse(final int w) {
+
+    final int block = w >>> BLOCK_BITS;
+    final int o = w & BLOCK_MASK;
+
+    final int l = left[block][o];
+
+    final Complex centerOfFirst = schottky.center[l][leftIsInvert[block][o] == 0 ? 0 : 1];
+
+    double radius = schottky.radius[l];
+
+    tmp.assign(centerOfFirst);
+
+    if (wordLength[block][o] > 1) {
+      final int p = parent[block][o];
+      final double[] coef = coefficients[p >>> BLOCK_BITS];
+      final int k = 8 * (p & BLOCK_MASK);
+
+      // adjugate of parent
+      inverseOfParent.assign(coef[k + 6], coef[k + 7], -coef[k + 2], -coef[k + 3],
+                             -coef[k + 4], -coef[k + 5], coef[k], coef[k + 1]);
+
+      radius = inverseOfParent.getRadiusOfMappedCircle(centerOfFirst, radius, tmp);
+    }
+
+    final double[] L = LOfInverse[block];
+
+    for (int n = 0, k = numGenerators * o; n < numGenerators; n++, k++) {
+      final Complex A = schottky.fixpoint[n][0];
+      final Complex B = schottky.fixpoint[n][1];
+      L[k] = A.dist(B)
+          / (A.dist(tmp) - radius)
+          / (B.dist(tmp) - radius);
+    }
+  }
+
+  private void allocateDirectories(final int numOfBlocks) {
+
+    parent = new int[numOfBlocks][];
+    firstChild = new AtomicIntegerArray[numOfBlocks];
+    pins = new AtomicIntegerArray[numOfBlocks];
+    lastVisit = new int[numOfBlocks][];
+    left = new int[numOfBlocks][];
+    leftIsInvert = new int[numOfBlocks][];
+    right = new int[numOfBlocks][];
+    rightIsInvert = new int[numOfBlocks][];
+    wordLength = new int[numOfBlocks][];
+
+    coefficients = new double[numOfBlocks][];
+    norm = new double[numOfBlocks][];
+    targetCircle = new double[numOfBlocks][];
+    imageOfFixpoints = new double[numOfBlocks][];
+    LOfInverse = new double[numOfBlocks][];
+  }
+
+  private void ensureCapacity(final int capacity) {
+
+    final int numOfBlocks = (capacity + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+
+    for (int i = 0; i < numOfBlocks; i++) {
+
+      if (parent[i] != null) {
+        continue;
+      }
+
+      parent[i] = new int[BLOCK_SIZE];
+      firstChild[i] = new AtomicIntegerArray(BLOCK_SIZE);
+      pins[i] = new AtomicIntegerArray(BLOCK_SIZE);
+      lastVisit[i] = new int[BLOCK_SIZE];
+      left[i] = new int[BLOCK_SIZE];
+      leftIsInvert[i] = new int[BLOCK_SIZE];
+      right[i] = new int[BLOCK_SIZE];
+      rightIsInvert[i] = new int[BLOCK_SIZE];
+      wordLength[i] = new int[BLOCK_SIZE];
+
+      coefficients[i] = new double[8 * BLOCK_SIZE];
+      norm[i] = new double[BLOCK_SIZE];
+      targetCircle[i] = new double[3 * BLOCK_SIZE];
+      imageOfFixpoints[i] = new double[imageStride * BLOCK_SIZE];
+      LOfInverse[i] = new double[numGenerators * BLOCK_SIZE];
+    }
+  }
+
+  int getParent(final int w) {
+    return parent[w >>> BLOCK_BITS][w & BLOCK_MASK];
+  }
+
+  int getLeft(final int w) {
+    return left[w >>> BLOCK_BITS][w & BLOCK_MASK];
+  }
+
+  int getLeftIsInvert(final int w) {
+    return leftIsInvert[w >>> BLOCK_BITS][w & BLOCK_MASK];
+  }
+
+  int getRight(final int w) {
+    return right[w >>> BLOCK_BITS][w & BLOCK_MASK];
+  }
+
+  int getRightIsInvert(final int w) {
+    return rightIsInvert[w >>> BLOCK_BITS][w & BLOCK_MASK];
+  }
+
+  int getWordLength(final int w) {
+    return wordLength[w >>> BLOCK_BITS][w & BLOCK_MASK];
+  }
+
+  double getNorm(final int w) {
+    return norm[w >>> BLOCK_BITS][w & BLOCK_MASK];
+  }
+
+  double getLOfInverse(final int w, final int n) {
+    return LOfInverse[w >>> BLOCK_BITS][numGenerators * (w & BLOCK_MASK) + n];
+  }
+
+  void getImageOfA(final int w, final int n, final Complex r) {
+    final double[] image = imageOfFixpoints[w >>> BLOCK_BITS];
+    final int k = imageStride * (w & BLOCK_MASK) + 4 * n;
+    r.assign(image[k], image[k + 1]);
+  }
+
+  void getImageOfB(final int w, final int n, final Complex r) {
+    final double[] image = imageOfFixpoints[w >>> BLOCK_BITS];
+    final int k = imageStride * (w & BLOCK_MASK) + 4 * n;
+    r.assign(image[k + 2], image[k + 3]);
+  }
+
+  /**
+   * Assigns <code>m</code> with the Moebius transformation of a word.
+   */
+  void getMoebius(final int w, final Moebius m) {
+    final double[] coef = coefficients[w >>> BLOCK_BITS];
+    final int k = 8 * (w & BLOCK_MASK);
+    m.assign(coef[k], coef[k + 1], coef[k + 2], coef[k + 3],
+             coef[k + 4], coef[k + 5], coef[k + 6], coef[k + 7]);
+  }
+
+  /**
+   * Computes sigma( z ), which is returned in r.
+   */
+  void applyTo(final int w, final Complex z, final Complex r) {
+    final double[] coef = coefficients[w >>> BLOCK_BITS];
+    final int k = 8 * (w & BLOCK_MASK);
+
+    final double d1r = coef[k    ] * z.re - coef[k + 1] * z.im + coef[k + 2];
+    final double d1i = coef[k    ] * z.im + coef[k + 1] * z.re + coef[k + 3];
+
+    final double d2r = coef[k + 4] * z.re - coef[k + 5] * z.im + coef[k + 6];
+    final double d2i = coef[k + 4] * z.im + coef[k + 5] * z.re + coef[k + 7];
+
+    final double dd = d2r * d2r + d2i * d2i;
+
+    r.re = (d1r * d2r + d1i * d2i) / dd;
+    r.im = (d1i * d2r - d1r * d2i) / dd;
+  }
+
+  /**
+   * Computes sigma( z ) - sigma( v ), which is returned in r.
+   * @param r = ( z-v ) / ( (cz+d) * (cv+d) )
+   */
+  void diff(final int w, final Complex z, final Complex v, final Complex r) {
+    final double[] coef = coefficients[w >>> BLOCK_BITS];
+    final int k = 8 * (w & BLOCK_MASK);
+
+    final double cRe = coef[k + 4], cIm = coef[k + 5];
+    final double dRe = coef[k + 6], dIm = coef[k + 7];
+
+    final double nr = z.re - v.re;
+    final double ni = z.im - v.im;
+
+    final double dzr = cRe * z.re - cIm * z.im + dRe;
+    final double dzi = cRe * z.im + cIm * z.re + dIm;
+
+    final double dwr = cRe * v.re - cIm * v.im + dRe;
+    final double dwi = cRe * v.im + cIm * v.re + dIm;
+
+    final double dzwr = dzr * dwr - dzi * dwi;
+    final double dzwi = dzr * dwi + dzi * dwr;
+
+    final double dzw = dzwr * dzwr + dzwi * dzwi;
+
+    r.re = (nr * dzwr + ni * dzwi) / dzw;
+    r.im = (ni * dzwr - nr * dzwi) / dzw;
+  }
+
+  /**
+   * Computes sigma(z)^k - sigma(v)^k, which is returned in r.
+   * @param d = sigma(z) - sigma(v), is input parameter
+   * @param r = sigma(z)^k - sigma(v)^k on output
+   * @see SchottkyGroupElement#diffPow(Complex, Complex, int, Complex, Complex)
+   */
+  void diffPow(final int w, final Complex z, final Complex v, final int k,
+               final Complex d, final Complex r) {
+    final double[] coef = coefficients[w >>> BLOCK_BITS];
+    final int o = 8 * (w & BLOCK_MASK);
+
+    final double aRe = coef[o    ], aIm = coef[o + 1];
+    final double bRe = coef[o + 2], bIm = coef[o + 3];
+    final double cRe = coef[o + 4], cIm = coef[o + 5];
+    final double dRe = coef[o + 6], dIm = coef[o + 7];
+
+    double nr = aRe * z.re - aIm * z.im + bRe;
+    double ni = aRe * z.im + aIm * z.re + bIm;
+    double mr = cRe * z.re - cIm * z.im + dRe;
+    double mi = cRe * z.im + cIm * z.re + dIm;
+    double mm = mr * mr + mi * mi;
+
+    final double szRe = (nr * mr + ni * mi) / mm;
+    final double szIm = (ni * mr - nr * mi) / mm;
+
+    nr = aRe * v.re - aIm * v.im + bRe;
+    ni = aRe * v.im + aIm * v.re + bIm;
+    mr = cRe * v.re - cIm * v.im + dRe;
+    mi = cRe * v.im + cIm * v.re + dIm;
+    mm = mr * mr + mi * mi;
+
+    final double svRe = (nr * mr + ni * mi) / mm;
+    final double svIm = (ni * mr - nr * mi) / mm;
+
+    final double prodRe = szRe * svRe - szIm * svIm;
+    final double prodIm = szRe * svIm + szIm * svRe;
+
+    final double sumRe = szRe + svRe;
+    final double sumIm = szIm + svIm;
+
+    // Q_i = (sz+sv) Q_(i-1) - sz sv Q_(i-2) with Q_0 = 0, Q_1 = 1
+    double pRe = 0, pIm = 0;
+    double qRe = 1, qIm = 0;
+
+    for (int i = 1; i < k; i++) {
+      final double re = sumRe * qRe - sumIm * qIm - (prodRe * pRe - prodIm * pIm);
+      final double im = sumRe * qIm + sumIm * qRe - (prodRe * pIm + prodIm * pRe);
+      pRe = qRe;
+      pIm = qIm;
+      qRe = re;
+      qIm = im;
+    }
+
+    final double re = d.re * qRe - d.im * qIm;
+    final double im = d.re * qIm + d.im * qRe;
+
+    r.re = re;
+    r.im = im;
+  }
+
+  /**
+   * Returns radius of the target circle of a word,
+   * i.e. the image of the first circle under the next left subword.
+   * @param targetCenter center of the target circle on output
+   */
+  double targetRadius(final int w, final Complex targetCenter) {
+    final double[] target = targetCircle[w >>> BLOCK_BITS];
+    final int k = 3 * (w & BLOCK_MASK);
+    targetCenter.assign(target[k], target[k + 1]);
+    return target[k + 2];
+  }
+
+  /**
+   * Returns K( sigma, P ), i.e. the maximal distance of P to the
+   * target circle of a word.
+   * @see Schottky#K(SchottkyGroupElement, Complex)
+   */
+  double K(final int w, final Complex P) {
+
+    if (w == ROOT) {
+      return schottky.dist(P);
+    }
+
+    final double[] target = targetCircle[w >>> BLOCK_BITS];
+    final int k = 3 * (w & BLOCK_MASK);
+
+    final double x = P.re - target[k];
+    final double y = P.im - target[k + 1];
+
+    return Math.sqrt(x * x + y * y) + target[k + 2];
+  }
+
+  /**
+   * Returns dist of P to image of the fundamental domain F
+   * under the transformation of a word.
+   * @return dist( sigma(F), P )
+   * @see Schottky#dist(SchottkyGroupElement, Complex)
+   */
+  double dist(final int w, final Complex P) {
+
+    if (w == ROOT) {
+      return schottky.dist(P);
+    }
+
+    final double[] target = targetCircle[w >>> BLOCK_BITS];
+    final int k = 3 * (w & BLOCK_MASK);
+
+    final double x = P.re - target[k];
+    final double y = P.im - target[k + 1];
+
+    final double dist = Math.sqrt(x * x + y * y) - target[k + 2];
+
+    if (dist > -1E-12) {
+      return dist < 0 ? 0 : dist;
+    }
+
+    System.out.println("Warning: unexpected distance measure");
+
+    final Moebius sigma = new Moebius();
+    final Complex center = new Complex();
+
+    getMoebius(w, sigma);
+
+    for (int j = 0; j < 2; j++) {
+      for (int i = 0; i < numGenerators; i++) {
+
+        final double theRadius = sigma.getRadiusOfMappedCircle(schottky.center[i][j],
+            schottky.radius[i], center);
+
+        final double aDist = theRadius - center.dist(P);
+
+        if (aDist > 0) {
+          return aDist;
+        }
+      }
+    }
+
+    return 0;
+  }
+}
@@ -33,6 +33,7 @@ package de.jtem.riemann.schottky;
 
 import java.io.Serializable;
 
+import de.jtem.blas.ComplexVector;
 import de.jtem.mfc.field.Complex;
 
 /**
@@ -47,6 +48,8 @@ class Sigma
 
   final Schottky schottky;
 
+  final SchottkyWordTree tree;
+
   final int numGenerators;
 
   double theta1, q1, maxInIsometricCircles;
@@ -55,7 +58,9 @@ class Sigma
 
   Sigma(Schottky schottky) {
     this.schottky = schottky;
+    tree = schottky.wordTree;
     numGenerators = schottky.numGenerators;
+    updateID = -1;
   }
 
   void update() {
@@ -100,85 +105,324 @@ class Sigma
   double acc;
   double factor;
 
-  final private void sigma(SchottkyGroupElement element) {
+  /**
+   * Series of sigma(z)^k - sigma(w)^k over the words of the group
+   * or of a coset; the word of the identity is not included.
+   */
+  final class SigmaSeries
+      implements SchottkyWordTree.Series, SchottkyWordTree.BoundedSeries, Serializable {
 
-    if (element.updateID != updateID) {
-      schottky.updateElement(element);
-    }
+    private static final long serialVersionUID = 1L;
+
+    final Complex z = new Complex();
+    final Complex w = new Complex();
+    final Complex s = new Complex();
+    final Complex d = new Complex();
+
+    long[] noe;
+
+    int k;
+
+    double acc;
+    double factor;
+
+    /* factor of the bounds of the best first summation */
+    double boundFactor;
+
+    public boolean visit(final int element) {
 
-    element.diff(z, w, d);
+      final long noe = SchottkyWordTree.numOfElements(this.noe,
+          tree.getWordLength(element));
 
-    
-    final double error = factor * noe[element.wordLength]
-        * (Math.abs(d.re) + Math.abs(d.im));
+      tree.diff(element, z, w, d);
 
-    if( element.wordLength > 50 ) {
-    	System.out.println( "factor=" + factor);
-    	System.out.println( "z=" + z);
-    	System.out.println( "d=" + d);
-    	System.out.println("error="+error);
-    	
-    	throw new RuntimeException("ups");
+      final double error = factor * noe * (Math.abs(d.re) + Math.abs(d.im));
+
+      if (error < acc) {
+        return false;
+      }
+
+      if (k > 1) {
+        tree.diffPow(element, z, w, k, d, d);
+      }
+
+      s.assignPlus(d);
+
+      return true;
     }
-    if (error < acc) {
-      return;
+
+    public SchottkyWordTree.Series copy() {
+      final SigmaSeries copy = new SigmaSeries();
+      copy.z.assign(z);
+      copy.w.assign(w);
+      copy.noe = noe;
+      copy.k = k;
+      copy.acc = acc;
+      copy.factor = factor;
+      copy.boundFactor = boundFactor;
+      return copy;
+    }
+
+    public void reduce(final SchottkyWordTree.Series other) {
+      s.assignPlus(((SigmaSeries) other).s);
     }
 
-    s.assignPlus(d);
+    /**
+     * Returns bound of the terms of the subtree of element.
+     * Since the images of z and w lie in the isometric circles,
+     * |sigma(z)^k - sigma(w)^k| is bounded by k M^(k-1) |sigma(z) - sigma(w)|
+     * with M = {@link #maxInIsometricCircles()}.
+     */
+    public double bound(final int element) {
 
-    if (element.child == null) {
-      schottky.createLeftChilds(element);
+      tree.diff(element, z, w, d);
+
+      return boundFactor * (Math.abs(d.re) + Math.abs(d.im));
+    }
+
+    public void add(final int element) {
+
+      tree.diff(element, z, w, d);
+
+      if (k > 1) {
+        tree.diffPow(element, z, w, k, d, d);
+      }
 
+      s.assignPlus(d);
     }
-    final SchottkyGroupElement[] child = element.child;
 
-    final int numOfChilds = child.length;
+    final void eval(final Complex r, final int n) {
+
+      tree.diff(SchottkyWordTree.ROOT, z, w, s);
 
-    for (int i = 0; i < numOfChilds; i++) {
-      sigma(child[i]);
+      if (k > 1) {
+        tree.diffPow(SchottkyWordTree.ROOT, z, w, k, s, s);
+      }
+
+      if (schottky.bestFirst) {
+        boundFactor = k * Math.pow(maxInIsometricCircles, k - 1) / (1 - q1);
+        tree.sumBestFirst(this, n, acc);
+      }
+      else {
+        tree.walk(this, n, schottky.executor);
+      }
+
+      r.assign(s);
     }
   }
 
+  final SigmaSeries series = new SigmaSeries();
+
   final void eval(Complex r, int n, double accuracy) {
 
-    this.n = n;
-    this.noe = schottky.numOfElementsOfCosetWithWordLength;
-    this.acc = accuracy;
-    this.factor = 1 / (1 - q1);
+    update();
 
-    this.z.assign( schottky.fixpoint[n][0] );
-    this.w.assign( schottky.fixpoint[n][1] );
+    series.noe = schottky.numOfElementsOfCosetWithWordLength;
+    series.acc = accuracy;
+    series.factor = 1 / (1 - q1);
+    series.k = 1;
 
-    s.assignMinus(z, w);
+    series.z.assign( schottky.fixpoint[n][0] );
+    series.w.assign( schottky.fixpoint[n][1] );
 
-    for (int i = 0; i < numGenerators; i++) {
-      if (i != n) {
-        sigma(schottky.generator[i]);
-        sigma(schottky.generatorInv[i]);
+    series.eval(r, n);
+  }
+
+  final void eval( Complex r,
+                   Complex z, Complex w, double accuracy) {
+
+    update();
+
+    series.noe = schottky.numOfElementsWithWordLength;
+    series.acc = accuracy;
+    series.factor = 1 / (1 - q1);
+    series.k = 1;
+
+    series.z.assign(z);
+    series.w.assign(w);
+
+    series.eval(r, -1);
+  }
+
+  /**
+   * Series of sigma(A_n)^k - sigma(B_n)^k over the cosets G/G_n for all
+   * n and all powers k=1..maxPower in one walk. The component
+   * n*maxPower+k-1 gets the same terms as the walk for n and k alone.
+   * The difference of the images of the fixpoints of generator n is
+   * computed only once for each visited word.
+   */
+  final class PowersSeries extends VectorSeries {
+
+    final int maxPower;
+
+    final double[] factor;
+
+    final Complex[] s;
+
+    /* word for which d[n] is valid */
+    final int[] dWord = new int[numGenerators];
+
+    final Complex[] d = new Complex[numGenerators];
+
+    final Complex p = new Complex();
+
+    PowersSeries(final int maxPower) {
+      super(Sigma.this.tree, numGenerators * maxPower);
+
+      this.maxPower = maxPower;
+
+      adaptAcc = false;
+
+      factor = new double[maxPower];
+
+      s = new Complex[numOfComponents];
+
+      for (int i = 0; i < numOfComponents; i++) {
+        s[i] = new Complex();
+      }
+
+      for (int n = 0; n < numGenerators; n++) {
+        d[n] = new Complex();
+      }
+
+      begin(-1);
+    }
+
+    void begin(final int element) {
+      for (int n = 0; n < numGenerators; n++) {
+        dWord[n] = -1;
       }
     }
 
-    r.assign(s);
+    boolean excludes(final int element, final int i) {
+      return tree.getRight(element) == i / maxPower;
+    }
+
+    double error(final int element, final int i) {
+
+      final int n = i / maxPower;
+
+      if (dWord[n] != element) {
+        tree.diff(element, schottky.fixpoint[n][0], schottky.fixpoint[n][1], d[n]);
+        dWord[n] = element;
+      }
+
+      return factor[i % maxPower] * (Math.abs(d[n].re) + Math.abs(d[n].im));
+    }
+
+    void add(final int element, final int i) {
+
+      final int n = i / maxPower;
+      final int k = i % maxPower + 1;
+
+      if (k > 1) {
+        tree.diffPow(element, schottky.fixpoint[n][0], schottky.fixpoint[n][1], k, d[n], p);
+        s[i].assignPlus(p);
+      }
+      else {
+        s[i].assignPlus(d[n]);
+      }
+    }
+
+    public SchottkyWordTree.Series copy() {
+      final PowersSeries copy = new PowersSeries(maxPower);
+      copyTo(copy);
+      System.arraycopy(factor, 0, copy.factor, 0, maxPower);
+      return copy;
+    }
+
+    public void reduce(final SchottkyWordTree.Series other) {
+      final PowersSeries series = (PowersSeries) other;
+
+      for (int i = 0; i < numOfComponents; i++) {
+        s[i].assignPlus(series.s[i]);
+      }
+    }
   }
 
-  final void eval( Complex r,
-                   Complex z, Complex w, double accuracy) {
+  PowersSeries powersSeries;
+
+  /**
+   * Computes sigma(A_n)^k - sigma(B_n)^k for all n and k=1..maxPower in one walk;
+   * in best first mode each entry is summed on its own.
+   * The result for k=1 equals the one of {@link #eval(Complex, int, double)}
+   * and the results for k&gt;1 equal the ones of {@link #evalPow}.
+   * @param r r[k-1][n] on output
+   */
+  final void evalPowers(final Complex[][] r, final int maxPower, final double accuracy) {
+
+    if (schottky.bestFirst) {
+      for (int n = 0; n < numGenerators; n++) {
+        eval(r[0][n], n, accuracy);
+        for (int k = 2; k <= maxPower; k++) {
+          evalPow(r[k - 1][n], n, k, accuracy);
+        }
+      }
+      return;
+    }
+
+    update();
+
+    if (powersSeries == null || powersSeries.maxPower != maxPower) {
+      powersSeries = new PowersSeries(maxPower);
+    }
+
+    final PowersSeries series = powersSeries;
+
+    series.factor[0] = 1 / (1 - q1);
+
+    for (int k = 2; k <= maxPower; k++) {
+      series.factor[k - 1] = k * maxInIsometricCircles / (1 - q1);
+    }
+
+    for (int n = 0, i = 0; n < numGenerators; n++) {
+
+      final Complex A = schottky.fixpoint[n][0];
+      final Complex B = schottky.fixpoint[n][1];
+
+      tree.diff(SchottkyWordTree.ROOT, A, B, series.s[i++]);
+
+      for (int k = 2; k <= maxPower; k++, i++) {
+        tree.diffPow(SchottkyWordTree.ROOT, A, B, k, series.s[i - k + 1], series.s[i]);
+      }
+    }
+
+    series.reset(schottky.numOfElementsOfCosetWithWordLength, accuracy, 0);
 
-    this.noe = schottky.numOfElementsWithWordLength;
-    this.acc = accuracy;
-    this.factor = 1 / (1 - q1);
+    tree.walk(series, -1, schottky.executor);
+
+    for (int n = 0, i = 0; n < numGenerators; n++) {
+      for (int k = 1; k <= maxPower; k++, i++) {
+        r[k - 1][n].assign(series.s[i]);
+      }
+    }
+  }
+
+  /**
+   * Computes the vectors V^(k) for k=1..maxPower in one walk.
+   * @param V V[k-1] on output
+   * @see #evalPowers(Complex[][], int, double)
+   */
+  final void evalPowers(final ComplexVector[] V, final int maxPower, final double accuracy) {
 
-    this.z.assign(z);
-    this.w.assign(w);
+    if (maxPower < 1) {
+      throw new IllegalArgumentException("only positive powers are permitted");
+    }
 
-    s.assignMinus(z, w);
+    final Complex[][] r = new Complex[maxPower][];
 
-    for (int i = 0; i < numGenerators; i++) {
-      sigma(schottky.generator[i]);
-      sigma(schottky.generatorInv[i]);
+    for (int k = 0; k < maxPower; k++) {
+      r[k] = Complex.createArray(numGenerators);
     }
 
-    r.assign(s);
+    evalPowers(r, maxPower, accuracy);
+
+    for (int k = 0; k < maxPower; k++) {
+      V[k].newSize(numGenerators);
+      for (int n = 0; n < numGenerators; n++) {
+        V[k].set(n, r[k][n]);
+      }
+    }
   }
 
   Analysis analysis = new Analysis();
@@ -310,80 +554,35 @@ class Sigma
 
   }
 
-  final private void sigmaPow(SchottkyGroupElement element) {
-
-    if (element.updateID != updateID) {
-      schottky.updateElement(element);
-    }
-
-    element.diff(z, w, d);
-
-    final double error = factor * noe[element.wordLength]
-        * (Math.abs(d.re) + Math.abs(d.im));
-
-    if (error < acc) {
-      return;
-    }
-
-    element.diffPow( z, w, k, d, d );
-
-    s.assignPlus(d);
-
-    if (element.child == null) {
-      schottky.createLeftChilds(element);
-
-    }
-    final SchottkyGroupElement[] child = element.child;
-
-    final int numOfChilds = child.length;
-
-    for (int i = 0; i < numOfChilds; i++) {
-      sigmaPow(child[i]);
-    }
-  }
-
   final void evalPow(Complex r, int n, int k, double accuracy) {
 
-    this.n = n;
-    this.noe = schottky.numOfElementsOfCosetWithWordLength;
-    this.acc = accuracy;
-    this.factor = k * maxInIsometricCircles / (1 - q1);
+    update();
 
-    this.z.assign( schottky.fixpoint[n][0]);
-    this.w.assign( schottky.fixpoint[n][1]);
-    this.k = k;
+    series.noe = schottky.numOfElementsOfCosetWithWordLength;
+    series.acc = accuracy;
+    series.factor = k * maxInIsometricCircles / (1 - q1);
+    series.k = k;
 
-    schottky.id.diffPow(z, w, k, s);
+    series.z.assign( schottky.fixpoint[n][0]);
+    series.w.assign( schottky.fixpoint[n][1]);
 
-    for (int i = 0; i < numGenerators; i++) {
-      if (i != n) {
-        sigmaPow(schottky.generator[i]);
-        sigmaPow(schottky.generatorInv[i]);
-      }
-    }
-
-    r.assign(s);
+    series.eval(r, n);
   }
 
   final void eval(Complex r,
                   Complex z, Complex w, int k, double accuracy) {
 
-    this.noe = schottky.numOfElementsWithWordLength;
-    this.acc = accuracy;
-    this.factor = k * maxInIsometricCircles / (1 - q1);
+    update();
 
-    this.z.assign(z);
-    this.w.assign(w);
-    this.k = k;
+    series.noe = schottky.numOfElementsWithWordLength;
+    series.acc = accuracy;
+    series.factor = k * maxInIsometricCircles / (1 - q1);
+    series.k = k;
 
-    schottky.id.diffPow(z, w, k, s);
-
-    for (int i = 0; i < numGenerators; i++) {
-      sigmaPow(schottky.generator[i]);
-      sigmaPow(schottky.generatorInv[i]);
-    }
+    series.z.assign(z);
+    series.w.assign(w);
 
-    r.assign(s);
+    series.eval(r, -1);
   }
 
-}
\ No newline at end of file
+}
@@ -187,13 +187,13 @@ public class SigmaAnalysisFunctionFactory {
 
   private static final class AnalysisCheckFunction extends de.jtem.riemann.schottky.SchottkyAnalysisFunction.ForProperty {
 	  private final Complex ZERO;
-	  final Complex r = new Complex();
-	  final Complex a = new Complex();
 	  private AnalysisCheckFunction(Schottky schottky, double testAcc, Complex ZERO) {
 		  super(schottky, testAcc);
 		  this.ZERO = ZERO;
 	  }
 	  public double eval(Complex z) {
+		  final Complex r = new Complex();
+		  final Complex a = new Complex();
 		  schottky.sigma.analysis.eval(a, z, ZERO, acc);
 		  schottky.sigma(r, z, ZERO, acc);
 		  return a.dist(r);
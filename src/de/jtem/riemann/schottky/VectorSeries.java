@@ -0,0 +1,208 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+/**
+ * Series with several components, which are accumulated in one walk
+ * through the tree of words.
+ * <p>
+ * Each component has its own error budget and is pruned independently:
+ * once the error estimate of a word is small enough for a component,
+ * the component is not summed over the subtree of that word anymore.
+ * The childs of a word are only visited if at least one component is
+ * still active. Thus each component gets exactly the terms, in exactly
+ * the same order, as a walk for this component alone.
+ * <p>
+ * The activity of the components is kept for each word length. This works,
+ * because the words are visited in depth first order: when a word is visited,
+ * the last visited word with a smaller word length <code>l</code> is its
+ * subword of word length <code>l</code>.
+ */
+abstract class VectorSeries
+    implements SchottkyWordTree.Series {
+
+  final SchottkyWordTree tree;
+
+  final int numOfComponents;
+
+  /* number of elements with given word length */
+  long[] noe;
+
+  /* error budget of each component */
+  final double[] acc;
+
+  double eps;
+
+  /* whether the unused error budget of pruned terms is given to later terms */
+  boolean adaptAcc = true;
+
+  /* active[l][i] is true if component i is summed over childs of last visited word with length l */
+  boolean[][] active;
+
+  VectorSeries(final SchottkyWordTree tree, final int numOfComponents) {
+    this.tree = tree;
+    this.numOfComponents = numOfComponents;
+
+    acc = new double[numOfComponents];
+
+    active = new boolean[8][numOfComponents];
+  }
+
+  /**
+   * Prepares walk with the same accuracy for all components.
+   * @param noe number of elements with given word length
+   * @param accuracy error budget of each component
+   * @param eps terms whose error estimate is smaller are always neglected
+   */
+  void reset(final long[] noe, final double accuracy, final double eps) {
+    this.noe = noe;
+    this.eps = eps;
+
+    for (int i = 0; i < numOfComponents; i++) {
+      acc[i] = accuracy;
+      active[0][i] = true;
+    }
+  }
+
+  /**
+   * Returns true, if component does not include the subtree of word w at all,
+   * e.g. if the words of the subtree do not belong to the coset of the
+   * component.
+   */
+  abstract boolean excludes(int w, int component);
+
+  /**
+   * Returns error estimate of term of word w for component.
+   */
+  abstract double error(int w, int component);
+
+  /**
+   * Adds term of word w to component.
+   */
+  abstract void add(int w, int component);
+
+  /**
+   * Is called before the components of word w are processed. Values which
+   * are cached for the last visited word must be invalidated here, since
+   * the index of an evicted word may be reused for another word.
+   */
+  void begin(final int w) {
+  }
+
+  public boolean visit(final int w) {
+
+    begin(w);
+
+    final int wordLength = tree.getWordLength(w);
+
+    final long noe = SchottkyWordTree.numOfElements(this.noe, wordLength);
+
+    if (wordLength >= active.length) {
+      final boolean[][] newActive = new boolean[2 * wordLength][];
+      System.arraycopy(active, 0, newActive, 0, active.length);
+      for (int l = active.length; l < newActive.length; l++) {
+        newActive[l] = new boolean[numOfComponents];
+      }
+      active = newActive;
+    }
+
+    final boolean[] activeOfParent = active[wordLength - 1];
+    final boolean[] activeOfWord = active[wordLength];
+
+    boolean visitChilds = false;
+
+    for (int i = 0; i < numOfComponents; i++) {
+
+      activeOfWord[i] = false;
+
+      if (!activeOfParent[i] || excludes(w, i)) {
+        continue;
+      }
+
+      final double error = error(w, i);
+
+      if (error * noe < acc[i] || error < eps) {
+        if (adaptAcc) {
+          acc[i] += acc[i] / noe - error;
+        }
+        continue;
+      }
+
+      add(w, i);
+
+      activeOfWord[i] = visitChilds = true;
+    }
+
+    return visitChilds;
+  }
+
+  /**
+   * Copies parameters, error budgets and activity to copy.
+   */
+  void copyTo(final VectorSeries copy) {
+    copy.noe = noe;
+    copy.eps = eps;
+    copy.adaptAcc = adaptAcc;
+
+    System.arraycopy(acc, 0, copy.acc, 0, numOfComponents);
+
+    if (copy.active.length < active.length) {
+      copy.active = new boolean[active.length][numOfComponents];
+    }
+
+    for (int l = 0; l < active.length; l++) {
+      System.arraycopy(active[l], 0, copy.active[l], 0, numOfComponents);
+    }
+  }
+
+  /**
+   * Takes negative error budgets of other.
+   */
+  void reduceBudget(final VectorSeries other) {
+    for (int i = 0; i < numOfComponents; i++) {
+      if (other.acc[i] < 0) {
+        acc[i] = other.acc[i];
+      }
+    }
+  }
+
+  /**
+   * Throws exception if the error budget of a component became negative.
+   */
+  void checkBudget() {
+    for (int i = 0; i < numOfComponents; i++) {
+      if (acc[i] < 0) { // this test is needed because of the eps crieteria
+        throw new RuntimeException( "could not evaluate series because of numerical instabilities" );
+      }
+    }
+  }
+}
@@ -181,6 +181,14 @@ public class ModularPropertySupport implements Serializable, Cloneable {
     IntegerVector transformedAlpha;
     IntegerVector transformedBeta;
 
+    /* H and A stored row by row for block transformations */
+    double [] HRe, HIm;
+    double [] ARe, AIm;
+
+    /* work space for block transformations; grows as needed */
+    double [] blockRe = new double[0];
+    double [] blockIm = new double[0];
+
     /**
      * Creates instance with presrcibed period matrix.
      * @param periodMatrix symmetric complex matrix with negative definite real part
@@ -229,6 +237,11 @@ public class ModularPropertySupport implements Serializable, Cloneable {
         transformedAlpha = new IntegerVector (dim);
         transformedBeta  = new IntegerVector (dim);
 
+        HRe = new double[dim * dim];
+        HIm = new double[dim * dim];
+        ARe = new double[dim * dim];
+        AIm = new double[dim * dim];
+
         logOfK.assignTimes(PI2I.log(), dim / 2.0);
         logOfK.assignNeg();
     }
@@ -452,6 +465,100 @@ public class ModularPropertySupport implements Serializable, Cloneable {
         computeTransformedChar();
         computeTransformedZ();
         computeFactor();
+
+        for (int i = 0; i < dim; i++) {
+            System.arraycopy(H.re[i], 0, HRe, i * dim, dim);
+            System.arraycopy(H.im[i], 0, HIm, i * dim, dim);
+            System.arraycopy(A.re[i], 0, ARe, i * dim, dim);
+            System.arraycopy(A.im[i], 0, AIm, i * dim, dim);
+        }
+    }
+
+    /**
+     * Transforms a block of argument vectors at once.
+     * The vectors are stored row by row in flat arrays, i.e. the
+     * <code>i</code>-th component of the <code>k</code>-th vector
+     * is stored at <code>k*g+i</code>.
+     * The products with <code>H<sub>&sigma;</sub>(B)</code> and
+     * <code>A<sub>&sigma;</sub>(B)</code> are computed as matrix-matrix products
+     * for the whole block.
+     * This does not change the state of this instance,
+     * e.g. {@link #getZ()} and {@link #getFactor()}.
+     * @param numOfZ number of argument vectors
+     * @param zRe real parts of the argument vectors
+     * @param zIm imaginary parts of the argument vectors
+     * @param transformedZRe real parts of the transformed arguments <code>&sigma;(z|B)</code>
+     * @param transformedZIm imaginary parts of the transformed arguments <code>&sigma;(z|B)</code>
+     * @param factorRe real parts of the factors <code>f<sub>&sigma;</sub>(z|B)</code>, one for each argument
+     * @param factorIm imaginary parts of the factors <code>f<sub>&sigma;</sub>(z|B)</code>, one for each argument
+     */
+    public void transform( final int numOfZ,
+                           final double [] zRe, final double [] zIm,
+                           final double [] transformedZRe, final double [] transformedZIm,
+                           final double [] factorRe, final double [] factorIm ) {
+        final int size = numOfZ * dim;
+
+        if (blockRe.length < size) {
+            blockRe = new double[size];
+            blockIm = new double[size];
+        }
+
+        // sigma(z|B) = H z + S
+        times(numOfZ, dim, zRe, zIm, HRe, HIm, transformedZRe, transformedZIm);
+
+        // A z
+        times(numOfZ, dim, zRe, zIm, ARe, AIm, blockRe, blockIm);
+
+        final double [] sRe = S.re;
+        final double [] sIm = S.im;
+        final double [] rRe = R.re;
+        final double [] rIm = R.im;
+
+        for (int k = 0, l = 0; k < numOfZ; k++) {
+            double fRe = delta.re;
+            double fIm = delta.im;
+            for (int i = 0; i < dim; i++, l++) {
+                final double re = zRe[l];
+                final double im = zIm[l];
+
+                // R - A z
+                final double vRe = rRe[i] - blockRe[l];
+                final double vIm = rIm[i] - blockIm[l];
+
+                fRe += vRe * re - vIm * im;
+                fIm += vRe * im + vIm * re;
+
+                transformedZRe[l] += sRe[i];
+                transformedZIm[l] += sIm[i];
+            }
+            factorRe[k] = fRe;
+            factorIm[k] = fIm;
+        }
+    }
+
+    /**
+     * Computes the product of the block of complex row vectors <code>x</code>
+     * with the transposed of the complex <code>dim&times;dim</code> matrix <code>a</code>.
+     */
+    static void times( final int numOfRows, final int dim,
+                       final double [] xRe, final double [] xIm,
+                       final double [] aRe, final double [] aIm,
+                       final double [] resultRe, final double [] resultIm ) {
+        for (int k = 0, offset = 0; k < numOfRows; k++, offset += dim) {
+            for (int i = 0, row = 0; i < dim; i++, row += dim) {
+                double re = 0, im = 0;
+                for (int j = 0; j < dim; j++) {
+                    final double xr = xRe[offset + j];
+                    final double xi = xIm[offset + j];
+                    final double ar = aRe[row + j];
+                    final double ai = aIm[row + j];
+                    re += ar * xr - ai * xi;
+                    im += ar * xi + ai * xr;
+                }
+                resultRe[offset + i] = re;
+                resultIm[offset + i] = im;
+            }
+        }
     }
     
     /**
@@ -119,6 +119,27 @@ public class SiegelReduction implements Serializable, Cloneable {
 
     boolean forNegativeDefinitePeriodMatrices = true;
 
+    boolean fastReduction = false;
+
+    boolean collectingStatistics = false;
+
+    /* work space of the fast reduction; reused in every iteration */
+    double [][] inverseWork;
+    double [][] productRe;
+    double [][] productIm;
+
+    /* statistics of the last reduction, collected only on demand;
+       times are in nanoseconds */
+    int numOfIterations;
+    int numOfShifts;
+    int numOfLatticeReductions;
+    int numOfSpecialTransformations;
+
+    long timeOfShifting;
+    long timeOfLatticeReduction;
+    long timeOfSpecialTransformation;
+    long timeOfReduction;
+
     SiegelReduction(int dim) {
         modular = new ModularTransformation(dim);
 
@@ -165,6 +186,10 @@ public class SiegelReduction implements Serializable, Cloneable {
             cD    = new ComplexMatrix();
             cN    = new ComplexMatrix();
             cDInv = new ComplexMatrix();
+
+            inverseWork = new double[dim][2 * dim];
+            productRe   = new double[dim][dim];
+            productIm   = new double[dim][dim];
         }
     }
 
@@ -204,12 +229,129 @@ public class SiegelReduction implements Serializable, Cloneable {
 
     /**
      * Sets period matrix which will be reduces.
+     * The reduction starts from the result of the previous reduction,
+     * which is the identity for a newly created instance.
      */
     public void setPeriodMatrix( final ComplexMatrix aPeriodMatrix ) {
         PM.assign(aPeriodMatrix);
         compute();
     }
 
+    /**
+     * Sets period matrix which will be reduces and starts the reduction
+     * from the prescribed element of the modular group.
+     * If the period matrix is close to one which was reduced
+     * before, e.g. in a parameter sweep, its modular transformation
+     * is a good guess and only few iterations remain.
+     * @param aPeriodMatrix symmetric complex matrix with negative definite real part
+     * @param start element of the modular group the reduction starts with
+     */
+    public void setPeriodMatrix( final ComplexMatrix aPeriodMatrix,
+                                 final ModularTransformation start ) {
+        if( start.dim != dim )
+            throw new IllegalArgumentException
+                ( "dimensions do not match");
+
+        modular.assign(start);
+        setPeriodMatrix(aPeriodMatrix);
+    }
+
+    /**
+     * Returns whether the fast reduction is performed.
+     */
+    public boolean isFastReduction() {
+        return fastReduction;
+    }
+
+    /**
+     * Switches the fast reduction on or off.
+     * The fast reduction works in place on the reduced period matrix and
+     * does not allocate memory in its iteration; only the final result is
+     * recomputed from the original period matrix.
+     * @param fastReduction controles whether the fast reduction is performed.
+     */
+    public void setFastReduction( final boolean fastReduction ) {
+        this.fastReduction = fastReduction;
+    }
+
+    /**
+     * Returns whether statistics of the reduction are collected.
+     */
+    public boolean isCollectingStatistics() {
+        return collectingStatistics;
+    }
+
+    /**
+     * Switches the collection of statistics on or off.
+     * If it is off, which is the default, the counters and times
+     * of the reduction are zero.
+     * @param collectingStatistics controles whether statistics are collected.
+     */
+    public void setCollectingStatistics( final boolean collectingStatistics ) {
+        this.collectingStatistics = collectingStatistics;
+    }
+
+    /**
+     * Returns number of iterations of the last reduction.
+     */
+    public int getNumOfIterations() {
+        return numOfIterations;
+    }
+
+    /**
+     * Returns number of shifts of the imaginary part in the last reduction.
+     */
+    public int getNumOfShifts() {
+        return numOfShifts;
+    }
+
+    /**
+     * Returns number of lattice reductions, which changed the lattice,
+     * in the last reduction.
+     */
+    public int getNumOfLatticeReductions() {
+        return numOfLatticeReductions;
+    }
+
+    /**
+     * Returns number of applications of the special transformation
+     * in the last reduction.
+     */
+    public int getNumOfSpecialTransformations() {
+        return numOfSpecialTransformations;
+    }
+
+    /**
+     * Returns time in nanoseconds spent for shifting the imaginary part
+     * in the last reduction.
+     */
+    public long getTimeOfShifting() {
+        return timeOfShifting;
+    }
+
+    /**
+     * Returns time in nanoseconds spent for lattice reduction, including
+     * the Cholesky decomposition, in the last reduction.
+     */
+    public long getTimeOfLatticeReduction() {
+        return timeOfLatticeReduction;
+    }
+
+    /**
+     * Returns time in nanoseconds spent for the special transformation
+     * in the last reduction.
+     */
+    public long getTimeOfSpecialTransformation() {
+        return timeOfSpecialTransformation;
+    }
+
+    /**
+     * Returns total time in nanoseconds of the last reduction.
+     */
+    public long getTimeOfReduction() {
+        return timeOfReduction;
+    }
+
     /**
      * Returns the reduced period matrix <code>&sigma;(B)</code>.
      * <p align=center>
@@ -311,6 +453,165 @@ public class SiegelReduction implements Serializable, Cloneable {
         tPM.assignTimes(PI2i);
     }
 
+    boolean reduceLatticeFast() {
+        final double [][] tXRe = tX.re;
+        final double [][] tPMRe = tPM.re;
+
+        for (int i = 0; i < dim; i++)
+            System.arraycopy(tPMRe[i], 0, tXRe[i], 0, dim);
+
+        Cholesky.decompose(tXRe, tL.re);
+        LLL.reduce(tL.re, U.re); // the reduced basis is U times the original one
+        if (U.isId())
+            return false;
+
+        final int [][] a = A.re;
+        final int [][] u = U.re;
+
+        for (int i = 0; i < dim; i++)
+            System.arraycopy(u[i], 0, a[i], 0, dim);
+
+        invertTransposed(u, AInvTr.re);
+
+        modular.applyGenerator(A, AInvTr);
+
+        // tPM = A tPM A^t
+        final double [][] tPMIm = tPM.im;
+
+        for (int i = 0; i < dim; i++) {
+            final int [] rowA = a[i];
+            final double [] rowRe = productRe[i];
+            final double [] rowIm = productIm[i];
+            for (int j = 0; j < dim; j++) {
+                double re = 0, im = 0;
+                for (int k = 0; k < dim; k++) {
+                    final int aik = rowA[k];
+                    if (aik != 0) {
+                        re += aik * tPMRe[k][j];
+                        im += aik * tPMIm[k][j];
+                    }
+                }
+                rowRe[j] = re;
+                rowIm[j] = im;
+            }
+        }
+
+        for (int i = 0; i < dim; i++) {
+            final double [] rowRe = productRe[i];
+            final double [] rowIm = productIm[i];
+            for (int j = 0; j < dim; j++) {
+                final int [] rowA = a[j];
+                double re = 0, im = 0;
+                for (int k = 0; k < dim; k++) {
+                    final int ajk = rowA[k];
+                    if (ajk != 0) {
+                        re += rowRe[k] * ajk;
+                        im += rowIm[k] * ajk;
+                    }
+                }
+                tPMRe[i][j] = re;
+                tPMIm[i][j] = im;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the transposed of the inverse of the unimodular matrix
+     * <code>u</code> by Gauss-Jordan elimination in the work space.
+     */
+    void invertTransposed( final int [][] u, final int [][] uInvTr ) {
+        final double [][] w = inverseWork;
+
+        for (int i = 0; i < dim; i++) {
+            final double [] row = w[i];
+            for (int j = 0; j < dim; j++) {
+                row[j] = u[i][j];
+                row[dim + j] = i == j ? 1 : 0;
+            }
+        }
+
+        for (int j = 0; j < dim; j++) {
+            int pivot = j;
+            for (int i = j + 1; i < dim; i++)
+                if (Math.abs(w[i][j]) > Math.abs(w[pivot][j]))
+                    pivot = i;
+
+            final double [] row = w[pivot];
+            w[pivot] = w[j];
+            w[j] = row;
+
+            final double p = row[j];
+            for (int k = j; k < 2 * dim; k++)
+                row[k] /= p;
+
+            for (int i = 0; i < dim; i++) {
+                if (i != j) {
+                    final double [] other = w[i];
+                    final double f = other[j];
+                    if (f != 0)
+                        for (int k = j; k < 2 * dim; k++)
+                            other[k] -= f * row[k];
+                }
+            }
+        }
+
+        for (int i = 0; i < dim; i++)
+            for (int j = 0; j < dim; j++)
+                uInvTr[j][i] = (int)Math.floor(w[i][dim + j] + 0.5);
+    }
+
+    /**
+     * Applies the special transformation in place to the reduced period matrix.
+     * With <code>&Omega; = tPM / 2&pi;i</code> the transformation is
+     * <code>&Omega;'<sub>00</sub> = -1/&Omega;<sub>00</sub></code>,
+     * <code>&Omega;'<sub>0j</sub> = &Omega;<sub>0j</sub>/&Omega;<sub>00</sub></code> and,
+     * <code>&Omega;'<sub>ij</sub> = &Omega;<sub>ij</sub> - &Omega;<sub>i0</sub>&Omega;<sub>0j</sub>/&Omega;<sub>00</sub></code>.
+     */
+    boolean applySpecialTransformationFast() {
+        final double [][] re = tPM.re;
+        final double [][] im = tPM.im;
+
+        final double re00 = re[0][0];
+        final double im00 = im[0][0];
+        final double abs00 = re00 * re00 + im00 * im00;
+
+        if (abs00 + EPS > 4 * Math.PI * Math.PI)
+            return false;
+
+        tmpModular.assign(modular); modular.assignTimes(specialModularTransformation, tmpModular);
+
+        // inverse of tPM00
+        final double invRe =  re00 / abs00;
+        final double invIm = -im00 / abs00;
+
+        for (int i = 1; i < dim; i++) {
+            // f = tPMi0 / tPM00
+            final double fRe = re[i][0] * invRe - im[i][0] * invIm;
+            final double fIm = re[i][0] * invIm + im[i][0] * invRe;
+            for (int j = i; j < dim; j++) {
+                final double r = re[i][j] - (fRe * re[0][j] - fIm * im[0][j]);
+                final double m = im[i][j] - (fRe * im[0][j] + fIm * re[0][j]);
+                re[i][j] = re[j][i] = r;
+                im[i][j] = im[j][i] = m;
+            }
+        }
+
+        // tPM0j = 2 pi i tPM0j / tPM00
+        for (int j = 1; j < dim; j++) {
+            final double qRe = re[0][j] * invRe - im[0][j] * invIm;
+            final double qIm = re[0][j] * invIm + im[0][j] * invRe;
+            re[0][j] = re[j][0] = -2 * Math.PI * qIm;
+            im[0][j] = im[j][0] =  2 * Math.PI * qRe;
+        }
+
+        // tPM00 = 4 pi^2 / tPM00
+        re[0][0] = 4 * Math.PI * Math.PI * invRe;
+        im[0][0] = 4 * Math.PI * Math.PI * invIm;
+
+        return true;
+    }
+
     void checkForNegativeDefinitePeriodMatrices() {
         if (forNegativeDefinitePeriodMatrices) {
             PM.assignTimes(-1);
@@ -320,19 +621,59 @@ public class SiegelReduction implements Serializable, Cloneable {
     }
 
     void compute() {
+        final long start = collectingStatistics ? System.nanoTime() : 0;
+
+        numOfIterations = numOfShifts = 0;
+        numOfLatticeReductions = numOfSpecialTransformations = 0;
+        timeOfShifting = timeOfLatticeReduction = timeOfSpecialTransformation = 0;
+
         checkForNegativeDefinitePeriodMatrices();
         computeReducedPeriodMatrix();
         try {
-            boolean wasChanged = true;
-            while (wasChanged) {
-                wasChanged = reduceLattice();
-                wasChanged = applySpecialTransformation() || wasChanged;
-                wasChanged = shiftImaginaryPart() || wasChanged;
-            }
+            if (collectingStatistics)
+                iterateWithStatistics();
+            else
+                iterate();
         } finally {
             checkForNegativeDefinitePeriodMatrices();
         }
         computeReducedPeriodMatrix();
+
+        timeOfReduction = collectingStatistics ? System.nanoTime() - start : 0;
+    }
+
+    void iterate() {
+        boolean wasChanged = true;
+        while (wasChanged) {
+            wasChanged = fastReduction ? reduceLatticeFast() : reduceLattice();
+            wasChanged = (fastReduction ? applySpecialTransformationFast() : applySpecialTransformation()) || wasChanged;
+            wasChanged = shiftImaginaryPart() || wasChanged;
+        }
+    }
+
+    void iterateWithStatistics() {
+        boolean wasChanged = true;
+        while (wasChanged) {
+            numOfIterations++;
+
+            long time = System.nanoTime();
+            final boolean reduced = fastReduction ? reduceLatticeFast() : reduceLattice();
+            timeOfLatticeReduction += System.nanoTime() - time;
+
+            time = System.nanoTime();
+            final boolean transformed = fastReduction ? applySpecialTransformationFast() : applySpecialTransformation();
+            timeOfSpecialTransformation += System.nanoTime() - time;
+
+            time = System.nanoTime();
+            final boolean shifted = shiftImaginaryPart();
+            timeOfShifting += System.nanoTime() - time;
+
+            if (reduced) numOfLatticeReductions++;
+            if (transformed) numOfSpecialTransformations++;
+            if (shifted) numOfShifts++;
+
+            wasChanged = reduced || transformed || shifted;
+        }
     }
 
     static ModularTransformation getSpecialModularTransformation( final int dim ) {
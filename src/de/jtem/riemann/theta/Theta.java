@@ -202,6 +202,11 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 	boolean performSiegelReduction = true;
 	boolean useFillFactorError = true;
 	boolean uniformApproximation = true;
+	boolean useSolitonLimit = true;
+
+	boolean solitonLimit; // lattice sum is restricted to {0,1,-1}^g
+	double solitonLimitError;
+	RealMatrix cornerPoints;
 	
 	long lastChangeOfPeriodMatrix = System.currentTimeMillis();
 
@@ -219,6 +224,9 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 	ComplexVector expOfHalfBnn;
 
+	boolean realWeights; // detected real structure: all exp( Bnn/2 ) are real, e.g. im(B) in {0, 2pi} on the diagonal and {0, pi} else
+	boolean exploitRealStructure = true;
+
 	double radius = 1;
 	double lSLV; // length of shortest lattice vector
 	double fillFactor;
@@ -234,6 +242,8 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 	ErrorRadiusSolverFunction ersf = new ErrorRadiusSolverFunction();
 
+	ThetaMetrics metrics; // null if the instrumentation is disabled
+
 	/* the following latticePointss are used as temporary variables in
 	   varias methods which makes the whole class not thread save!!! */
 
@@ -364,6 +374,9 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 		this.useFillFactorError = useFillFactorError;
 
+		if (solitonLimit)
+			return;
+
 		computeRadius();
 		computeLatticePoints();
 	}
@@ -407,7 +420,79 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 		this.latticePointsforApproximation = null;
 		
-		computeLatticePoints();
+		if (solitonLimit || isSolitonLimitApplicable()) {
+			compute();
+		} else {
+			computeLatticePoints();
+		}
+	}
+
+	/**
+	 * Returns whether a real structure of the period matrix is detected and exploited.
+	 * @see #hasRealStructure()
+	 */
+	public final boolean isExploitingRealStructure() {
+		return exploitRealStructure;
+	}
+
+	/**
+	 * Switches the detection and exploitation of a real structure on or off.
+	 * If it is off the weights of the uniform approximation are left as computed.
+	 * @param exploitRealStructure controles whether a real structure is detected and exploited.
+	 * @see #hasRealStructure()
+	 */
+	public final void setExploitingRealStructure(final boolean exploitRealStructure) {
+		if (exploitRealStructure == this.exploitRealStructure)
+			return;
+
+		this.exploitRealStructure = exploitRealStructure;
+
+		if (expOfHalfBnn != null) {
+			computeExpOfHalfBnn();
+		}
+	}
+
+	/**
+	 * Returns whether the soliton limit is used if it applies.
+	 */
+	public final boolean getUseSolitonLimit() {
+		return useSolitonLimit;
+	}
+
+	/**
+	 * Switches the use of the soliton limit on or off.
+	 * @param useSolitonLimit controles whether the soliton limit is used if it applies.
+	 * @see #isSolitonLimit()
+	 */
+	public final void setUseSolitonLimit(final boolean useSolitonLimit) {
+		if (useSolitonLimit == this.useSolitonLimit)
+			return;
+
+		this.useSolitonLimit = useSolitonLimit;
+
+		this.latticePointsforApproximation = null;
+
+		compute();
+	}
+
+	/**
+	 * Returns whether the oscillatory part is computed in the soliton limit.
+	 * This is the case for the uniform approximation if the period matrix is so degenerated,
+	 * that the lattice points <code>{0,1,-1}<sup>g</sup></code> suffice to
+	 * achieve the accuracy. Then neither Siegel's reduction is performed nor the
+	 * error radius and the lattice points are computed.
+	 * @see #getSolitonLimitError()
+	 */
+	public final boolean isSolitonLimit() {
+		return solitonLimit;
+	}
+
+	/**
+	 * Returns the bound for the error of the oscillatory part in the soliton limit.
+	 * @return error bound or <code>Double.POSITIVE_INFINITY</code> if the soliton limit does not apply.
+	 */
+	public final double getSolitonLimitError() {
+		return solitonLimit ? solitonLimitError : Double.POSITIVE_INFINITY;
 	}
 	
 	/**
@@ -427,8 +512,12 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 		this.tol = accuracy;
 
-		computeRadius();
-		computeLatticePoints();
+		if (solitonLimit || isSolitonLimitApplicable()) {
+			compute();
+		} else {
+			computeRadius();
+			computeLatticePoints();
+		}
 	}
 	
 	/**
@@ -476,6 +565,33 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 		}
 	}
 
+	/**
+	 * Returns the metrics which records time and counters of this theta function.
+	 * @return metrics or <code>null</code> if the instrumentation is disabled.
+	 */
+	public final ThetaMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Attaches metrics which records time and counters of this theta function.
+	 * The same metrics may be attached to several theta functions.
+	 * @param metrics metrics or <code>null</code> to disable the instrumentation.
+	 */
+	public final void setMetrics(final ThetaMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	private long startTime() {
+		return metrics == null ? 0 : System.nanoTime();
+	}
+
+	private void stopTime(final int stage, final long start) {
+		if (metrics != null) {
+			metrics.addTime(stage, System.nanoTime() - start);
+		}
+	}
+
 	/**
 	 * Returns number of lattice points which are used for the uniform approximation
 	 * of the oscillatory part of the Riemann theta function.
@@ -500,8 +616,11 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 	 * @param periodMatrix symmetric complex matrix with negative definite real part
 	 */
 	public final void setPeriodMatrix(final ComplexMatrix periodMatrix) {
-		if (this.periodMatrix != null && periodMatrix.equals(this.periodMatrix))
+		if (this.periodMatrix != null && periodMatrix.equals(this.periodMatrix)) {
+			if (metrics != null)
+				metrics.addCacheHit();
 			return;
+		}
 
 		if (!periodMatrix.isSquared())
 			throw new IllegalArgumentException("matrix is not squared");
@@ -522,10 +641,25 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 	final void compute() {
 
+		if (isSolitonLimitApplicable()) {
+			computeSolitonLimit();
+			return;
+		}
+
+		solitonLimit = false;
+
 		if (performSiegelReduction && dim >= 1) {
 
+			final long start = startTime();
+
+			siegel.setCollectingStatistics(metrics != null);
 			siegel.setPeriodMatrix(periodMatrix);
 
+			if (metrics != null) {
+				metrics.addTime(ThetaMetrics.SIEGEL_REDUCTION, System.nanoTime() - start - siegel.getTimeOfLatticeReduction());
+				metrics.addTime(ThetaMetrics.LATTICE_REDUCTION, siegel.getTimeOfLatticeReduction());
+			}
+
 			modular.setModularTransformation(siegel.modular);
 
 			B = siegel.tPM;
@@ -545,6 +679,8 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 			B = periodMatrix;
 
+			final long start = startTime();
+
 			B.getRe(T);
 
 			T.assignTimes(-1);
@@ -567,6 +703,8 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 			for (int i = 0; i < dim; i++)
 				lSLV += T.get(0, i) * T.get(0, i);
 			lSLV = Math.sqrt(lSLV /= 2);
+
+			stopTime(ThetaMetrics.LATTICE_REDUCTION, start);
 		}
 
 		lSLV2PowOfDim = Math.pow(lSLV, dim);
@@ -601,12 +739,18 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 	
 	void computeLatticePoints() {
 
+		final long start = startTime();
+
 		if( uniformApproximation ) {
 			computeLatticePointsForUniformApproximation();
 		} else {
 			computeLatticePointsForPointwiseApproximation();
 		}
 	
+		if (metrics != null) {
+			metrics.numOfLatticePoints = uniformApproximation ? numOfLatticePoints : 0;
+			stopTime(ThetaMetrics.LATTICE_POINTS, start);
+		}
 	}
 	
 	private void computeLatticePointsForPointwiseApproximation() {
@@ -617,8 +761,12 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 		if( iterator == null ) {
 			this.latticePointsforApproximation =
 				iterator = new LatticePointsInEllipsoidIterator( reB.times(-0.5) );
+			if (metrics != null)
+				metrics.addAllocatedBuffer();
 		} else {
 				iterator.setB(reB.times(-0.5));
+			if (metrics != null)
+				metrics.addCacheHit();
 		}
 	}
 
@@ -632,8 +780,12 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 			this.latticePointsforApproximation =
 				latticePointsforUniformApproximation = 
 					new LatticePointsForUniformApproximation(reB.times(-0.5));
+			if (metrics != null)
+				metrics.addAllocatedBuffer();
 		} else {
 			latticePointsforUniformApproximation.setB( reB.times(-0.5)  );
+			if (metrics != null)
+				metrics.addCacheHit();
 		}
 		
 		latticePointsforUniformApproximation.setRadius(radius);
@@ -649,8 +801,15 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 		latticePoints.re[numOfLatticePoints-1] =  latticePoints.re[0];;
 		latticePoints.re[0] = tmp;
 	
+		computeExpOfHalfBnn();
+	}
+
+	private void computeExpOfHalfBnn() {
+
 		if (expOfHalfBnn == null || expOfHalfBnn.size() < numOfLatticePoints) {
 			expOfHalfBnn = new ComplexVector(numOfLatticePoints);
+			if (metrics != null)
+				metrics.addAllocatedBuffer();
 		}
 
 		final double[][] BRe = B.re;
@@ -682,6 +841,166 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 			expOfHalfBnn.set(i, exponent);
 		}
+
+		computeRealStructure();
+	}
+
+	/**
+	 * Returns a bound for the error of the oscillatory part if the lattice sum
+	 * is restricted to <code>{0,1,-1}<sup>g</sup></code>.
+	 * With <code>&mu;</code> being Gershgorin's lower bound for the
+	 * eigenvalues of <code>-re(B)</code> and <code>&rho; = exp(-&mu;/2)</code>,
+	 * the terms of the oscillatory part are bounded by
+	 * <code>&rho;<sup>|n+c|<sup>2</sup></sup></code>, with <code>|c<sub>i</sub>|&le;&frac12;</code>.
+	 * A lattice point outside <code>{0,1,-1}<sup>g</sup></code> has at least one component
+	 * with <code>|n<sub>i</sub>|&ge;2</code>, thus the error is bounded by
+	 * <code>g t a<sup>g-1</sup></code>
+	 * with <code>t = 2&sum;<sub>m&ge;2</sub>&rho;<sup>(m-&frac12;)<sup>2</sup></sup></code>
+	 * and <code>a = 1 + 2&sum;<sub>m&ge;1</sub>&rho;<sup>(m-&frac12;)<sup>2</sup></sup></code>.
+	 */
+	final double computeSolitonLimitError() {
+
+		final double[][] BRe = periodMatrix.re;
+
+		double mu = Double.MAX_VALUE;
+
+		for (int i = 0; i < dim; i++) {
+			double m = -BRe[i][i];
+			for (int j = 0; j < dim; j++) {
+				if (j != i)
+					m -= Math.abs(BRe[i][j]);
+			}
+			mu = Math.min(mu, m);
+		}
+
+		if (!(mu > 0))
+			return Double.POSITIVE_INFINITY;
+
+		final double rho = Math.exp(-mu / 2);
+
+		final double t = 2 * tailOfSolitonLimitError(rho, 2);
+		final double a = 1 + 2 * tailOfSolitonLimitError(rho, 1);
+
+		return dim * t * Math.pow(a, dim - 1);
+	}
+
+	/**
+	 * Returns a bound for <code>&sum;<sub>m&ge;m0</sub>&rho;<sup>(m-&frac12;)<sup>2</sup></sup></code>;
+	 * successive exponents grow at least by <code>2 m0</code>.
+	 */
+	private static double tailOfSolitonLimitError(final double rho, final int m0) {
+		return Math.pow(rho, (m0 - 0.5) * (m0 - 0.5)) / (1 - Math.pow(rho, 2 * m0));
+	}
+
+	final boolean isSolitonLimitApplicable() {
+		return useSolitonLimit && uniformApproximation && dim >= 1 && computeSolitonLimitError() <= tol;
+	}
+
+	private void computeSolitonLimit() {
+
+		solitonLimit = true;
+		solitonLimitError = computeSolitonLimitError();
+
+		modular.assignId();
+
+		modularIsId = true;
+
+		B = periodMatrix;
+
+		B.getRe(reB);
+		B.getIm(imB);
+
+		transform.setPeriodMatrix(B);
+
+		// the zero followed by one of each pair n, -n
+		numOfLatticePoints = ((int) Math.round(Math.pow(3, dim)) - 1) / 2 + 1;
+
+		if (cornerPoints == null || cornerPoints.getNumRows() != numOfLatticePoints || cornerPoints.getNumCols() != dim) {
+			cornerPoints = new RealMatrix(numOfLatticePoints, dim);
+
+			if (metrics != null)
+				metrics.addAllocatedBuffer();
+
+			final int[] n = new int[dim];
+
+			for (int i = 1; i < numOfLatticePoints; i++) {
+
+				// next point in lexicographic order whose first nonzero entry is positive
+				do {
+					int j = dim - 1;
+					while (n[j] == 1) {
+						n[j--] = -1;
+					}
+					n[j]++;
+				} while (!isPositive(n));
+
+				for (int j = 0; j < dim; j++) {
+					cornerPoints.re[i][j] = n[j];
+				}
+			}
+		}
+
+		latticePoints = cornerPoints;
+
+		final long start = startTime();
+
+		computeExpOfHalfBnn();
+
+		if (metrics != null) {
+			metrics.numOfLatticePoints = numOfLatticePoints;
+			stopTime(ThetaMetrics.LATTICE_POINTS, start);
+		}
+	}
+
+	private static boolean isPositive(final int[] n) {
+		for (int j = 0; j < n.length; j++) {
+			if (n[j] != 0)
+				return n[j] > 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Detects whether all weights <code>exp( &frac12;(Bn,n) )</code> of the uniform
+	 * approximation are real, which is the case for real period matrices and for period matrices
+	 * whose imaginary part has entries in <code>2&pi;Z</code> on the diagonal
+	 * and in <code>&pi;Z</code> else.
+	 * Then the imaginary parts, which only consist of round off, are set to zero.
+	 * Nothing is detected or changed if the real structure is not exploited.
+	 */
+	private void computeRealStructure() {
+
+		realWeights = false;
+
+		if (!exploitRealStructure)
+			return;
+
+		final double[] expOfHalfBnnRe = expOfHalfBnn.re;
+		final double[] expOfHalfBnnIm = expOfHalfBnn.im;
+
+		realWeights = true;
+
+		for (int i = 0; i < numOfLatticePoints && realWeights; i++) {
+			realWeights = Math.abs(expOfHalfBnnIm[i]) <= 1e-12 * Math.abs(expOfHalfBnnRe[i]);
+		}
+
+		if (realWeights) {
+			for (int i = 0; i < numOfLatticePoints; i++) {
+				expOfHalfBnnIm[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the period matrix has real structure, i.e. whether all terms
+	 * <code>exp( &frac12;(Bn,n) )</code> of the uniform approximation are real.
+	 * In that case the oscillatory part is real for purely real and purely imaginary
+	 * (transformed) arguments.
+	 * The structure is only detected if it is exploited.
+	 * @see #setExploitingRealStructure(boolean)
+	 */
+	public final boolean hasRealStructure() {
+		return uniformApproximation && realWeights;
 	}
 
 	final void error0(double x, double[] value) {
@@ -747,6 +1066,8 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 	
 	final void computeRadius() {
 
+		final long start = startTime();
+
 		double harmonicThreshRadius = (Math.sqrt(dim + 2 * highestOrder + Math.sqrt(dim * dim + 8 * highestOrder)) + lSLV) / 2;
 
 		try {
@@ -757,6 +1078,8 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 
 			radius = harmonicThreshRadius;
 		}
+
+		stopTime(ThetaMetrics.ERROR_RADIUS, start);
 	}
 
 	private RealVector x = new RealVector();
@@ -839,17 +1162,31 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 	}
 	
 	void thetaSum(final ComplexVector Z, final Complex thetaSumZ) {
+		final long start = startTime();
 		if( this.uniformApproximation ) {
 			thetaSumUniform( Z, thetaSumZ );
 		} else {
 			thetaSumPointwise( Z, thetaSumZ );
 		}
+		if (metrics != null)
+			metrics.addSummation(System.nanoTime() - start, numOfLatticePoints);
 	}
 	
 	void thetaSumUniform(final ComplexVector Z, final Complex thetaSumZ) {
 
 		final double[] zRe = Z.re, zIm = Z.im;
 
+		if (realWeights) {
+			if (isZero(zRe)) {
+				thetaSumUniform(zIm, true, thetaSumZ);
+				return;
+			}
+			if (isZero(zIm)) {
+				thetaSumUniform(zRe, false, thetaSumZ);
+				return;
+			}
+		}
+
 		final double[][] intLatticePointsRe = latticePoints.re;
 
 		final double[] expOfHalfBnnRe = expOfHalfBnn.re;
@@ -879,6 +1216,51 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 		}
 	}
 
+	private static boolean isZero(final double[] v) {
+		for (int i = 0; i < v.length; i++) {
+			if (v[i] != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the oscillatory part for purely imaginary arguments <code>z = iw</code>
+	 * as cosine series and for real arguments <code>z = w</code> as hyperbolic cosine series:
+	 * <p align=center>
+	 * <code>
+	 *    1 + &sum; exp( &frac12;(Bn,n) ) &middot; 2cos( (w,n) )
+	 * </code>
+	 * <p>
+	 * where the sum runs over the half of the lattice points.
+	 * The weights have to be real, i.e. the period matrix has to have real structure.
+	 */
+	private void thetaSumUniform(final double[] w, final boolean trigonometric, final Complex thetaSumZ) {
+
+		final double[][] intLatticePointsRe = latticePoints.re;
+
+		final double[] expOfHalfBnnRe = expOfHalfBnn.re;
+
+		double sum = 1;
+
+		for (int i = 1; i < numOfLatticePoints; i++) {
+
+			final double[] nRe = intLatticePointsRe[i];
+
+			double nW = 0;
+
+			for (int j = 0; j < dim; j++) {
+				nW += w[j] * nRe[j];
+			}
+
+			final double c = trigonometric ? 2 * Math.cos(nW) : 2 * Math.cosh(nW);
+
+			sum += expOfHalfBnnRe[i] * c;
+		}
+
+		thetaSumZ.assign(sum, 0);
+	}
+
 	
 	void dThetaSumPointwise(final ComplexVector Z, final ComplexVector X, final Complex thetaSumZ, final Complex thetaSumX) {
 			
@@ -926,11 +1308,14 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 	}
 	
 	void dThetaSum(final ComplexVector Z, final ComplexVector X, final Complex thetaSumZ, final Complex thetaSumX) {
+		final long start = startTime();
 		if( this.uniformApproximation ) {
 			dThetaSumUniform( Z, X, thetaSumZ, thetaSumX );
 		} else {
 			dThetaSumPointwise( Z, X, thetaSumZ,  thetaSumX );
 		}
+		if (metrics != null)
+			metrics.addSummation(System.nanoTime() - start, numOfLatticePoints);
 	}
 	
 	final void dThetaSumUniform(final ComplexVector Z, final ComplexVector X, final Complex thetaSumZ, final Complex thetaSumX) {
@@ -1048,11 +1433,14 @@ public class Theta extends AbstractTheta implements Serializable, Cloneable {
 		final Complex thetaSumY,
 		final Complex thetaSumXY) {
 		
+		final long start = startTime();
 		if( this.uniformApproximation ) {
 			ddThetaSumUniform( Z, X, Y, thetaSumZ, thetaSumX, thetaSumY, thetaSumXY );
 		} else {
 			ddThetaSumPointwise( Z, X, Y, thetaSumZ, thetaSumX, thetaSumY, thetaSumXY );
 		}
+		if (metrics != null)
+			metrics.addSummation(System.nanoTime() - start, numOfLatticePoints);
 	}
 	
 	final void ddThetaSumUniform(
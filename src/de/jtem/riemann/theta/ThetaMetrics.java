@@ -0,0 +1,226 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.theta;
+
+import java.io.Serializable;
+
+/**
+ * Records where a {@link Theta} spends its time.
+ * <p>
+ * A <code>ThetaMetrics</code> instance is attached to one or more theta functions with
+ * {@link Theta#setMetrics(ThetaMetrics)}. It accumulates the wall time and number of
+ * calls of the stages
+ * <ul>
+ * <li>{@link #SIEGEL_REDUCTION}, Siegel's reduction without its lattice reductions,</li>
+ * <li>{@link #LATTICE_REDUCTION}, the Cholesky decompositions and lattice reductions,</li>
+ * <li>{@link #ERROR_RADIUS}, the computation of the radius of the error ellipsoid,</li>
+ * <li>{@link #LATTICE_POINTS}, the enumeration of lattice points and their weights, and</li>
+ * <li>{@link #SUMMATION}, the evaluation of the oscillatory part,</li>
+ * </ul>
+ * and further the number of evaluations, the number of summed lattice points,
+ * the number of allocated buffers and the number of cache hits.
+ * Without attached metrics a theta function only checks for <code>null</code>,
+ * thus the overhead of the instrumentation is neglectable when it is disabled.
+ * <p>
+ * The data can be exported by {@link #toJSON()} and {@link #toCSV()}.
+ * This class is not thread safe; use one instance per thread.
+ * @see Theta
+ */
+public class ThetaMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int SIEGEL_REDUCTION  = 0;
+	public static final int LATTICE_REDUCTION = 1;
+	public static final int ERROR_RADIUS      = 2;
+	public static final int LATTICE_POINTS    = 3;
+	public static final int SUMMATION         = 4;
+
+	public static final int NUM_OF_STAGES = 5;
+
+	static final String[] STAGE_NAMES = {
+		"siegelReduction", "latticeReduction", "errorRadius", "latticePoints", "summation" };
+
+	final long[] timeOfStage = new long[NUM_OF_STAGES];
+	final long[] numOfCallsOfStage = new long[NUM_OF_STAGES];
+
+	long numOfEvaluations;
+	long numOfSummedLatticePoints;
+	long numOfAllocatedBuffers;
+	long numOfCacheHits;
+
+	int numOfLatticePoints;
+
+	/**
+	 * Returns the name of a stage, which is used for the export.
+	 * @param stage one of the stage constants
+	 */
+	public static String getStageName(final int stage) {
+		return STAGE_NAMES[stage];
+	}
+
+	/**
+	 * Returns the accumulated wall time of a stage in nanoseconds.
+	 * @param stage one of the stage constants
+	 */
+	public long getTimeOfStage(final int stage) {
+		return timeOfStage[stage];
+	}
+
+	/**
+	 * Returns how often a stage was performed.
+	 * @param stage one of the stage constants
+	 */
+	public long getNumOfCallsOfStage(final int stage) {
+		return numOfCallsOfStage[stage];
+	}
+
+	/**
+	 * Returns the number of evaluations of the oscillatory part, including derivatives.
+	 */
+	public long getNumOfEvaluations() {
+		return numOfEvaluations;
+	}
+
+	/**
+	 * Returns the total number of lattice points which were summed.
+	 */
+	public long getNumOfSummedLatticePoints() {
+		return numOfSummedLatticePoints;
+	}
+
+	/**
+	 * Returns the number of lattice points of the last lattice which was computed.
+	 */
+	public int getNumOfLatticePoints() {
+		return numOfLatticePoints;
+	}
+
+	/**
+	 * Returns the number of buffers which were allocated for lattice points and their weights.
+	 */
+	public long getNumOfAllocatedBuffers() {
+		return numOfAllocatedBuffers;
+	}
+
+	/**
+	 * Returns the number of cache hits, e.g. a period matrix which was set again or
+	 * lattice data which was reused.
+	 */
+	public long getNumOfCacheHits() {
+		return numOfCacheHits;
+	}
+
+	/**
+	 * Resets all times and counters to zero.
+	 */
+	public void reset() {
+		for (int i = 0; i < NUM_OF_STAGES; i++) {
+			timeOfStage[i] = 0;
+			numOfCallsOfStage[i] = 0;
+		}
+
+		numOfEvaluations = 0;
+		numOfSummedLatticePoints = 0;
+		numOfAllocatedBuffers = 0;
+		numOfCacheHits = 0;
+		numOfLatticePoints = 0;
+	}
+
+	void addTime(final int stage, final long time) {
+		timeOfStage[stage] += time;
+		numOfCallsOfStage[stage]++;
+	}
+
+	void addSummation(final long time, final int numOfSummedLatticePoints) {
+		addTime(SUMMATION, time);
+		numOfEvaluations++;
+		this.numOfSummedLatticePoints += numOfSummedLatticePoints;
+	}
+
+	void addAllocatedBuffer() {
+		numOfAllocatedBuffers++;
+	}
+
+	void addCacheHit() {
+		numOfCacheHits++;
+	}
+
+	/**
+	 * Returns the data as JSON object.
+	 * The stages are listed with their number of calls and time in nanoseconds.
+	 */
+	public String toJSON() {
+		final StringBuffer sb = new StringBuffer();
+
+		sb.append("{\"stages\":{");
+		for (int i = 0; i < NUM_OF_STAGES; i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append('"').append(STAGE_NAMES[i]).append("\":{\"calls\":").append(numOfCallsOfStage[i])
+				.append(",\"timeNanos\":").append(timeOfStage[i]).append('}');
+		}
+		sb.append("},\"evaluations\":").append(numOfEvaluations);
+		sb.append(",\"summedLatticePoints\":").append(numOfSummedLatticePoints);
+		sb.append(",\"latticePoints\":").append(numOfLatticePoints);
+		sb.append(",\"allocatedBuffers\":").append(numOfAllocatedBuffers);
+		sb.append(",\"cacheHits\":").append(numOfCacheHits);
+		sb.append('}');
+
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the data as comma separated values with a header line
+	 * and one line per metric.
+	 */
+	public String toCSV() {
+		final StringBuffer sb = new StringBuffer();
+
+		sb.append("metric,value\n");
+		for (int i = 0; i < NUM_OF_STAGES; i++) {
+			sb.append(STAGE_NAMES[i]).append(".calls,").append(numOfCallsOfStage[i]).append('\n');
+			sb.append(STAGE_NAMES[i]).append(".timeNanos,").append(timeOfStage[i]).append('\n');
+		}
+		sb.append("evaluations,").append(numOfEvaluations).append('\n');
+		sb.append("summedLatticePoints,").append(numOfSummedLatticePoints).append('\n');
+		sb.append("latticePoints,").append(numOfLatticePoints).append('\n');
+		sb.append("allocatedBuffers,").append(numOfAllocatedBuffers).append('\n');
+		sb.append("cacheHits,").append(numOfCacheHits).append('\n');
+
+		return sb.toString();
+	}
+
+	public String toString() {
+		return toJSON();
+	}
+}
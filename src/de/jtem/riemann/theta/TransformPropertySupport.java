@@ -119,6 +119,14 @@ final public class TransformPropertySupport implements Serializable, Cloneable {
 
     final Complex factor = new Complex();
 
+    /* period matrix and its inverse real part stored row by row for block transformations */
+    double [] reBFlat    = new double[0];
+    double [] imBFlat    = new double[0];
+    double [] reBInvFlat = new double[0];
+
+    /* work space for block transformations; grows as needed */
+    double [] blockM = new double[0];
+
     final double minus2Pi = -2 * Math.PI;
     final double plus2Pi  =  2 * Math.PI;
 
@@ -179,6 +187,18 @@ final public class TransformPropertySupport implements Serializable, Cloneable {
         B.getIm(imB);
 
         reBInv = reB.invert();
+
+        if( reBFlat.length != dim * dim ) {
+            reBFlat    = new double[dim * dim];
+            imBFlat    = new double[dim * dim];
+            reBInvFlat = new double[dim * dim];
+        }
+
+        for( int i = 0; i < dim; i++ ) {
+            System.arraycopy(reB.re[i],    0, reBFlat,    i * dim, dim);
+            System.arraycopy(imB.re[i],    0, imBFlat,    i * dim, dim);
+            System.arraycopy(reBInv.re[i], 0, reBInvFlat, i * dim, dim);
+        }
     }
 
     /**
@@ -224,6 +244,80 @@ final public class TransformPropertySupport implements Serializable, Cloneable {
         factor.im = tmp.dot(M) / 2 + zIm.dot(M);
     }
 
+    /**
+     * Transforms a block of argument vectors at once.
+     * The vectors are stored row by row in flat arrays, i.e. the
+     * <code>i</code>-th component of the <code>k</code>-th vector
+     * is stored at <code>k*g+i</code>.
+     * The integer vectors <code>M(z|B)</code> of all arguments are determined by one
+     * matrix-matrix product, and so are the products <code>BM(z|B)</code>.
+     * This does not change the state of this instance,
+     * e.g. {@link #getZ()} and {@link #getFactor()}.
+     * @param numOfZ number of argument vectors
+     * @param zRe real parts of the argument vectors
+     * @param zIm imaginary parts of the argument vectors
+     * @param transformedZRe real parts of the transformed arguments <code>T(z|B)</code>
+     * @param transformedZIm imaginary parts of the transformed arguments <code>T(z|B)</code>
+     * @param factorRe real parts of the factors <code>f(z|B)</code>, one for each argument
+     * @param factorIm imaginary parts of the factors <code>f(z|B)</code>, one for each argument
+     */
+    public final void transform( final int numOfZ,
+                                 final double [] zRe, final double [] zIm,
+                                 final double [] transformedZRe, final double [] transformedZIm,
+                                 final double [] factorRe, final double [] factorIm ) {
+        final int size = numOfZ * dim;
+
+        if( blockM.length < size )
+            blockM = new double[size];
+
+        final double [] m = blockM;
+
+        // M = - [ re(z) re(B)^-1 ], re(B)^-1 is symmetric
+        times(numOfZ, dim, zRe, reBInvFlat, m);
+
+        for( int l = 0; l < size; l++ )
+            m[l] = -Math.floor(m[l] + 0.5);
+
+        // BM, B is symmetric
+        times(numOfZ, dim, m, reBFlat, transformedZRe);
+        times(numOfZ, dim, m, imBFlat, transformedZIm);
+
+        for( int k = 0, l = 0; k < numOfZ; k++ ) {
+            double fRe = 0;
+            double fIm = 0;
+            for( int i = 0; i < dim; i++, l++ ) {
+                final double mi    = m[l];
+                final double bmRe  = transformedZRe[l];
+                final double bmIm  = transformedZIm[l];
+                final double im    = bmIm + zIm[l];
+
+                fRe += mi * (bmRe / 2 + zRe[l]);
+                fIm += mi * (bmIm / 2 + zIm[l]);
+
+                transformedZRe[l] = bmRe + zRe[l];
+                transformedZIm[l] = im + plus2Pi * Math.floor(im / minus2Pi + 0.5);
+            }
+            factorRe[k] = fRe;
+            factorIm[k] = fIm;
+        }
+    }
+
+    /**
+     * Computes the product of the block of row vectors <code>x</code>
+     * with the transposed of the <code>dim&times;dim</code> matrix <code>a</code>.
+     */
+    static void times( final int numOfRows, final int dim,
+                       final double [] x, final double [] a, final double [] result ) {
+        for( int k = 0, offset = 0; k < numOfRows; k++, offset += dim ) {
+            for( int i = 0, row = 0; i < dim; i++, row += dim ) {
+                double sum = 0;
+                for( int j = 0; j < dim; j++ )
+                    sum += x[offset + j] * a[row + j];
+                result[offset + i] = sum;
+            }
+        }
+    }
+
     /**
      * Returns the transformed argument vector.
      * @return <code> T(z|B) = z + 2&pi;iN(z|B) + BM(z|B) </code>
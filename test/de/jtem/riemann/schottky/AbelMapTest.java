@@ -31,6 +31,10 @@ OF SUCH DAMAGE.
 
 package de.jtem.riemann.schottky;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.jtem.blas.ComplexMatrix;
 import de.jtem.blas.ComplexVector;
 import de.jtem.mfc.field.Complex;
 import junit.framework.TestCase;
@@ -108,6 +112,482 @@ public class AbelMapTest extends TestCase {
     }
   }
 
+  /**
+   * Tests that the differentials and integrals of 1st kind computed in
+   * one walk coincide with those computed one by one.
+   * @param g genus of helicoid to test.
+   */
+  public void testAllOf1stKind( int g ) {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( g );
+
+    final int n = schottky.getNumGenerators();
+
+    final Complex[] differentials = Complex.createArray( n );
+    final Complex[] integrals = Complex.createArray( n );
+
+    for( int j=0; j<5; j++ ) {
+
+      final Complex z = new Complex( 0.3 * j - 0.5, 0.1 + 0.2 * j );
+
+      schottky.abelianDifferentialsOf1stKind( differentials, z, 1e-10 );
+      schottky.abelianIntegralsOf1stKind( integrals, z, 1e-10 );
+
+      for( int i=0; i<n; i++ ) {
+        assertEquals( schottky.abelianDifferentialOf1stKind( z, i, 1e-10 ), differentials[i] );
+        assertEquals( schottky.abelianIntegralOf1stKind( z, i, 1e-10 ), integrals[i] );
+      }
+    }
+  }
+
+  public void testAllOf1stKind() {
+    testAllOf1stKind( 1 );
+    testAllOf1stKind( 3 );
+    testAllOf1stKind( 4 );
+  }
+
+  public void testOf1stKindAtPoints( int g ) {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( g );
+
+    final double [] xy = SchottkyDomainSampler.getRaster( schottky, 12, 12, 0.5, 0.5 );
+
+    final Complex[] z = new Complex[ xy.length / 2 ];
+
+    for( int j=0; j<z.length; j++ ) {
+      z[j] = new Complex( xy[2*j], xy[2*j+1] );
+    }
+
+    final Complex[] differentials = Complex.createArray( z.length );
+
+    for( int i=0; i<schottky.getNumGenerators(); i++ ) {
+
+      schottky.abelianDifferentialOf1stKind( differentials, z, i, 1e-10 );
+
+      for( int j=0; j<z.length; j++ ) {
+        assertEquals( schottky.abelianDifferentialOf1stKind( z[j], i, 1e-10 ), differentials[j] );
+      }
+    }
+  }
+
+  public void testOf1stKindAtPoints() {
+    testOf1stKindAtPoints( 1 );
+    testOf1stKindAtPoints( 3 );
+  }
+
+  public void testCachingBounds() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    final double [] xy = SchottkyDomainSampler.getRaster( schottky, 20, 20, 0.5, 0.5 );
+
+    final double [][] k = new double[2][schottky.getNumGenerators()];
+    final double [][] bound = new double[2][schottky.getNumGenerators()];
+
+    final Schottky.KVisitor kVisitor = schottky.new KVisitor();
+
+    final Complex[] z = new Complex[ xy.length / 2 ];
+
+    int numOfBounds = 0;
+
+    for( int j=0; j<z.length; j++ ) {
+
+      z[j] = new Complex( xy[2*j], xy[2*j+1] );
+
+      kVisitor.eval( z[j], k, KGrid.WORD_LENGTH );
+
+      if( schottky.kGrid.lowerBounds( z[j], bound, kVisitor ) ) {
+        numOfBounds++;
+        for( int i=0; i<2; i++ ) {
+          for( int n=0; n<schottky.getNumGenerators(); n++ ) {
+            assertTrue( bound[i][n] <= k[i][n] );
+          }
+        }
+      }
+    }
+
+    assertTrue( 2 * numOfBounds > z.length );
+
+    final Complex[] differentials = Complex.createArray( z.length );
+    final Complex[] integrals = Complex.createArray( schottky.getNumGenerators() );
+
+    schottky.abelianDifferentialOf1stKind( differentials, z, 1, 1e-10 );
+
+    schottky.setCachingBounds( true );
+
+    for( int j=0; j<z.length; j++ ) {
+      assertEquals( 0, differentials[j].dist( schottky.abelianDifferentialOf1stKind( z[j], 1, 1e-10 ) ), 1e-10 );
+
+      schottky.setCachingBounds( false );
+      schottky.abelianIntegralsOf1stKind( integrals, z[j], 1e-10 );
+      schottky.setCachingBounds( true );
+
+      for( int n=0; n<schottky.getNumGenerators(); n++ ) {
+        assertEquals( 0, integrals[n].dist( schottky.abelianIntegralOf1stKind( z[j], n, 1e-10 ) ), 1e-10 );
+      }
+    }
+  }
+
+  public void testCachingExpansions() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    final int numGenerators = schottky.getNumGenerators();
+
+    final double [] xy = SchottkyDomainSampler.getRaster( schottky, 20, 20, 0.5, 0.5 );
+
+    final Complex[] z = new Complex[ xy.length / 2 ];
+
+    for( int j=0; j<z.length; j++ ) {
+      z[j] = new Complex( xy[2*j], xy[2*j+1] );
+    }
+
+    final double acc = 1e-10;
+
+    final Complex[] differentials = Complex.createArray( numGenerators );
+    final Complex[] integrals = Complex.createArray( numGenerators );
+    final Complex[] cachedDifferentials = Complex.createArray( numGenerators );
+    final Complex[] cachedIntegrals = Complex.createArray( numGenerators );
+
+    final Complex[] differentialsAtPoints = Complex.createArray( z.length );
+
+    schottky.abelianDifferentialOf1stKind( differentialsAtPoints, z, 1, acc );
+
+    schottky.setCachingExpansions( true );
+
+    final Complex[] cachedDifferentialsAtPoints = Complex.createArray( z.length );
+
+    schottky.abelianDifferentialOf1stKind( cachedDifferentialsAtPoints, z, 1, acc );
+
+    int numOfExpansions = 0;
+
+    for( int j=0; j<z.length; j++ ) {
+
+      if( schottky.isInFundamentalDomain( z[j] )
+          && schottky.expansionCache.cell( z[j], acc, schottky.abelianDifferential ) != null ) {
+        numOfExpansions++;
+      }
+
+      schottky.abelianDifferentialsOf1stKind( cachedDifferentials, z[j], acc );
+      schottky.abelianIntegralsOf1stKind( cachedIntegrals, z[j], acc );
+
+      schottky.setCachingExpansions( false );
+      schottky.abelianDifferentialsOf1stKind( differentials, z[j], acc );
+      schottky.abelianIntegralsOf1stKind( integrals, z[j], acc );
+      schottky.setCachingExpansions( true );
+
+      for( int n=0; n<numGenerators; n++ ) {
+        assertEquals( 0, differentials[n].dist( cachedDifferentials[n] ), 2 * acc );
+        assertEquals( 0, differentials[n].dist( schottky.abelianDifferentialOf1stKind( z[j], n, acc ) ), 2 * acc );
+        // the integrals are normalized whether the cell is used or not;
+        // on the cut im = pi and im = -pi are both valid
+        assertTrue( Math.abs( cachedIntegrals[n].im ) <= Math.PI );
+        assertTrue( Math.abs( integrals[n].im ) <= Math.PI );
+        assertEqualsModulo2PiI( integrals[n], cachedIntegrals[n], 2 * acc );
+        assertEqualsModulo2PiI( integrals[n], schottky.abelianIntegralOf1stKind( z[j], n, acc ), 2 * acc );
+      }
+
+      assertEquals( 0, differentialsAtPoints[j].dist( cachedDifferentialsAtPoints[j] ), 2 * acc );
+    }
+
+    assertTrue( numOfExpansions > z.length / 2 );
+  }
+
+  public void testMultipoles() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    final int numGenerators = schottky.getNumGenerators();
+
+    final double [] xy = SchottkyDomainSampler.getRaster( schottky, 20, 20, 0.5, 0.5 );
+
+    final double acc = 1e-10;
+
+    final Complex[] differentials = Complex.createArray( numGenerators );
+    final Complex[] integrals = Complex.createArray( numGenerators );
+    final Complex[] multipoleDifferentials = Complex.createArray( numGenerators );
+    final Complex[] multipoleIntegrals = Complex.createArray( numGenerators );
+
+    int numOfPoints = 0;
+    int numOfExpansions = 0;
+
+    for( int j=0; j<xy.length/2; j++ ) {
+
+      final Complex z = new Complex( xy[2*j], xy[2*j+1] );
+
+      schottky.setUsingMultipoles( true );
+
+      if( schottky.isInFundamentalDomain( z ) ) {
+        numOfPoints++;
+        if( schottky.multipoles.differentials( z, acc, multipoleDifferentials ) ) {
+          numOfExpansions++;
+        }
+      }
+
+      schottky.abelianDifferentialsOf1stKind( multipoleDifferentials, z, acc );
+      schottky.abelianIntegralsOf1stKind( multipoleIntegrals, z, acc );
+
+      schottky.setUsingMultipoles( false );
+
+      schottky.abelianDifferentialsOf1stKind( differentials, z, acc );
+      schottky.abelianIntegralsOf1stKind( integrals, z, acc );
+
+      for( int n=0; n<numGenerators; n++ ) {
+        assertEquals( 0, differentials[n].dist( multipoleDifferentials[n] ), 2 * acc );
+        assertEqualsModulo2PiI( integrals[n], multipoleIntegrals[n], 2 * acc );
+      }
+    }
+
+    assertTrue( 2 * numOfExpansions > numOfPoints );
+  }
+
+  public void testMultipolesCloseToCircle() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    final int numGenerators = schottky.getNumGenerators();
+
+    final Complex[] differentials = Complex.createArray( numGenerators );
+    final Complex[] integrals = Complex.createArray( numGenerators );
+
+    final Complex c = schottky.center[0][0];
+    final double r = schottky.radius[0];
+
+    schottky.setUsingMultipoles( true );
+
+    // the expansions would need deep words here, thus the series is evaluated
+    for( double d = 1e-3; d > 1e-5; d /= 10 ) {
+      final Complex z = new Complex( c.re + r + d, c.im );
+      assertNull( schottky.multipoles.expansions( z, 1e-10 ) );
+      schottky.abelianDifferentialsOf1stKind( differentials, z, 1e-10 );
+      schottky.abelianIntegralsOf1stKind( integrals, z, 1e-10 );
+    }
+
+    // the tree of words has been left for the series
+    schottky.setUsingMultipoles( false );
+
+    schottky.abelianIntegralsOf1stKind( integrals, new Complex( c.re + r + 1e-4, c.im ), 1e-12 );
+  }
+
+  public void testIntegralsOf3rdKind() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    final double [] xy = SchottkyDomainSampler.getRaster( schottky, 12, 12, 0.5, 0.5 );
+
+    final Complex[] p = new Complex[6];
+
+    for( int j=0, i=0; i<p.length; j+=5 ) {
+      final Complex q = new Complex( xy[2*j], xy[2*j+1] );
+      if( schottky.isInFundamentalDomain( q, 0.1 ) ) {
+        p[i++] = q;
+      }
+    }
+
+    final double acc = 1e-10;
+
+    final Complex[] A = new Complex[] { p[0], p[1], p[2] };
+    final Complex[] B = new Complex[] { p[3], p[4], p[5] };
+    final Complex[] z = new Complex[] { p[1].plus( new Complex( 0.1, 0.1 ) ),
+                                        p[4].plus( new Complex( -0.1, 0.1 ) ) };
+
+    final Complex[][] r = new Complex[A.length][];
+
+    for( int i=0; i<A.length; i++ ) {
+      r[i] = Complex.createArray( z.length );
+    }
+
+    schottky.abelianIntegralsOf3rdKind( r, z, A, B, acc );
+
+    // each integral gets the same terms as alone
+    for( int i=0; i<A.length; i++ ) {
+      for( int j=0; j<z.length; j++ ) {
+        assertEquals( r[i][j], schottky.abelianIntegralOf3rdKind( z[j], A[i], B[i], acc ) );
+      }
+    }
+
+    // exchange of points and poles: w_AB(z) - w_AB(w) = w_wz(B) - w_wz(A)
+    final Complex[][] s = new Complex[][] { Complex.createArray( 2 ) };
+
+    for( int i=0; i<A.length; i++ ) {
+
+      schottky.abelianIntegralsOf3rdKind( s, new Complex[] { B[i], A[i] },
+                                          new Complex[] { z[1] }, new Complex[] { z[0] }, acc );
+
+      assertEqualsModulo2PiI( r[i][0].minus( r[i][1] ), s[0][0].minus( s[0][1] ), 1e-8 );
+    }
+  }
+
+  static void assertEqualsModulo2PiI( Complex expected, Complex actual, double delta ) {
+    assertEquals( expected.re, actual.re, delta );
+    assertEquals( 0, Math.IEEEremainder( expected.im - actual.im, 2 * Math.PI ), delta );
+  }
+
+  public void testReductionToFundamentalDomain() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    schottky.setReducingToFundamentalDomain( true );
+
+    final int numGenerators = schottky.getNumGenerators();
+
+    final double [] xy = SchottkyDomainSampler.getRaster( schottky, 12, 12, 0.5, 0.5 );
+
+    Complex z0 = null;
+
+    for( int j=0; j<xy.length/2 && z0 == null; j++ ) {
+      final Complex p = new Complex( xy[2*j], xy[2*j+1] );
+      if( schottky.isInFundamentalDomain( p, 0.1 ) ) {
+        z0 = p;
+      }
+    }
+
+    assertNotNull( z0 );
+
+    final double acc = 1e-10;
+
+    final Complex[] integralsAtZ0 = Complex.createArray( numGenerators );
+    final Complex[] integrals = Complex.createArray( numGenerators );
+    final Complex[] differentialsAtZ0 = Complex.createArray( numGenerators );
+    final Complex[] differentials = Complex.createArray( numGenerators );
+
+    schottky.abelianIntegralsOf1stKind( integralsAtZ0, z0, acc );
+    schottky.abelianDifferentialsOf1stKind( differentialsAtZ0, z0, acc );
+
+    final ComplexMatrix B = schottky.getPeriodMatrix( acc );
+
+    final Complex a = new Complex();
+    final Complex b = new Complex();
+    final Complex c = new Complex();
+    final Complex d = new Complex();
+
+    for( int m=0; m<numGenerators; m++ ) {
+
+      // z lies inside the circle of generator[m]
+      final SchottkyGroupElement g = schottky.generator[m];
+
+      final Complex z = g.applyTo( z0 );
+
+      // g'(z0) = ( ad - bc ) / ( c z0 + d )^2
+      g.getA( a ); g.getB( b ); g.getC( c ); g.getD( d );
+      final Complex derivative = a.times( d ).minus( b.times( c ) ).divide( c.times( z0 ).plus( d ).sqr() );
+
+      assertFalse( schottky.isInFundamentalDomain( z ) );
+
+      schottky.abelianIntegralsOf1stKind( integrals, z, acc );
+      schottky.abelianDifferentialsOf1stKind( differentials, z, acc );
+
+      for( int n=0; n<numGenerators; n++ ) {
+
+        // u_n( g_m z0 ) = u_n( z0 ) + B_nm modulo 2 pi i
+        final Complex expected = integralsAtZ0[n].plus( B.get( n, m ) );
+
+        assertEqualsModulo2PiI( expected, integrals[n], 1e-8 );
+        assertEqualsModulo2PiI( expected, schottky.abelianIntegralOf1stKind( z, n, acc ), 1e-8 );
+
+        // omega_n( g z0 ) g'( z0 ) = omega_n( z0 )
+        assertEquals( 0, differentials[n].times( derivative ).dist( differentialsAtZ0[n] ), 1e-8 );
+        assertEquals( 0, schottky.abelianDifferentialOf1stKind( z, n, acc ).dist( differentials[n] ), 1e-8 );
+      }
+
+      final Complex[] r = Complex.createArray( 2 );
+
+      schottky.abelianDifferentialOf1stKind( r, new Complex[] { z, z0 }, m, acc );
+
+      assertEquals( 0, r[0].dist( differentials[m] ), 1e-8 );
+      assertEquals( 0, r[1].dist( differentialsAtZ0[m] ), 1e-8 );
+    }
+
+    // direct evaluation gives the same integrals modulo 2 pi i
+    schottky.setReducingToFundamentalDomain( false );
+
+    final Complex z = schottky.generatorInv[0].applyTo( z0 );
+
+    assertFalse( schottky.isInFundamentalDomain( z ) );
+
+    schottky.abelianIntegralsOf1stKind( integrals, z, acc );
+
+    schottky.setReducingToFundamentalDomain( true );
+
+    for( int n=0; n<numGenerators; n++ ) {
+      assertEqualsModulo2PiI( integrals[n], schottky.abelianIntegralOf1stKind( z, n, acc ), 1e-8 );
+    }
+  }
+
+  /**
+   * Tests that the Gauss-Legendre panels give the integrals of the
+   * extrapolating integrator, for all differentials at once and in parallel.
+   */
+  public void testPanelIntegration() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    final int n = schottky.getNumGenerators();
+
+    final double tol = 1e-9;
+
+    AbelMap abel = new AbelMap( schottky );
+
+    for( int i=0; i<n; i++ ) {
+
+      ComplexVector path = spiral( schottky.center[i][1],
+                                   schottky.radius[i] * 1.2, 0, 3 * Math.PI );
+
+      abel.setUsingPanels( false );
+
+      final Complex[] extrap = new Complex[n];
+
+      for( int k=0; k<n; k++ ) {
+        extrap[k] = abel.numEval( k, path, tol );
+      }
+
+      abel.setUsingPanels( true );
+
+      final Complex[] panels = abel.numEval( path, tol );
+
+      for( int k=0; k<n; k++ ) {
+        assertEquals( 0, extrap[k].dist( panels[k] ), 10 * tol );
+        assertEquals( panels[k], abel.numEval( new int[] { k }, path, tol )[0] );
+      }
+
+      assertEquals( 0, abel.numEval( new int[0], path, tol ).length );
+
+      final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+      try {
+        schottky.setExecutor( executor );
+
+        // one task of each differential sums up in the sequential order
+        abel.setNumOfTasks( n );
+
+        final Complex[] parallel = abel.numEval( path, tol );
+
+        for( int k=0; k<n; k++ ) {
+          assertEquals( panels[k], parallel[k] );
+        }
+
+        // each differential is integrated by four tasks along blocks of the path
+        abel.setNumOfTasks( 4 * n );
+
+        final Complex[] blocks = abel.numEval( path, tol );
+
+        for( int k=0; k<n; k++ ) {
+          assertEquals( 0, panels[k].dist( blocks[k] ), 10 * tol );
+        }
+      }
+      finally {
+        schottky.setExecutor( null );
+        executor.shutdown();
+      }
+
+      final Complex[] integrals = abel.eval( path, 1e-10 );
+
+      for( int k=0; k<n; k++ ) {
+        assertEquals( 0, abel.eval( k, path, 1e-10 ).dist( integrals[k] ), 1e-12 );
+      }
+    }
+  }
+
   public void testHe1() {
     testHelicoid( 1 );
   }
@@ -0,0 +1,177 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.jtem.mfc.field.Complex;
+import junit.framework.TestCase;
+
+public class MultiStartExtremizerTest extends TestCase {
+
+  static void assertStatistics( MultiStartExtremizer.Result result ) {
+
+    int numOfStarts = result.getNumOfFailedStarts();
+
+    for( int i=0; i<result.getNumOfBasins(); i++ ) {
+      numOfStarts += result.getNumOfStartsOfExtremum( i );
+    }
+
+    assertEquals( result.getNumOfStarts(), numOfStarts );
+  }
+
+  public void testMaximize() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 2 );
+
+    SchottkyAnalysisFunction function
+      = AbelianDifferentialAnalysisFunctionFactory.createAbsValueFunctionFor1stKind( schottky, 1e-8, 0 );
+
+    MultiStartExtremizer extremizer = new MultiStartExtremizer( function );
+
+    extremizer.setDense( 0.1 );
+    extremizer.setNumOfStarts( 8 );
+
+    MultiStartExtremizer.Result result = extremizer.maximize();
+
+    assertStatistics( result );
+    assertTrue( result.getNumOfBasins() > 0 );
+    assertTrue( result.getNumOfStarts() + result.getNumOfSkippedStarts() <= 8 );
+
+    // the global maximum exceeds all samples
+    final double [] xy = SchottkyDomainSampler.getCover( schottky, 0.1, 0.5, 0.5 );
+
+    assertEquals( xy.length / 2, result.getNumOfSamples() );
+
+    final double [] values = function.eval( xy );
+
+    for( int i=0; i<values.length; i++ ) {
+      assertTrue( values[i] <= result.getValue() + 1e-12 );
+    }
+
+    assertTrue( schottky.isInFundamentalDomain( result.getZ(), 1e-12 ) );
+    assertEquals( result.getValue(), function.eval( result.getZ() ), 1e-12 );
+
+    for( int i=1; i<result.getNumOfBasins(); i++ ) {
+      assertTrue( result.getValueOfExtremum( i ) <= result.getValueOfExtremum( i-1 ) );
+    }
+
+    // parallel local searches with copies of function and schottky group
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+    try {
+      schottky.setExecutor( executor );
+
+      // split into tasks independently of the number of processors
+      extremizer.setNumOfTasks( 4 );
+
+      MultiStartExtremizer.Result parallel = extremizer.maximize();
+
+      assertStatistics( parallel );
+      assertEquals( result.getValue(), parallel.getValue(), 1e-6 * result.getValue() );
+
+      // the copies of the schottky group are kept for the next search
+      final Schottky copy = extremizer.schottkyOfTask[3];
+
+      assertNotNull( copy );
+
+      extremizer.minimize();
+
+      assertSame( copy, extremizer.schottkyOfTask[3] );
+    }
+    finally {
+      schottky.setExecutor( null );
+      executor.shutdown();
+    }
+  }
+
+  public void testMinimize() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 2 );
+
+    SchottkyAnalysisFunction function
+      = AbelianDifferentialAnalysisFunctionFactory.createAbsValueFunctionFor1stKind( schottky, 1e-8, 0 );
+
+    MultiStartExtremizer extremizer = new MultiStartExtremizer( function );
+
+    extremizer.setDense( 0.1 );
+    extremizer.setNumOfStarts( 4 );
+
+    MultiStartExtremizer.Result result = extremizer.minimize();
+
+    assertStatistics( result );
+
+    final double [] values = function.eval( SchottkyDomainSampler.getCover( schottky, 0.1, 0.5, 0.5 ) );
+
+    for( int i=0; i<values.length; i++ ) {
+      assertTrue( values[i] >= result.getValue() - 1e-12 );
+    }
+
+    final Complex z = result.getZ();
+
+    assertEquals( result.getValue(), function.eval( z ), 1e-12 );
+  }
+
+  public void testBestSamples() {
+
+    final double [] value = { 3, Double.NaN, 1, 2 };
+
+    final int [] smallest = MultiStartExtremizer.bestSamples( value, 3, false );
+
+    assertEquals( 2, smallest[0] );
+    assertEquals( 3, smallest[1] );
+    assertEquals( 0, smallest[2] );
+
+    assertEquals( 0, MultiStartExtremizer.bestSamples( value, 1, true )[0] );
+  }
+
+  public void testSeparatedSamples() {
+
+    // the two best samples are neighbors, the NaN sample is left out
+    final double [] xy    = { 0, 0, 0.1, 0, 1, 0, 2, 0 };
+    final double [] value = { 5, 4, 3, Double.NaN };
+
+    final int [] start = MultiStartExtremizer.separatedSamples( xy, value, 3, 0.5, true );
+
+    assertEquals( 2, start.length );
+    assertEquals( 0, start[0] );
+    assertEquals( 2, start[1] );
+
+    final int [] smallest = MultiStartExtremizer.separatedSamples( xy, value, 3, 0.05, false );
+
+    assertEquals( 3, smallest.length );
+    assertEquals( 2, smallest[0] );
+    assertEquals( 1, smallest[1] );
+    assertEquals( 0, smallest[2] );
+  }
+}
@@ -0,0 +1,127 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import de.jtem.blas.ComplexMatrix;
+import de.jtem.mfc.field.Complex;
+import junit.framework.TestCase;
+
+public class SchottkyContextTest extends TestCase {
+
+  static final int NUM_OF_THREADS = 4;
+
+  static final int NUM_OF_POINTS = 20;
+
+  Schottky schottky;
+
+  Complex[] z;
+
+  Complex[][] differential, integral;
+
+  public void setUp() {
+    schottky = new Schottky( TestSchottky.schottkyDataForHe[2], 1e-10 );
+
+    final int g = schottky.getNumGenerators();
+
+    z = new Complex[NUM_OF_POINTS];
+    differential = new Complex[NUM_OF_POINTS][g];
+    integral = new Complex[NUM_OF_POINTS][g];
+
+    for( int i=0; i<NUM_OF_POINTS; i++ ) {
+      z[i] = new Complex( 0.1 * i - 1, 0.05 * i + 0.2 );
+
+      for( int n=0; n<g; n++ ) {
+        differential[i][n] = schottky.abelianDifferentialOf1stKind( z[i], n );
+        integral[i][n] = schottky.abelianIntegralOf1stKind( z[i], n );
+      }
+    }
+  }
+
+  public void testContext() {
+
+    final SchottkyContext context = new SchottkyContext( schottky );
+
+    for( int i=0; i<NUM_OF_POINTS; i++ ) {
+      for( int n=0; n<schottky.getNumGenerators(); n++ ) {
+        assertEquals( differential[i][n], context.abelianDifferentialOf1stKind( z[i], n ) );
+        assertEquals( integral[i][n], context.abelianIntegralOf1stKind( z[i], n ) );
+      }
+    }
+
+    final ComplexMatrix B = new ComplexMatrix();
+    context.getPeriodMatrix( B );
+
+    assertEquals( schottky.getPeriodMatrix(), B );
+  }
+
+  public void testConcurrentContexts() throws InterruptedException {
+
+    final Throwable[] failure = new Throwable[NUM_OF_THREADS];
+
+    final Thread[] thread = new Thread[NUM_OF_THREADS];
+
+    for( int t=0; t<NUM_OF_THREADS; t++ ) {
+      final int offset = t;
+
+      thread[t] = new Thread() {
+        public void run() {
+          try {
+            final SchottkyContext context = new SchottkyContext( schottky );
+
+            for( int j=0; j<NUM_OF_POINTS; j++ ) {
+              final int i = ( j + offset * 5 ) % NUM_OF_POINTS;
+
+              for( int n=0; n<schottky.getNumGenerators(); n++ ) {
+                assertEquals( differential[i][n], context.abelianDifferentialOf1stKind( z[i], n ) );
+                assertEquals( integral[i][n], context.abelianIntegralOf1stKind( z[i], n ) );
+              }
+            }
+          } catch( Throwable e ) {
+            failure[offset] = e;
+          }
+        }
+      };
+    }
+
+    for( int t=0; t<NUM_OF_THREADS; t++ ) {
+      thread[t].start();
+    }
+
+    for( int t=0; t<NUM_OF_THREADS; t++ ) {
+      thread[t].join();
+
+      if( failure[t] != null ) {
+        fail( "thread " + t + ": " + failure[t] );
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+public class SchottkyDomainEvaluatorTest extends TestCase {
+
+  static void assertEquals( double [] expected, double [] actual ) {
+    assertEquals( expected, actual, 0 );
+  }
+
+  static void assertEquals( double [] expected, double [] actual, double delta ) {
+    assertEquals( expected.length, actual.length );
+    for( int i=0; i<expected.length; i++ ) {
+      assertEquals( expected[i], actual[i], delta );
+    }
+  }
+
+  public void testEval() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 2 );
+
+    SchottkyAnalysisFunction function
+      = AbelianIntegralAnalysisFunctionFactory.createAbsValueFunctionFor1stKind( schottky, 1e-8, 1 );
+
+    SchottkyDomain domain = new SchottkyDomain( schottky );
+
+    SchottkyDomainEvaluator evaluator = new SchottkyDomainEvaluator( domain, function );
+
+    assertEquals( function.eval( domain.getPoints() ), evaluator.eval() );
+    assertEquals( domain.getNumOfPoints(), evaluator.getNumOfEvaluations() );
+
+    // only the new vertices are evaluated after a refinement
+    final int numOfPoints = domain.getNumOfPoints();
+
+    domain.setMaxArea( 0.1 );
+
+    assertEquals( function.eval( domain.getPoints() ), evaluator.eval() );
+    assertEquals( domain.getNumOfPoints() - numOfPoints, evaluator.getNumOfEvaluations() );
+
+    evaluator.eval();
+
+    assertEquals( 0, evaluator.getNumOfEvaluations() );
+
+    // parallel evaluation with copies of function and schottky group,
+    // whose results agree within the accuracy of the function
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+    try {
+      schottky.setExecutor( executor );
+
+      // split into tasks independently of the number of processors
+      evaluator.setNumOfTasks( 4 );
+
+      domain.setMaxArea( 0.02 );
+
+      assertEquals( function.eval( domain.getPoints() ), evaluator.eval(), 1e-8 );
+      assertEquals( 4, evaluator.schottkyOfTask.length );
+
+      evaluator.invalidate();
+
+      assertEquals( function.eval( domain.getPoints() ), evaluator.eval(), 1e-8 );
+      assertEquals( domain.getNumOfPoints(), evaluator.getNumOfEvaluations() );
+    }
+    finally {
+      schottky.setExecutor( null );
+      executor.shutdown();
+    }
+  }
+
+  public void testOrder() {
+
+    // two triangles sharing the edge 1,2 and an isolated vertex 4
+    final int [] indices = { 0, 1, 2, 1, 3, 2 };
+
+    final int [] order = SchottkyDomainEvaluator.getOrder( 5, indices, new boolean[] { false, false, true, false, false } );
+
+    assertEquals( 4, order.length );
+    assertEquals( 0, order[0] );
+    assertEquals( 1, order[1] );
+    assertEquals( 3, order[2] );
+    assertEquals( 4, order[3] );
+  }
+}
@@ -0,0 +1,148 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.jtem.mfc.field.Complex;
+import junit.framework.TestCase;
+
+public class SchottkyDomainSamplerTest extends TestCase {
+
+  /**
+   * Raster which tests every point, like the sampler did originally.
+   */
+  static double [] referenceRaster( Schottky schottky,
+                                    int numRows, int numCols, double [] bound ) {
+
+    Complex z = new Complex();
+
+    double [] xy = new double[2*(numRows+1)*(numCols+1)];
+
+    double deltaX = (bound[2]-bound[0]) / numCols;
+    double deltaY = (bound[3]-bound[1]) / numRows;
+
+    double row = bound[1];
+
+    int k=0;
+
+    for( int i=0; i<=numRows; i++, row += deltaY ) {
+
+      double col = bound[0];
+
+      for( int j=0; j<=numCols; j++, col += deltaX ) {
+
+        z.assign( col, row );
+
+        if( schottky.dist( z ) == 0 ) {
+          xy[k++] = col;
+          xy[k++] = row;
+        }
+      }
+    }
+
+    double [] rasterXY = new double[k];
+
+    System.arraycopy( xy, 0, rasterXY, 0, k );
+
+    return rasterXY;
+  }
+
+  static void assertEquals( double [] expected, double [] actual ) {
+    assertEquals( expected.length, actual.length );
+    for( int i=0; i<expected.length; i++ ) {
+      assertEquals( expected[i], actual[i], 0 );
+    }
+  }
+
+  public void testRaster() {
+
+    for( int g=1; g<=4; g++ ) {
+
+      Schottky schottky = TestSchottky.getSchottkyOfHe( g );
+
+      double [] bound = SchottkyDomainSampler.getBound( schottky );
+
+      bound[0] -= 0.5;
+      bound[1] -= 0.5;
+      bound[2] += 0.5;
+      bound[3] += 0.5;
+
+      int [] sizes = { 1, 15, 16, 17, 100, 257 };
+
+      for( int i=0; i<sizes.length; i++ ) {
+        assertEquals( referenceRaster( schottky, sizes[i], sizes[(i+1) % sizes.length], bound ),
+                      SchottkyDomainSampler.getRaster( schottky, sizes[i], sizes[(i+1) % sizes.length], bound ) );
+      }
+    }
+  }
+
+  public void testParallelCover() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 3 );
+
+    final double [] cover = SchottkyDomainSampler.getCover( schottky, 0.005, 0.5, 0.5 );
+
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+    try {
+      schottky.setExecutor( executor );
+
+      assertEquals( cover, SchottkyDomainSampler.getCover( schottky, 0.005, 0.5, 0.5 ) );
+    }
+    finally {
+      schottky.setExecutor( null );
+      executor.shutdown();
+    }
+
+    // the cover starts with the raster
+    double [] bound = SchottkyDomainSampler.getBound( schottky );
+
+    bound[0] -= 0.5;
+    bound[1] -= 0.5;
+    bound[2] += 0.5;
+    bound[3] += 0.5;
+
+    final double [] raster = referenceRaster( schottky, 200, 200, bound );
+
+    assertTrue( cover.length > raster.length );
+
+    for( int i=0; i<raster.length; i++ ) {
+      assertEquals( raster[i], cover[i], 0 );
+    }
+
+    for( int i=raster.length; i<cover.length; i+=2 ) {
+      assertTrue( schottky.dist( new Complex( cover[i], cover[i+1] ) ) == 0 );
+    }
+  }
+}
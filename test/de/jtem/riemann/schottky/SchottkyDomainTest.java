@@ -0,0 +1,172 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import de.jtem.mfc.field.Complex;
+import junit.framework.TestCase;
+
+public class SchottkyDomainTest extends TestCase {
+
+  /**
+   * Checks that the triangles are positively oriented, that the
+   * neighbors are symmetric and that all edges are locally Delaunay.
+   */
+  static void assertValidMesh( SchottkyDomain domain ) {
+
+    final double [] p = domain.getPoints();
+    final int [] indices = domain.getIndices();
+    final int [] neighbors = domain.getNeighbors();
+
+    for( int f=0; f<indices.length/3; f++ ) {
+
+      assertTrue( SchottkyDomain.orientation( p, indices[3*f], indices[3*f+1], indices[3*f+2] ) > 0 );
+
+      for( int j=0; j<3; j++ ) {
+
+        final int g = neighbors[3*f+j];
+
+        if( g < 0 )
+          continue;
+
+        int m = -1;
+        for( int k=0; k<3; k++ )
+          if( neighbors[3*g+k] == f )
+            m = k;
+
+        assertTrue( m >= 0 );
+        assertFalse( SchottkyDomain.inCircle( p, indices[3*f], indices[3*f+1], indices[3*f+2], indices[3*g+m] ) );
+      }
+    }
+  }
+
+  public void testMove() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 2 );
+
+    SchottkyDomain domain = new SchottkyDomain( schottky );
+
+    domain.setMaxArea( 0.05 );
+    domain.setMovingMesh( true );
+
+    final int numOfPoints = domain.getNumOfPoints();
+
+    for( int step=0; step<3; step++ ) {
+
+      double [] data = schottky.getUniformizationData();
+
+      data[0] += 0.02;
+      data[3] -= 0.01;
+
+      schottky.setUniformizationData( data );
+
+      domain.update();
+
+      assertEquals( numOfPoints, domain.getNumOfPoints() );
+
+      // boundary vertices are the new boundary points
+      final double [][] boundary = domain.getBoundary();
+      final double [] p = domain.getPoints();
+
+      for( int k=0, i=0; k<boundary.length; k++ ) {
+        for( int l=0; l<boundary[k].length; l++, i++ ) {
+          assertEquals( boundary[k][l], p[i], 0 );
+        }
+      }
+
+      for( int i=0; i<p.length; i+=2 ) {
+        assertEquals( 0, schottky.dist( new Complex( p[i], p[i+1] ) ), 1e-12 );
+      }
+
+      assertValidMesh( domain );
+    }
+
+    // the triangulator is rebuilt from the moved points
+    domain.refine();
+
+    assertTrue( domain.getNumOfPoints() >= numOfPoints );
+
+    assertValidMesh( domain );
+  }
+
+  public void testMoveFails() {
+
+    Schottky schottky = TestSchottky.getSchottkyOfHe( 2 );
+
+    SchottkyDomain domain = new SchottkyDomain( schottky );
+
+    domain.setMovingMesh( true );
+
+    domain.circleDiscr = 16;
+
+    assertFalse( domain.move() );
+
+    domain.update();
+
+    assertEquals( 2 * 16, domain.getLengthOfBoundaryComponent( 1 ) );
+
+    assertValidMesh( domain );
+  }
+
+  public void testFlipToDelaunay() {
+
+    // the diagonal 0,2 of the flat rhombus is not Delaunay
+    final double [] p = { 0, 0, 1, -0.2, 2, 0, 1, 0.2 };
+
+    final int [] indices = { 0, 1, 2, 0, 2, 3 };
+    final int [] neighbors = { -1, 1, -1, -1, -1, 0 };
+
+    assertTrue( SchottkyDomain.flipToDelaunay( p, indices, neighbors ) );
+
+    // the diagonal is 1,3 now
+    for( int f=0; f<2; f++ ) {
+      boolean has1 = false, has3 = false;
+      for( int j=0; j<3; j++ ) {
+        has1 |= indices[3*f+j] == 1;
+        has3 |= indices[3*f+j] == 3;
+      }
+      assertTrue( has1 && has3 );
+      assertTrue( SchottkyDomain.orientation( p, indices[3*f], indices[3*f+1], indices[3*f+2] ) > 0 );
+    }
+
+    // each face has the other one as its only neighbor
+    for( int f=0; f<2; f++ ) {
+      int numOfNeighbors = 0;
+      for( int j=0; j<3; j++ ) {
+        if( neighbors[3*f+j] >= 0 ) {
+          assertEquals( 1 - f, neighbors[3*f+j] );
+          numOfNeighbors++;
+        }
+      }
+      assertEquals( 1, numOfNeighbors );
+    }
+  }
+}
@@ -0,0 +1,504 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.schottky;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.jtem.blas.ComplexMatrix;
+import de.jtem.blas.ComplexVector;
+import de.jtem.mfc.field.Complex;
+import de.jtem.mfc.group.Moebius;
+import junit.framework.TestCase;
+
+public class SchottkyWordTreeTest extends TestCase {
+
+  static final double EPS = 1e-12;
+
+  Schottky schottky;
+
+  SchottkyWordTree tree;
+
+  Complex P = new Complex( 0.3, -0.7 );
+
+  public void setUp() {
+    schottky = new Schottky( TestSchottky.schottkyDataForHe[2], 1e-10 );
+    tree = schottky.wordTree;
+  }
+
+  public void testGenerators() {
+
+    assertEquals( 1 + 2 * schottky.numGenerators, tree.getNumOfWords() );
+    assertEquals( 2 * schottky.numGenerators, tree.getNumOfChilds( SchottkyWordTree.ROOT ) );
+
+    compare( schottky.id, SchottkyWordTree.ROOT );
+
+    for( int i=0; i<schottky.numGenerators; i++ ) {
+      compare( schottky.generator[i],    1 + 2 * i );
+      compare( schottky.generatorInv[i], 2 + 2 * i );
+    }
+  }
+
+  public void testTree() {
+    for( int j=0; j<2*schottky.numGenerators; j++ ) {
+      compare( schottky.id.child[j], 1 + j, 4 );
+    }
+  }
+
+  public void testUpdate() {
+    tree.expand( 1 );
+
+    assertEquals( 1 + 2 * schottky.numGenerators + tree.numOfChilds, tree.getNumOfWords() );
+
+    schottky.setA( 0, new Complex( 1.35, 0.01 ) );
+
+    assertEquals( 1 + 2 * schottky.numGenerators, tree.getNumOfWords() );
+
+    testTree();
+  }
+
+  public void testWalkOrder() {
+
+    final List<Integer> visited = new ArrayList<Integer>();
+
+    tree.walk( new SchottkyWordTree.Visitor() {
+      public boolean visit( int w ) {
+        visited.add( Integer.valueOf( w ) );
+        return tree.getWordLength( w ) < 3;
+      }
+    }, 1 );
+
+    final List<Integer> expected = new ArrayList<Integer>();
+
+    for( int i=0; i<schottky.numGenerators; i++ ) {
+      if( i != 1 ) {
+        preorder( 1 + 2 * i, 3, expected );
+        preorder( 2 + 2 * i, 3, expected );
+      }
+    }
+
+    assertEquals( expected, visited );
+
+    for( int j=0; j<visited.size(); j++ ) {
+      assertTrue( tree.getRight( visited.get( j ).intValue() ) != 1 );
+    }
+  }
+
+  public void testPausedWalk() {
+
+    final List<Integer> visited = new ArrayList<Integer>();
+
+    final SchottkyWordTree.Visitor visitor = new SchottkyWordTree.Visitor() {
+      public boolean visit( int w ) {
+        visited.add( Integer.valueOf( w ) );
+        return tree.getWordLength( w ) < 4;
+      }
+    };
+
+    tree.walk( 1, visitor );
+
+    final List<Integer> expected = new ArrayList<Integer>( visited );
+
+    visited.clear();
+
+    final SchottkyWordTree.Walk walk = tree.new Walk( 1, visitor );
+
+    int numOfPauses = 0;
+
+    while( !walk.resume( 7 ) ) {
+      assertTrue( visited.size() <= 7 * ( numOfPauses + 1 ) );
+      numOfPauses++;
+    }
+
+    assertTrue( walk.isFinished() );
+    assertTrue( numOfPauses > 0 );
+    assertEquals( expected, visited );
+
+    final SchottkyWordTree.Walk stale = tree.new Walk( 1, visitor );
+
+    stale.resume( 1 );
+
+    schottky.setA( 0, new Complex( 1.35, 0.01 ) );
+
+    try {
+      stale.resume( 1 );
+      fail( "walk was resumed after update" );
+    }
+    catch( IllegalStateException e ) {
+      stale.cancel();
+    }
+  }
+
+  void preorder( int w, int maxWordLength, List<Integer> list ) {
+    list.add( Integer.valueOf( w ) );
+
+    if( tree.getWordLength( w ) == maxWordLength ) {
+      return;
+    }
+
+    final int first = tree.expand( w );
+
+    for( int j=0; j<tree.getNumOfChilds( w ); j++ ) {
+      preorder( first + j, maxWordLength, list );
+    }
+  }
+
+  public void testDeepWalk() {
+
+    final Schottky schottky = new Schottky( TestSchottky.schottkyDataForHe[0], 1e-10 );
+
+    final SchottkyWordTree tree = schottky.wordTree;
+
+    final int maxWordLength = 10000;
+
+    final int[] count = new int[1];
+
+    tree.walk( new SchottkyWordTree.Visitor() {
+      public boolean visit( int w ) {
+        count[0]++;
+        return tree.getWordLength( w ) < maxWordLength;
+      }
+    }, -1 );
+
+    assertEquals( 2 * maxWordLength, count[0] );
+  }
+
+  public void testDiffPow() {
+
+    final Complex z = new Complex( 0.1, 0.3 ), v = new Complex( -0.4, 0.2 );
+    final Complex d = new Complex(), r = new Complex(), D = new Complex();
+
+    final int first = tree.expand( 3 );
+
+    final SchottkyGroupElement element = new SchottkyGroupElement();
+    tree.getMoebius( first, element );
+
+    for( int k=1; k<8; k++ ) {
+      tree.diff( first, z, v, d );
+      tree.diffPow( first, z, v, k, d, r );
+
+      element.diffPow( z, v, k, D );
+
+      assertEquals( "pow of " + k, 0, r.dist( D ) / D.abs(), 1e-12 );
+    }
+  }
+
+  public void testSinglePassPeriodMatrix() {
+
+    for( int i=0; i<TestSchottky.schottkyDataForHe.length; i++ ) {
+
+      final Schottky schottky = new Schottky( TestSchottky.schottkyDataForHe[i], 1e-8 );
+
+      final ComplexMatrix B = new ComplexMatrix();
+      final ComplexMatrix entryByEntryB = new ComplexMatrix();
+
+      schottky.periodMatrix.eval( B, 1e-8 );
+      schottky.periodMatrix.evalEntryByEntry( entryByEntryB, 1e-8 );
+
+      // each entry gets exactly the same terms in the same order
+      assertEquals( entryByEntryB, B );
+    }
+  }
+
+  public void testAllPowersOfV() {
+
+    for( int i=0; i<TestSchottky.schottkyDataForHe.length; i++ ) {
+
+      final Schottky schottky = new Schottky( TestSchottky.schottkyDataForHe[i], 1e-8 );
+
+      final ComplexVector [] V = schottky.getVs( 5 );
+
+      // each entry gets exactly the same terms in the same order
+      assertEquals( schottky.getV(), V[0] );
+
+      for( int k=2; k<=5; k++ ) {
+        assertEquals( schottky.getV( k ), V[k-1] );
+      }
+    }
+  }
+
+  public void testMemoryBounded() {
+
+    final double acc = 1e-10;
+
+    final ComplexMatrix B = schottky.getPeriodMatrix( acc );
+    final ComplexVector [] V = schottky.getVs( 3, acc );
+    final Complex omega = schottky.abelianDifferentialOf1stKind( P, 2, acc );
+
+    final int maxNumOfWords = tree.getNumOfWords() / 5;
+
+    final Schottky bounded = new Schottky( TestSchottky.schottkyDataForHe[2], acc );
+
+    bounded.maxNumOfElements = maxNumOfWords;
+    bounded.update();
+
+    try {
+      bounded.getPeriodMatrix( acc );
+      fail( "tree must not grow beyond the maximal number of elements" );
+    } catch( RuntimeException e ) {
+      assertEquals( "too many elements", e.getMessage() );
+    }
+
+    bounded.setMemoryBounded( true );
+
+    // regenerated words give exactly the same terms
+    assertEquals( B, bounded.getPeriodMatrix( acc ) );
+    assertEquals( V[2], bounded.getVs( 3, acc )[2] );
+    // the eps criterion of the differential depends on the maximal number of elements
+    assertEquals( 0, omega.dist( bounded.abelianDifferentialOf1stKind( P, 2, acc ) ), acc );
+
+    assertTrue( bounded.wordTree.numOfEvictedWords > 0 );
+    assertTrue( bounded.wordTree.getNumOfWords() <= maxNumOfWords );
+
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+    try {
+      bounded.setExecutor( executor );
+
+      assertEquals( 0, B.minus( bounded.getPeriodMatrix( acc ) ).normSqr(), acc * acc );
+      assertEquals( 0, V[2].minus( bounded.getVs( 3, acc )[2] ).normSqr(), acc * acc );
+      assertEquals( 0, omega.dist( bounded.abelianDifferentialOf1stKind( P, 2, acc ) ), acc );
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Sum of the differences of the images of the fixpoints of generator n,
+   * which counts its terms.
+   */
+  class CountingSeries implements SchottkyWordTree.Visitor, SchottkyWordTree.BoundedSeries {
+
+    final int n;
+    final double acc;
+
+    final Complex d = new Complex();
+    final Complex sum = new Complex();
+
+    int numOfTerms;
+
+    CountingSeries( int n, double acc ) {
+      this.n = n;
+      this.acc = acc;
+    }
+
+    public double bound( int w ) {
+      tree.diff( w, schottky.fixpoint[n][0], schottky.fixpoint[n][1], d );
+      return ( Math.abs( d.re ) + Math.abs( d.im ) ) / ( 1 - schottky.q1 );
+    }
+
+    public void add( int w ) {
+      tree.diff( w, schottky.fixpoint[n][0], schottky.fixpoint[n][1], d );
+      sum.assignPlus( d );
+      numOfTerms++;
+    }
+
+    public boolean visit( int w ) {
+      if( bound( w ) * SchottkyWordTree.numOfElements( schottky.numOfElementsOfCosetWithWordLength,
+                                                       tree.getWordLength( w ) ) < acc ) {
+        return false;
+      }
+      add( w );
+      return true;
+    }
+  }
+
+  public void testBestFirst() {
+
+    final double acc = 1e-10;
+
+    for( int n=0; n<schottky.numGenerators; n++ ) {
+
+      final CountingSeries depthFirst = new CountingSeries( n, acc );
+      final CountingSeries bestFirst = new CountingSeries( n, acc );
+
+      tree.walk( depthFirst, n );
+
+      final int numOfTerms = tree.sumBestFirst( bestFirst, n, acc );
+
+      assertEquals( bestFirst.numOfTerms, numOfTerms );
+
+      assertEquals( 0, depthFirst.sum.dist( bestFirst.sum ), acc );
+
+      // the group of He3 is anisotropic
+      assertTrue( 2 * bestFirst.numOfTerms < depthFirst.numOfTerms );
+    }
+
+    final Complex V = schottky.V( 1, acc );
+    final Complex omega = schottky.abelianDifferentialOf1stKind( P, 2, acc );
+    final ComplexVector [] Vs = schottky.getVs( 3, acc );
+    final Complex [] omegas = Complex.createArray( schottky.numGenerators );
+    schottky.abelianDifferentialsOf1stKind( omegas, P, acc );
+
+    schottky.setBestFirst( true );
+
+    assertEquals( 0, V.dist( schottky.V( 1, acc ) ), acc );
+    assertEquals( 0, omega.dist( schottky.abelianDifferentialOf1stKind( P, 2, acc ) ), acc );
+
+    // the bounds of the powers k>1 contain the factor k M^(k-1)
+    final ComplexVector [] bestFirstVs = schottky.getVs( 3, acc );
+    for( int k=0; k<3; k++ ) {
+      for( int n=0; n<schottky.numGenerators; n++ ) {
+        assertEquals( 0, Vs[k].get( n ).dist( bestFirstVs[k].get( n ) ), acc );
+      }
+    }
+
+    final Complex [] bestFirstOmegas = Complex.createArray( schottky.numGenerators );
+    schottky.abelianDifferentialsOf1stKind( bestFirstOmegas, P, acc );
+    for( int n=0; n<schottky.numGenerators; n++ ) {
+      assertEquals( 0, omegas[n].dist( bestFirstOmegas[n] ), acc );
+    }
+
+    // the queue pins its words, thus the bound must exceed the words of one sum
+    final Schottky bounded = new Schottky( TestSchottky.schottkyDataForHe[2], acc );
+
+    bounded.maxNumOfElements = 2200;
+    bounded.update();
+    bounded.setMemoryBounded( true );
+    bounded.setBestFirst( true );
+
+    for( int n=0; n<schottky.numGenerators; n++ ) {
+      assertEquals( schottky.V( n, acc ), bounded.V( n, acc ) );
+    }
+
+    assertTrue( bounded.wordTree.numOfEvictedWords > 0 );
+  }
+
+  public void testParallelWalk() {
+
+    final double acc = 1e-10;
+
+    final ComplexMatrix B = schottky.getPeriodMatrix( acc );
+    final Complex V = schottky.V( 1, acc );
+    final Complex omega = schottky.abelianDifferentialOf1stKind( P, 2, acc );
+    final Complex[] u = Complex.createArray( schottky.numGenerators );
+    schottky.abelianIntegralsOf1stKind( u, P, acc );
+
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+    try {
+      schottky.setExecutor( executor );
+
+      final ComplexMatrix parallelB = schottky.getPeriodMatrix( acc );
+      final Complex parallelV = schottky.V( 1, acc );
+      final Complex parallelOmega = schottky.abelianDifferentialOf1stKind( P, 2, acc );
+
+      assertEquals( 0, B.minus( parallelB ).normSqr(), acc * acc );
+      assertEquals( 0, V.dist( parallelV ), acc );
+      assertEquals( 0, omega.dist( parallelOmega ), acc );
+
+      final Complex[] parallelU = Complex.createArray( schottky.numGenerators );
+      schottky.abelianIntegralsOf1stKind( parallelU, P, acc );
+
+      for( int n=0; n<schottky.numGenerators; n++ ) {
+        assertEquals( 0, u[n].dist( parallelU[n] ), acc );
+      }
+
+      // the reduction does not depend on the scheduling
+      assertEquals( parallelB, schottky.getPeriodMatrix( acc ) );
+      assertEquals( parallelV, schottky.V( 1, acc ) );
+      assertEquals( parallelOmega, schottky.abelianDifferentialOf1stKind( P, 2, acc ) );
+    } finally {
+      schottky.setExecutor( null );
+      executor.shutdown();
+    }
+  }
+
+  void compare( SchottkyGroupElement element, int w, int maxWordLength ) {
+
+    compare( element, w );
+
+    if( element.wordLength == maxWordLength ) {
+      return;
+    }
+
+    element.createLeftChilds( schottky.numGenerators );
+
+    final int first = tree.expand( w );
+
+    for( int j=0; j<element.child.length; j++ ) {
+      final SchottkyGroupElement child = element.child[j];
+
+      if( child.leftIsInvert == 1 ) {
+        child.assignTimes( schottky.generatorInv[child.left], element );
+      } else {
+        child.assignTimes( schottky.generator[child.left], element );
+      }
+      schottky.computeConstants( child );
+
+      compare( child, first + j, maxWordLength );
+    }
+  }
+
+  void compare( SchottkyGroupElement element, int w ) {
+
+    assertEquals( element.wordLength, tree.getWordLength( w ) );
+
+    if( element.wordLength > 0 ) {
+      assertEquals( element.left, tree.getLeft( w ) );
+      assertEquals( element.leftIsInvert, tree.getLeftIsInvert( w ) );
+      assertEquals( element.right, tree.getRight( w ) );
+      assertEquals( element.rightIsInvert, tree.getRightIsInvert( w ) );
+    }
+
+    final Moebius m = new Moebius();
+    tree.getMoebius( w, m );
+
+    final Complex a = new Complex(), b = new Complex();
+
+    element.getA( a ); m.getA( b ); assertEquals( 0, a.dist( b ), EPS * a.abs() );
+    element.getB( a ); m.getB( b ); assertEquals( 0, a.dist( b ), EPS * a.abs() );
+    element.getC( a ); m.getC( b ); assertEquals( 0, a.dist( b ), EPS * a.abs() );
+    element.getD( a ); m.getD( b ); assertEquals( 0, a.dist( b ), EPS * a.abs() );
+
+    assertEquals( element.norm, tree.getNorm( w ), EPS * element.norm );
+
+    for( int n=0; n<schottky.numGenerators; n++ ) {
+      tree.getImageOfA( w, n, a );
+      assertEquals( 0, a.dist( element.imageOfA[n] ), EPS );
+      tree.getImageOfB( w, n, a );
+      assertEquals( 0, a.dist( element.imageOfB[n] ), EPS );
+
+      if( element.wordLength > 0 ) {
+        assertEquals( element.LOfInverse[n], tree.getLOfInverse( w, n ),
+                      EPS * Math.abs( element.LOfInverse[n] ) );
+      }
+    }
+
+    assertEquals( schottky.dist( element, P ), tree.dist( w, P ), 1e-8 );
+
+    tree.applyTo( w, P, a );
+    assertEquals( 0, a.dist( element.applyTo( P ) ), EPS * a.abs() );
+  }
+}
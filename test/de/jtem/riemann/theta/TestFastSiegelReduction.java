@@ -0,0 +1,186 @@
+/**
+This file is part of a jTEM project.
+All jTEM projects are licensed under the FreeBSD license 
+or 2-clause BSD license (see http://www.opensource.org/licenses/bsd-license.php). 
+
+Copyright (c) 2002-2009, Technische Universität Berlin, jTEM
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, 
+are permitted provided that the following conditions are met:
+
+-	Redistributions of source code must retain the above copyright notice, 
+	this list of conditions and the following disclaimer.
+
+-	Redistributions in binary form must reproduce the above copyright notice, 
+	this list of conditions and the following disclaimer in the documentation 
+	and/or other materials provided with the distribution.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS 
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT 
+OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY 
+OF SUCH DAMAGE.
+**/
+
+package de.jtem.riemann.theta;
+
+import java.util.Random;
+
+import de.jtem.blas.ComplexMatrix;
+import de.jtem.numericalMethods.algebra.linear.decompose.Cholesky;
+import de.jtem.numericalMethods.geometry.latticeReduction.LLL;
+import junit.framework.TestCase;
+
+public class TestFastSiegelReduction extends TestCase {
+
+    /**
+     * Returns <code>&sigma;(B) = 2&pi;i(aB/2&pi;i+b)(cB/2&pi;i+d)<sup>-1</sup></code>.
+     */
+    static ComplexMatrix apply( ModularTransformation sigma, ComplexMatrix B ) {
+    	ComplexMatrix Z = new ComplexMatrix( B );
+    	Z.assignDivide( SiegelReduction.PI2i );
+
+    	ComplexMatrix N = new ComplexMatrix();
+    	N.assignTimes( sigma.a, Z );
+    	N.assignPlus( sigma.b );
+
+    	ComplexMatrix D = new ComplexMatrix();
+    	D.assignTimes( sigma.c, Z );
+    	D.assignPlus( sigma.d );
+
+    	ComplexMatrix result = new ComplexMatrix();
+    	result.assignTimes( N, D.invert() );
+    	result.assignTimes( SiegelReduction.PI2i );
+    	return result;
+    }
+
+    static void assertEquals( String message, ComplexMatrix expected, ComplexMatrix actual, double delta ) {
+    	int n = expected.getNumRows();
+    	for( int i=0; i<n; i++ )
+    		for( int j=0; j<n; j++ ) {
+    			assertEquals( message, expected.re[i][j], actual.re[i][j], delta * ( 1 + Math.abs(expected.re[i][j]) ) );
+    			assertEquals( message, expected.im[i][j], actual.im[i][j], delta * ( 1 + Math.abs(expected.im[i][j]) ) );
+    		}
+    }
+
+    /**
+     * Asserts that <code>&Omega; = B/2&pi;i</code> is Siegel reduced: the lattice
+     * of its imaginary part <code>-Re B/2&pi;</code> is reduced, which is done by
+     * {@link LLL} and not in the sense of Minkowski, its real part is bounded
+     * by 1/2 and <code>|&Omega;<sub>00</sub>| &ge; 1</code>.
+     */
+    static void assertReduced( ComplexMatrix B ) {
+    	int n = B.getNumRows();
+
+    	double [][] Y = new double[n][n];
+    	double [][] L = new double[n][n];
+    	int [][] U = new int[n][n];
+
+    	for( int i=0; i<n; i++ )
+    		for( int j=0; j<n; j++ ) {
+    			Y[i][j] = -B.re[i][j] / ( 2 * Math.PI );
+    			assertTrue( "real part bounded", Math.abs( B.im[i][j] / ( 2 * Math.PI ) ) <= 0.5 + 1e-10 );
+    		}
+
+    	Cholesky.decompose( Y, L );
+    	LLL.reduce( L, U );
+
+    	for( int i=0; i<n; i++ )
+    		for( int j=0; j<n; j++ )
+    			assertEquals( "lattice reduced", i == j ? 1 : 0, U[i][j] );
+
+    	assertTrue( "entry 00", B.get( 0, 0 ).abs() / ( 2 * Math.PI ) >= 1 - 1e-10 );
+    }
+
+    static ComplexMatrix randomPeriodMatrix( Random random, int n ) {
+    	double [][] l = new double[n][n];
+    	for( int i=0; i<n; i++ )
+    		for( int j=0; j<n; j++ )
+    			l[i][j] = 3 * random.nextGaussian();
+
+    	ComplexMatrix B = new ComplexMatrix(n);
+    	for( int i=0; i<n; i++ )
+    		for( int j=0; j<=i; j++ ) {
+    			double re = 0;
+    			for( int k=0; k<n; k++ )
+    				re -= l[i][k] * l[j][k];
+    			double im = 20 * ( random.nextDouble() - 0.5 );
+    			B.set(i, j, re - ( i == j ? 1 : 0 ), im );
+    			B.set(j, i, re - ( i == j ? 1 : 0 ), im );
+    		}
+    	return B;
+    }
+
+    public void testFastReduction() {
+    	Random random = new Random(7);
+
+    	for( int n=1; n<=5; n++ ) {
+    		SiegelReduction classic = new SiegelReduction(n);
+    		SiegelReduction fast    = new SiegelReduction(n);
+    		fast.setFastReduction(true);
+    		fast.setCollectingStatistics(true);
+
+    		for( int k=0; k<20; k++ ) {
+    			ComplexMatrix B = randomPeriodMatrix( random, n );
+
+    			classic.setPeriodMatrix( B, new ModularTransformation(n) );
+    			fast.setPeriodMatrix( B, new ModularTransformation(n) );
+
+    			assertTrue( "symplectic", fast.modular.respectsSymplecticStructure() );
+
+    			ComplexMatrix c = classic.getReducedPeriodMatrix();
+    			ComplexMatrix f = fast.getReducedPeriodMatrix();
+
+    			assertEquals( "period matrix of modular transformation", f, apply( fast.modular, B ), 1e-8 );
+    			assertReduced( f );
+
+    			// both reductions have to produce equally short reduced matrices
+    			assertEquals( "entry 00", c.re[0][0], f.re[0][0], 1e-8 * ( 1 + Math.abs(c.re[0][0]) ) );
+
+    			assertTrue( "iterations", fast.getNumOfIterations() >= 1 );
+    		}
+    	}
+    }
+
+    public void testWarmStart() {
+    	Random random = new Random(11);
+
+    	int n = 3;
+
+    	SiegelReduction sr = new SiegelReduction(n);
+    	sr.setCollectingStatistics(true);
+
+    	ComplexMatrix B = randomPeriodMatrix( random, n );
+
+    	sr.setPeriodMatrix( B, new ModularTransformation(n) );
+
+    	ComplexMatrix reduced = sr.getReducedPeriodMatrix();
+
+    	assertReduced( reduced );
+    	assertTrue( "lattice reductions", sr.getNumOfLatticeReductions() >= 1 );
+    	assertTrue( "time", sr.getTimeOfReduction() > 0 );
+
+    	ModularTransformation start = new ModularTransformation(n);
+    	start.assign( sr.modular );
+
+    	sr.setPeriodMatrix( B, start );
+
+    	assertEquals( "one iteration", 1, sr.getNumOfIterations() );
+    	assertEquals( "no shifts", 0, sr.getNumOfShifts() );
+
+    	ComplexMatrix again = sr.getReducedPeriodMatrix();
+
+    	for( int i=0; i<n; i++ )
+    		for( int j=0; j<n; j++ ) {
+    			assertEquals( reduced.re[i][j], again.re[i][j], 1e-10 );
+    			assertEquals( reduced.im[i][j], again.im[i][j], 1e-10 );
+    		}
+    }
+}
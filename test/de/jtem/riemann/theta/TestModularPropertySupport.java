@@ -146,6 +146,60 @@ public class TestModularPropertySupport extends TestCase {
   }
   
 
+  public void testBlockTransform() {
+
+    int numOfZ = 7;
+
+    double [] zRe = new double[numOfZ * n];
+    double [] zIm = new double[numOfZ * n];
+    double [] tZRe = new double[numOfZ * n];
+    double [] tZIm = new double[numOfZ * n];
+    double [] fRe = new double[numOfZ];
+    double [] fIm = new double[numOfZ];
+
+    ComplexVector [] z = new ComplexVector[numOfZ];
+
+    for (int k = 0; k < numOfZ; k++) {
+      z[k] = new ComplexVector(n);
+      z[k].assignRandom();
+      z[k].assignTimes(20);
+      for (int i = 0; i < n; i++) {
+        zRe[k * n + i] = z[k].re[i];
+        zIm[k * n + i] = z[k].im[i];
+      }
+    }
+
+    mps.transform(numOfZ, zRe, zIm, tZRe, tZIm, fRe, fIm);
+
+    for (int k = 0; k < numOfZ; k++) {
+      mps.setZ(z[k]);
+      ComplexVector tZ = mps.getTransformedZ();
+      Complex f = mps.getFactor();
+      for (int i = 0; i < n; i++) {
+        assertEquals("modular: real part of z", tZ.re[i], tZRe[k * n + i], 1e-12);
+        assertEquals("modular: imag part of z", tZ.im[i], tZIm[k * n + i], 1e-12);
+      }
+      assertEquals("modular: real part of factor", f.re, fRe[k], 1e-10);
+      assertEquals("modular: imag part of factor", f.im, fIm[k], 1e-10);
+    }
+
+    TransformPropertySupport tps = new TransformPropertySupport(B);
+
+    tps.transform(numOfZ, zRe, zIm, tZRe, tZIm, fRe, fIm);
+
+    for (int k = 0; k < numOfZ; k++) {
+      tps.setZ(z[k]);
+      ComplexVector tZ = tps.getTransformedZ();
+      Complex f = tps.getFactor();
+      for (int i = 0; i < n; i++) {
+        assertEquals("transform: real part of z", tZ.re[i], tZRe[k * n + i], 1e-12);
+        assertEquals("transform: imag part of z", tZ.im[i], tZIm[k * n + i], 1e-12);
+      }
+      assertEquals("transform: real part of factor", f.re, fRe[k], 1e-10);
+      assertEquals("transform: imag part of factor", f.im, fIm[k], 1e-10);
+    }
+  }
+
 }
 
 
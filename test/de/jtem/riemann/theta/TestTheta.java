@@ -134,6 +134,124 @@ public class TestTheta extends TestCase {
         assertEquals( "imag part", k.im, f.im, 1e-13 );
       }
     }
+
+    /** test the cosine series of theta functions with real structure */
+    public void testRealStructure() {
+
+      ComplexMatrix R = new ComplexMatrix( 2 );
+
+      R.set( 0, 0, -5.10972365633887, 0       );
+      R.set( 0, 1, -1.24199777781055, Math.PI );
+      R.set( 1, 0, -1.24199777781055, Math.PI );
+      R.set( 1, 1, -5.78346380443502, 0       );
+
+      Theta real = new Theta( R, 1e-14, false );
+
+      assertTrue( "real structure", real.hasRealStructure() );
+      assertFalse( "no real structure", new Theta( B, 1e-14, false ).hasRealStructure() );
+
+      Complex factor = new Complex();
+      Complex sum    = new Complex();
+      Complex sumRef = new Complex();
+
+      for( int i=0; i<15; i++ ) {
+
+        Z.assignRandom();
+        Z.assignTimes( 10 );
+
+        if( i % 2 == 0 )
+          Z.assignTimes( new Complex( 0, 1 ) );
+
+        for( int j=0; j<n; j++ )
+          if( i % 2 == 0 ) Z.re[j] = 0; else Z.im[j] = 0;
+
+        real.setExploitingRealStructure( true );
+        real.theta( Z, factor, sum );
+
+        real.setExploitingRealStructure( false );
+        assertFalse( "not detected", real.hasRealStructure() );
+        real.theta( Z, factor, sumRef );
+
+        assertEquals( "real part", sumRef.re, sum.re, 1e-12 * sumRef.abs() );
+        assertEquals( "imag part", sumRef.im, sum.im, 1e-12 * sumRef.abs() );
+      }
+    }
+
+    /** test the soliton limit against the ordinary uniform approximation */
+    public void testSolitonLimit() {
+
+      for( int g=1; g<=3; g++ ) {
+
+        ComplexMatrix D = new ComplexMatrix( g );
+
+        for( int i=0; i<g; i++ )
+          for( int j=0; j<g; j++ )
+            D.set( i, j, i == j ? -150 - 10 * i : 3.5, i == j ? 0.5 : 1 );
+
+        Theta limit     = new Theta( D, 1e-12, true );
+        Theta reference = new Theta( D, 1e-12, true );
+
+        reference.setUseSolitonLimit( false );
+
+        assertTrue( "soliton limit", limit.isSolitonLimit() );
+        assertFalse( "no soliton limit", reference.isSolitonLimit() );
+        assertTrue( "error", limit.getSolitonLimitError() <= 1e-12 );
+
+        ComplexVector W = new ComplexVector( g );
+
+        Complex factor    = new Complex();
+        Complex sum       = new Complex();
+        Complex refFactor = new Complex();
+        Complex refSum    = new Complex();
+
+        for( int i=0; i<15; i++ ) {
+
+          W.assignRandom();
+          W.assignTimes( 100 );
+
+          limit.theta( W, factor, sum );
+          reference.theta( W, refFactor, refSum );
+
+          sum.assignTimes( factor.minus( refFactor ).exp() );
+
+          assertEquals( "real part", refSum.re, sum.re, 1e-11 );
+          assertEquals( "imag part", refSum.im, sum.im, 1e-11 );
+        }
+      }
+
+      assertFalse( "not degenerated", theta.isSolitonLimit() );
+    }
+
+    /** test the recording of metrics */
+    public void testMetrics() {
+
+      ThetaMetrics metrics = new ThetaMetrics();
+
+      siegelTheta.setMetrics( metrics );
+      siegelTheta.setPeriodMatrix( B.times( 2 ) );
+      siegelTheta.setPeriodMatrix( B.times( 2 ) );
+
+      for( int i=0; i<5; i++ ) {
+        Z.assignRandom();
+        siegelTheta.theta( Z );
+        siegelTheta.dTheta( Z, X );
+      }
+
+      assertEquals( "siegel reduction", 1, metrics.getNumOfCallsOfStage( ThetaMetrics.SIEGEL_REDUCTION ) );
+      assertEquals( "error radius", 1, metrics.getNumOfCallsOfStage( ThetaMetrics.ERROR_RADIUS ) );
+      assertEquals( "lattice points", 1, metrics.getNumOfCallsOfStage( ThetaMetrics.LATTICE_POINTS ) );
+      assertEquals( "evaluations", 10, metrics.getNumOfEvaluations() );
+      assertEquals( "summed lattice points", 10L * siegelTheta.getNumOfLatticePoints(), metrics.getNumOfSummedLatticePoints() );
+      assertTrue( "cache hits", metrics.getNumOfCacheHits() >= 1 );
+
+      assertTrue( "json", metrics.toJSON().indexOf( "\"summation\":{\"calls\":10," ) >= 0 );
+      assertTrue( "csv", metrics.toCSV().indexOf( "evaluations,10\n" ) >= 0 );
+
+      siegelTheta.setMetrics( null );
+      siegelTheta.theta( Z );
+
+      assertEquals( "disabled", 10, metrics.getNumOfEvaluations() );
+    }
 }
 
 